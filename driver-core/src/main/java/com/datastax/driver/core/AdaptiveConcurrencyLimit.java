@@ -0,0 +1,117 @@
+/*
+ *      Copyright (C) 2012-2015 DataStax Inc.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package com.datastax.driver.core;
+
+import com.datastax.driver.core.exceptions.ConnectionException;
+import com.datastax.driver.core.exceptions.OperationTimedOutException;
+import com.datastax.driver.core.exceptions.OverloadedException;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A limit on the number of in-flight requests to a host, adjusted with an AIMD (additive increase, multiplicative
+ * decrease) algorithm based on the latency of the responses.
+ * <p/>
+ * Each response faster than {@link PoolingOptions#getAdaptiveConcurrencyLatencyThresholdMillis()} increases the limit
+ * by one, as long as the limit is actually used (at least half of it is in flight). A response slower than that
+ * threshold, or an error indicating that the host is overloaded, decreases the limit by 10%. To avoid collapsing the
+ * limit because of the responses of a single slow burst, there is at most one decrease per "round trip": slow
+ * responses to requests sent before the previous decrease are ignored.
+ * <p/>
+ * The limit always stays between 1 and the static maximum of the pool (max connections times max requests per
+ * connection). It starts at that maximum, so a healthy host behaves as if there were no adaptive limit.
+ */
+class AdaptiveConcurrencyLimit {
+
+    private static final int MIN_LIMIT = 1;
+    private static final double BACKOFF_RATIO = 0.9;
+
+    private final PoolingOptions options;
+    private final AtomicInteger limit;
+    private volatile long lastDecreaseNanos;
+
+    AdaptiveConcurrencyLimit(PoolingOptions options, HostDistance distance) {
+        this.options = options;
+        this.limit = new AtomicInteger(maxLimit(distance));
+        // Far enough in the past that the first slow response always triggers a decrease
+        this.lastDecreaseNanos = System.nanoTime() - Long.MAX_VALUE / 2;
+    }
+
+    private int maxLimit(HostDistance distance) {
+        return options.getMaxConnectionsPerHost(distance) * options.getMaxRequestsPerConnection(distance);
+    }
+
+    boolean isEnabled() {
+        return options.getAdaptiveConcurrencyLatencyThresholdMillis() > 0;
+    }
+
+    /**
+     * @return the current limit, or the static maximum of the pool if adaptive limiting is disabled.
+     */
+    int current(HostDistance distance) {
+        int max = maxLimit(distance);
+        return isEnabled() ? Math.min(limit.get(), max) : max;
+    }
+
+    /**
+     * Records the outcome of a request.
+     *
+     * @param latencyNanos the latency of the request.
+     * @param error        the error returned by the request, or null if it succeeded.
+     * @param distance     the current distance of the host.
+     * @param inFlight     the current number of in-flight requests to the host.
+     */
+    void update(long latencyNanos, Exception error, HostDistance distance, int inFlight) {
+        int thresholdMillis = options.getAdaptiveConcurrencyLatencyThresholdMillis();
+        if (thresholdMillis <= 0)
+            return;
+        // A connection error tells us nothing about the latency of the host
+        if (error instanceof ConnectionException && !(error instanceof OperationTimedOutException))
+            return;
+
+        boolean overloaded = latencyNanos > TimeUnit.MILLISECONDS.toNanos(thresholdMillis)
+                || error instanceof OverloadedException
+                || error instanceof OperationTimedOutException;
+        int max = maxLimit(distance);
+        if (overloaded) {
+            long now = System.nanoTime();
+            // Only react once to the requests that were in flight when we last decreased
+            if (now - latencyNanos - lastDecreaseNanos < 0)
+                return;
+            lastDecreaseNanos = now;
+            while (true) {
+                int previous = limit.get();
+                int current = Math.min(previous, max);
+                int next = Math.max(MIN_LIMIT, Math.min(current - 1, (int) (current * BACKOFF_RATIO)));
+                if (limit.compareAndSet(previous, next))
+                    return;
+            }
+        } else {
+            while (true) {
+                int current = limit.get();
+                if (current >= max) {
+                    // The max may have been lowered since the last update
+                    if (current > max)
+                        limit.compareAndSet(current, max);
+                    return;
+                }
+                if (inFlight * 2 < current || limit.compareAndSet(current, current + 1))
+                    return;
+            }
+        }
+    }
+}
@@ -76,6 +76,7 @@ abstract class ArrayBackedResultSet implements ResultSet {
                         : session.getCluster().manager.metadata.tokenFactory();
 
                 info = update(info, r, session, r.metadata.pagingState, protocolVersion, columnDefs.codecRegistry, statement);
+                trackRowSize(r, session, statement);
 
                 // info can be null only for internal calls, but we don't page those. We assert
                 // this explicitly because MultiPage implementation doesn't support info == null.
@@ -111,6 +112,31 @@ abstract class ArrayBackedResultSet implements ResultSet {
         return info.with(trace, msg.warnings, pagingState, statement, protocolVersion, codecRegistry);
     }
 
+    // Records the size of the rows for adaptive fetch sizes (see QueryOptions#setTargetPageSizeInBytes)
+    static void trackRowSize(Responses.Result.Rows rows, SessionManager session, Statement statement) {
+        if (session == null || statement == null
+                || session.configuration().getQueryOptions().getTargetPageSizeInBytes() == 0)
+            return;
+        RowSizeTracker tracker = statement.rowSizeTracker();
+        if (tracker != null)
+            tracker.update(rows.data.size(), rows.dataBytes);
+    }
+
+    // Copies the rows that are available without fetching, and disables automatic prefetching on the result set (see
+    // QueryOptions#setPrefetchThresholdPercentage). For internal consumers that request every page explicitly
+    // (TableScanner, RowPublisher): otherwise consuming a page would also fetch the next one in the background.
+    static void drainAvailable(ResultSet rs, Collection<? super Row> rows) {
+        if (rs instanceof ArrayBackedResultSet)
+            ((ArrayBackedResultSet) rs).disablePrefetch();
+        int available = rs.getAvailableWithoutFetching();
+        for (int i = 0; i < available; i++)
+            rows.add(rs.one());
+    }
+
+    void disablePrefetch() {
+        // Only paged results prefetch
+    }
+
     private static ArrayBackedResultSet empty(ExecutionInfo info) {
         // We could pass the protocol version but we know we won't need it so passing a bogus value (null)
         return new SinglePage(ColumnDefinitions.EMPTY, null, null, null, EMPTY_QUEUE, info);
@@ -223,6 +249,8 @@ abstract class ArrayBackedResultSet implements ResultSet {
     private static class MultiPage extends ArrayBackedResultSet {
 
         private Queue<List<ByteBuffer>> currentPage;
+        // The initial size of currentPage, to compute the prefetch threshold
+        private int currentPageSize;
         private final Queue<Queue<List<ByteBuffer>>> nextPages = new ConcurrentLinkedQueue<Queue<List<ByteBuffer>>>();
 
         private final Deque<ExecutionInfo> infos = new LinkedBlockingDeque<ExecutionInfo>();
@@ -242,6 +270,9 @@ abstract class ArrayBackedResultSet implements ResultSet {
          */
         private volatile FetchingState fetchState;
 
+        // Set by internal consumers that fetch pages explicitly
+        private volatile boolean prefetchDisabled;
+
         private final SessionManager session;
 
         private MultiPage(ColumnDefinitions metadata,
@@ -258,6 +289,7 @@ abstract class ArrayBackedResultSet implements ResultSet {
             // that this will never change, so apply the generic check by peeking at the first row.
             super(metadata, tokenFactory, rows.peek(), protocolVersion, codecRegistry);
             this.currentPage = rows;
+            this.currentPageSize = rows.size();
             this.infos.offer(info);
 
             this.fetchState = new FetchingState(pagingState, null);
@@ -273,7 +305,9 @@ abstract class ArrayBackedResultSet implements ResultSet {
         @Override
         public Row one() {
             prepareNextRow();
-            return ArrayBackedRow.fromData(metadata, tokenFactory, protocolVersion, currentPage.poll());
+            Row row = ArrayBackedRow.fromData(metadata, tokenFactory, protocolVersion, currentPage.poll());
+            maybePrefetch();
+            return row;
         }
 
         @Override
@@ -289,6 +323,11 @@ abstract class ArrayBackedResultSet implements ResultSet {
             return fetchState == null;
         }
 
+        @Override
+        void disablePrefetch() {
+            prefetchDisabled = true;
+        }
+
         // Ensure that after the call the next row to consume is in 'currentPage', i.e. that
         // 'currentPage' is empty IFF the ResultSet if fully exhausted.
         private void prepareNextRow() {
@@ -299,6 +338,7 @@ abstract class ArrayBackedResultSet implements ResultSet {
                 Queue<List<ByteBuffer>> nextPage = nextPages.poll();
                 if (nextPage != null) {
                     currentPage = nextPage;
+                    currentPageSize = nextPage.size();
                     continue;
                 }
                 if (fetchingState == null)
@@ -315,9 +355,42 @@ abstract class ArrayBackedResultSet implements ResultSet {
             }
         }
 
+        // Requests the next page in the background if the prefetch threshold is reached (see
+        // QueryOptions#setPrefetchThresholdPercentage). Only called by the consuming thread.
+        private void maybePrefetch() {
+            if (prefetchDisabled)
+                return;
+            QueryOptions options = session.configuration().getQueryOptions();
+            int threshold = options.getPrefetchThresholdPercentage();
+            if (threshold == 0)
+                return;
+            FetchingState fetchingState = this.fetchState;
+            if (fetchingState == null || fetchingState.inProgress != null)
+                return;
+            boolean fetch = nextPages.isEmpty()
+                    ? (long) currentPage.size() * 100 <= (long) currentPageSize * threshold
+                    : nextPages.size() < options.getMaxPrefetchedPages();
+            if (fetch)
+                fetchMoreResults();
+        }
+
+        // Keeps fetching in the background while fewer than the maximum number of prefetched pages are buffered.
+        // Called on the I/O thread when a page has arrived.
+        private void continuePrefetch() {
+            QueryOptions options = session.configuration().getQueryOptions();
+            if (!prefetchDisabled
+                    && options.getPrefetchThresholdPercentage() > 0
+                    && nextPages.size() < options.getMaxPrefetchedPages())
+                fetchMoreResults();
+        }
+
         @Override
         public ListenableFuture<ResultSet> fetchMoreResults() {
-            return fetchMoreResults(this.fetchState);
+            // Synchronized because both the consuming thread and the I/O thread (when prefetching) can start a fetch,
+            // and we must not query the same page twice
+            synchronized (this) {
+                return fetchMoreResults(this.fetchState);
+            }
         }
 
         private ListenableFuture<ResultSet> fetchMoreResults(FetchingState fetchState) {
@@ -362,6 +435,7 @@ abstract class ArrayBackedResultSet implements ResultSet {
                                 if (rm.kind == Responses.Result.Kind.ROWS) {
                                     Responses.Result.Rows rows = (Responses.Result.Rows) rm;
                                     info = update(info, rm, MultiPage.this.session, rows.metadata.pagingState, protocolVersion, codecRegistry, statement);
+                                    trackRowSize(rows, MultiPage.this.session, statement);
                                     MultiPage.this.nextPages.offer(rows.data);
                                     MultiPage.this.fetchState = rows.metadata.pagingState == null ? null : new FetchingState(rows.metadata.pagingState, null);
                                 } else if (rm.kind == Responses.Result.Kind.VOID) {
@@ -378,6 +452,7 @@ abstract class ArrayBackedResultSet implements ResultSet {
 
                                 MultiPage.this.infos.offer(info);
                                 future.set(MultiPage.this);
+                                continuePrefetch();
                                 break;
                             case ERROR:
                                 future.setException(((Responses.Error) response).asException(connection.address));
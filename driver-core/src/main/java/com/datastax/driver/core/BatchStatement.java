@@ -243,6 +243,15 @@ public class BatchStatement extends Statement {
         return null;
     }
 
+    @Override
+    public boolean isLWT() {
+        for (Statement statement : statements) {
+            if (statement.isLWT())
+                return true;
+        }
+        return false;
+    }
+
     @Override
     public Boolean isIdempotent() {
         if (idempotent != null) {
@@ -0,0 +1,498 @@
+/*
+ *      Copyright (C) 2012-2015 DataStax Inc.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package com.datastax.driver.core;
+
+import com.google.common.collect.MapMaker;
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import java.io.Closeable;
+import java.nio.ByteBuffer;
+import java.util.*;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Groups writes that target the same partition (or the same replicas) into unlogged batches.
+ * <p/>
+ * A single-partition unlogged batch is applied by its coordinator as a single mutation, which is much cheaper than
+ * the equivalent individual writes. This class is meant for bulk ingestion: statements passed to {@link #write(Statement)}
+ * are grouped by routing key for a short time window (or until a group is full), and each group is then sent as an
+ * unlogged (or counter) {@link BatchStatement}. Since the routing key of a batch is the one of its first statement, a
+ * {@link com.datastax.driver.core.policies.TokenAwarePolicy} sends it directly to a replica of the group.
+ * <p/>
+ * At most {@link Builder#withMaxConcurrentBatches(int)} batches are in flight at any time, and {@link #write(Statement)}
+ * blocks when more than {@link Builder#withMaxPendingStatements(int)} statements are waiting to be acknowledged:
+ * <pre>
+ * BatchingWriter writer = BatchingWriter.builder(session)
+ *     .withMaxBatchSize(32)
+ *     .withMaxBatchDelay(5, TimeUnit.MILLISECONDS)
+ *     .build();
+ * for (Record record : records)
+ *     writer.write(insert.bind(record.getId(), record.getValue()));
+ * writer.close();
+ * </pre>
+ * <p/>
+ * Statements without a routing key can't be grouped, they are executed individually. Statements are only grouped with
+ * statements that have the same consistency level, serial consistency level and default timestamp, since these are
+ * settings of the whole batch.
+ * <p/>
+ * Counter updates are grouped separately, into {@link BatchStatement.Type#COUNTER counter batches}, since Cassandra
+ * doesn't accept them in other batches. A statement is considered a counter update if one of its bound variables
+ * is a counter, or if it increments or decrements a column by an integer literal ({@code c = c + 1}); a
+ * {@link SimpleStatement} or built statement that increments a column by a bind marker is executed individually,
+ * since its column may be a counter as well as a collection. Conditional statements (see
+ * {@link Statement#isLWT()}) are also executed individually, since the conditions of a batch apply to all its
+ * statements.
+ * <p/>
+ * <b>All the statements of a batch are written with the same timestamp</b>: the default timestamp of the statements
+ * if they have one, otherwise a single timestamp generated for the batch. As a consequence, if two statements of the
+ * same group write the same cell, their writes tie, and Cassandra resolves the tie by comparing the values, not by
+ * keeping the last one: a later {@link #write(Statement)} can lose to an earlier one. Writes that may update the same
+ * cell within a time window should either be executed directly, or use explicit and distinct timestamps (with
+ * {@code USING TIMESTAMP} or {@link Statement#setDefaultTimestamp(long)}, in which case they are not grouped together).
+ */
+public class BatchingWriter implements Closeable {
+
+    /**
+     * The default maximum number of statements in a batch.
+     */
+    public static final int DEFAULT_MAX_BATCH_SIZE = 32;
+
+    /**
+     * The default time after which a group is sent even if it is not full, in milliseconds.
+     */
+    public static final long DEFAULT_MAX_BATCH_DELAY_MILLIS = 5;
+
+    /**
+     * The default maximum number of batches in flight.
+     */
+    public static final int DEFAULT_MAX_CONCURRENT_BATCHES = 32;
+
+    /**
+     * How statements are grouped into batches.
+     */
+    public enum Grouping {
+        /**
+         * Statements are grouped by partition (in other words by keyspace and routing key). This produces
+         * single-partition batches, the cheapest kind of batch for the coordinator.
+         */
+        PARTITION,
+
+        /**
+         * Statements are grouped by replica set: a batch may span several partitions, but they are all owned by the
+         * same replicas, so the coordinator is a replica of all of them. This produces larger batches when there
+         * are few writes per partition. If the replicas of a statement are not known, it is grouped by partition.
+         */
+        REPLICA_SET
+    }
+
+    private final Session session;
+    private final Grouping grouping;
+    private final int maxBatchSize;
+    private final long maxBatchDelayNanos;
+    private final int maxConcurrentBatches;
+    private final int maxPendingStatements;
+    private final ScheduledExecutorService scheduler;
+    private final Semaphore pendingStatements;
+    // Whether the executions of a prepared statement update counters
+    private final ConcurrentMap<PreparedStatement, BatchStatement.Type> preparedBatchTypes =
+            new MapMaker().weakKeys().makeMap();
+
+    // All guarded by this
+    private final Map<List<Object>, Group> groups = new HashMap<List<Object>, Group>();
+    private final Queue<Group> ready = new LinkedList<Group>();
+    private int inFlightBatches;
+    private boolean closed;
+
+    BatchingWriter(Session session, Grouping grouping, int maxBatchSize, long maxBatchDelayNanos,
+                   int maxConcurrentBatches, int maxPendingStatements, ScheduledExecutorService scheduler) {
+        this.session = session;
+        this.grouping = grouping;
+        this.maxBatchSize = maxBatchSize;
+        this.maxBatchDelayNanos = maxBatchDelayNanos;
+        this.maxConcurrentBatches = maxConcurrentBatches;
+        this.maxPendingStatements = maxPendingStatements;
+        this.scheduler = scheduler;
+        this.pendingStatements = new Semaphore(maxPendingStatements);
+    }
+
+    /**
+     * Creates a new builder for a writer that executes its batches with the given session.
+     *
+     * @param session the session.
+     * @return the new builder.
+     */
+    public static Builder builder(Session session) {
+        return new Builder(session);
+    }
+
+    /**
+     * Adds a statement to the batch of its partition (or replica set).
+     * <p/>
+     * This method blocks if the maximum number of pending statements is reached, until enough of them are
+     * acknowledged.
+     *
+     * @param statement the statement, typically a {@link BoundStatement} for an {@code INSERT}, {@code UPDATE} or
+     *                  {@code DELETE}.
+     * @return a future that completes when the batch containing the statement was acknowledged, or fails with the
+     * error of that batch.
+     * @throws IllegalArgumentException if the statement is a {@link BatchStatement}.
+     * @throws IllegalStateException    if this writer was closed.
+     */
+    public ListenableFuture<Void> write(Statement statement) {
+        if (statement instanceof BatchStatement)
+            throw new IllegalArgumentException("Batch statements can't be added to a BatchingWriter");
+
+        Configuration configuration = session.getCluster().getConfiguration();
+        BatchStatement.Type type = batchType(statement, configuration.getCodecRegistry());
+        List<Object> key = (type == null) ? null : groupingKey(statement, type, configuration);
+        pendingStatements.acquireUninterruptibly();
+        SettableFuture<Void> future = SettableFuture.create();
+        synchronized (this) {
+            if (closed) {
+                pendingStatements.release();
+                throw new IllegalStateException("Can't write to a closed BatchingWriter");
+            }
+            if (key == null) {
+                // Can't be grouped, send it as is
+                Group group = new Group(null, null);
+                group.add(statement, future);
+                ready.add(group);
+            } else {
+                Group group = groups.get(key);
+                if (group == null) {
+                    group = new Group(key, type);
+                    groups.put(key, group);
+                    scheduleFlush(group);
+                }
+                group.add(statement, future);
+                if (group.size() >= maxBatchSize) {
+                    groups.remove(key);
+                    ready.add(group);
+                }
+            }
+        }
+        sendReadyBatches();
+        return future;
+    }
+
+    /**
+     * Sends all the groups that are waiting for their time window to end.
+     */
+    public void flush() {
+        synchronized (this) {
+            ready.addAll(groups.values());
+            groups.clear();
+        }
+        sendReadyBatches();
+    }
+
+    /**
+     * Flushes this writer, and waits until all the pending statements are acknowledged (or failed).
+     * <p/>
+     * Subsequent calls to {@link #write(Statement)} will fail. This does not close the underlying session, but it must
+     * be called to release the thread that sends groups at the end of their time window.
+     */
+    @Override
+    public void close() {
+        synchronized (this) {
+            closed = true;
+        }
+        flush();
+        pendingStatements.acquireUninterruptibly(maxPendingStatements);
+        pendingStatements.release(maxPendingStatements);
+        scheduler.shutdown();
+    }
+
+    /**
+     * Returns the number of statements that were written but not acknowledged yet.
+     *
+     * @return the number of pending statements.
+     */
+    public int getPendingStatements() {
+        return maxPendingStatements - pendingStatements.availablePermits();
+    }
+
+    private List<Object> groupingKey(Statement statement, BatchStatement.Type type, Configuration configuration) {
+        ByteBuffer routingKey = statement.getRoutingKey(
+                configuration.getProtocolOptions().getProtocolVersion(),
+                configuration.getCodecRegistry());
+        if (routingKey == null)
+            return null;
+        String keyspace = statement.getKeyspace();
+        Object target = null;
+        if (grouping == Grouping.REPLICA_SET && keyspace != null) {
+            Set<Host> replicas = session.getCluster().getMetadata().getReplicas(Metadata.quote(keyspace), routingKey);
+            if (!replicas.isEmpty())
+                target = replicas;
+        }
+        if (target == null)
+            target = Arrays.asList(keyspace, routingKey);
+        // These become the settings of the batch, so only statements that agree on them can be grouped
+        return Arrays.<Object>asList(target, statement.getConsistencyLevel(), statement.getSerialConsistencyLevel(),
+                statement.getDefaultTimestamp(), type);
+    }
+
+    // The type of the batches that the statement can be part of, or null if it must be executed individually
+    private BatchStatement.Type batchType(Statement statement, CodecRegistry codecRegistry) {
+        if (statement instanceof StatementWrapper)
+            statement = ((StatementWrapper) statement).getWrappedStatement();
+        if (statement.isLWT())
+            return null;
+        if (statement instanceof BoundStatement) {
+            PreparedStatement prepared = ((BoundStatement) statement).preparedStatement();
+            BatchStatement.Type type = preparedBatchTypes.get(prepared);
+            if (type == null) {
+                type = preparedBatchType(prepared);
+                preparedBatchTypes.put(prepared, type);
+            }
+            return type;
+        }
+        switch (ParseUtils.findSelfIncrement(((RegularStatement) statement).getQueryString(codecRegistry))) {
+            case INTEGER:
+                return BatchStatement.Type.COUNTER;
+            case BIND_MARKER:
+                // Could be a counter or a collection
+                return null;
+            default:
+                return BatchStatement.Type.UNLOGGED;
+        }
+    }
+
+    private static BatchStatement.Type preparedBatchType(PreparedStatement prepared) {
+        for (ColumnDefinitions.Definition variable : prepared.getVariables()) {
+            if (variable.getType().getName() == DataType.Name.COUNTER)
+                return BatchStatement.Type.COUNTER;
+        }
+        // Increments by a bind marker were caught above, unless the variable is a collection
+        return ParseUtils.findSelfIncrement(prepared.getQueryString()) == ParseUtils.SelfIncrement.INTEGER
+                ? BatchStatement.Type.COUNTER
+                : BatchStatement.Type.UNLOGGED;
+    }
+
+    private void scheduleFlush(final Group group) {
+        scheduler.schedule(new Runnable() {
+            @Override
+            public void run() {
+                synchronized (BatchingWriter.this) {
+                    // The group might already have been sent because it was full
+                    if (groups.get(group.key) != group)
+                        return;
+                    groups.remove(group.key);
+                    ready.add(group);
+                }
+                sendReadyBatches();
+            }
+        }, maxBatchDelayNanos, TimeUnit.NANOSECONDS);
+    }
+
+    private void sendReadyBatches() {
+        List<Group> toSend = null;
+        synchronized (this) {
+            while (inFlightBatches < maxConcurrentBatches && !ready.isEmpty()) {
+                if (toSend == null)
+                    toSend = new ArrayList<Group>();
+                toSend.add(ready.poll());
+                inFlightBatches += 1;
+            }
+        }
+        if (toSend != null) {
+            for (Group group : toSend)
+                send(group);
+        }
+    }
+
+    private void send(final Group group) {
+        Statement statement;
+        if (group.size() == 1) {
+            statement = group.statements.get(0);
+        } else {
+            Statement first = group.statements.get(0);
+            BatchStatement batch = new BatchStatement(group.type);
+            batch.addAll(group.statements);
+            if (first.getConsistencyLevel() != null)
+                batch.setConsistencyLevel(first.getConsistencyLevel());
+            if (first.getSerialConsistencyLevel() != null)
+                batch.setSerialConsistencyLevel(first.getSerialConsistencyLevel());
+            if (first.getDefaultTimestamp() != Long.MIN_VALUE)
+                batch.setDefaultTimestamp(first.getDefaultTimestamp());
+            statement = batch;
+        }
+
+        ResultSetFuture future;
+        try {
+            future = session.executeAsync(statement);
+        } catch (RuntimeException e) {
+            complete(group, e);
+            return;
+        }
+        Futures.addCallback(future, new FutureCallback<ResultSet>() {
+            @Override
+            public void onSuccess(ResultSet result) {
+                complete(group, null);
+            }
+
+            @Override
+            public void onFailure(Throwable t) {
+                complete(group, t);
+            }
+        });
+    }
+
+    private void complete(Group group, Throwable error) {
+        synchronized (this) {
+            inFlightBatches -= 1;
+        }
+        pendingStatements.release(group.size());
+        for (SettableFuture<Void> future : group.futures) {
+            if (error == null)
+                future.set(null);
+            else
+                future.setException(error);
+        }
+        sendReadyBatches();
+    }
+
+    private static class Group {
+        final List<Object> key;
+        final BatchStatement.Type type;
+        final List<Statement> statements = new ArrayList<Statement>();
+        final List<SettableFuture<Void>> futures = new ArrayList<SettableFuture<Void>>();
+
+        Group(List<Object> key, BatchStatement.Type type) {
+            this.key = key;
+            this.type = type;
+        }
+
+        void add(Statement statement, SettableFuture<Void> future) {
+            statements.add(statement);
+            futures.add(future);
+        }
+
+        int size() {
+            return statements.size();
+        }
+    }
+
+    /**
+     * Helper class to build {@link BatchingWriter} instances.
+     */
+    public static class Builder {
+
+        private final Session session;
+        private Grouping grouping = Grouping.PARTITION;
+        private int maxBatchSize = DEFAULT_MAX_BATCH_SIZE;
+        private long maxBatchDelayNanos = TimeUnit.MILLISECONDS.toNanos(DEFAULT_MAX_BATCH_DELAY_MILLIS);
+        private int maxConcurrentBatches = DEFAULT_MAX_CONCURRENT_BATCHES;
+        private int maxPendingStatements;
+
+        private Builder(Session session) {
+            this.session = session;
+        }
+
+        /**
+         * Sets how statements are grouped into batches. Defaults to {@link Grouping#PARTITION}.
+         *
+         * @param grouping the grouping.
+         * @return this builder.
+         */
+        public Builder withGrouping(Grouping grouping) {
+            this.grouping = grouping;
+            return this;
+        }
+
+        /**
+         * Sets the maximum number of statements in a batch. Defaults to {@link #DEFAULT_MAX_BATCH_SIZE}.
+         * <p/>
+         * Keep in mind that Cassandra warns about (and eventually rejects) batches whose size in bytes exceeds
+         * {@code batch_size_warn_threshold_in_kb} (resp. {@code batch_size_fail_threshold_in_kb}).
+         *
+         * @param maxBatchSize the maximum batch size.
+         * @return this builder.
+         * @throws IllegalArgumentException if {@code maxBatchSize < 1}.
+         */
+        public Builder withMaxBatchSize(int maxBatchSize) {
+            if (maxBatchSize < 1)
+                throw new IllegalArgumentException("maxBatchSize must be strictly positive, was " + maxBatchSize);
+            this.maxBatchSize = maxBatchSize;
+            return this;
+        }
+
+        /**
+         * Sets the time after which a group is sent, even if it is not full. Defaults to
+         * {@link #DEFAULT_MAX_BATCH_DELAY_MILLIS} milliseconds.
+         *
+         * @param delay the delay.
+         * @param unit  the unit of {@code delay}.
+         * @return this builder.
+         */
+        public Builder withMaxBatchDelay(long delay, TimeUnit unit) {
+            this.maxBatchDelayNanos = unit.toNanos(delay);
+            return this;
+        }
+
+        /**
+         * Sets the maximum number of batches in flight. Defaults to {@link #DEFAULT_MAX_CONCURRENT_BATCHES}.
+         *
+         * @param maxConcurrentBatches the maximum number of batches in flight.
+         * @return this builder.
+         * @throws IllegalArgumentException if {@code maxConcurrentBatches < 1}.
+         */
+        public Builder withMaxConcurrentBatches(int maxConcurrentBatches) {
+            if (maxConcurrentBatches < 1)
+                throw new IllegalArgumentException("maxConcurrentBatches must be strictly positive, was " + maxConcurrentBatches);
+            this.maxConcurrentBatches = maxConcurrentBatches;
+            return this;
+        }
+
+        /**
+         * Sets the maximum number of statements that were written but not acknowledged yet, beyond which
+         * {@link #write(Statement)} blocks. Defaults to twice the maximum batch size times the maximum number of
+         * concurrent batches.
+         *
+         * @param maxPendingStatements the maximum number of pending statements.
+         * @return this builder.
+         * @throws IllegalArgumentException if {@code maxPendingStatements < 1}.
+         */
+        public Builder withMaxPendingStatements(int maxPendingStatements) {
+            if (maxPendingStatements < 1)
+                throw new IllegalArgumentException("maxPendingStatements must be strictly positive, was " + maxPendingStatements);
+            this.maxPendingStatements = maxPendingStatements;
+            return this;
+        }
+
+        /**
+         * Builds the writer.
+         *
+         * @return the writer.
+         */
+        public BatchingWriter build() {
+            return new BatchingWriter(session, grouping, maxBatchSize, maxBatchDelayNanos, maxConcurrentBatches,
+                    maxPendingStatements > 0 ? maxPendingStatements : 2 * maxBatchSize * maxConcurrentBatches,
+                    Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder()
+                            .setNameFormat(session.getCluster().getClusterName() + "-batching-writer-%d")
+                            .setDaemon(true)
+                            .build()));
+        }
+    }
+}
@@ -65,6 +65,12 @@ public class BoundStatement extends Statement implements SettableData<BoundState
 
     private ByteBuffer routingKey;
 
+    // The routing key composed from the bound values, and the token of the last routing key that was hashed. These
+    // are only caches: the key is reset whenever a value is bound, and the token is only used if it was computed from
+    // the current routing key.
+    private volatile ByteBuffer composedRoutingKey;
+    private volatile RoutingToken routingToken;
+
     /**
      * Creates a new {@code BoundStatement} from the provided prepared
      * statement.
@@ -189,6 +195,8 @@ public class BoundStatement extends Statement implements SettableData<BoundState
             throw new IllegalArgumentException(String.format("Prepared statement has only %d variables, %d values provided", statement.getVariables().size(), values.length));
 
         for (int i = 0; i < values.length; i++) {
+            if (isRoutingKeyIndex(i))
+                composedRoutingKey = null;
             Object value = values[i];
             if (value == null) {
                 wrapper.values[i] = null;
@@ -241,6 +249,9 @@ public class BoundStatement extends Statement implements SettableData<BoundState
             if (rkIndexes.length == 1) {
                 return wrapper.values[rkIndexes[0]];
             } else {
+                ByteBuffer composed = composedRoutingKey;
+                if (composed != null)
+                    return composed;
                 ByteBuffer[] components = new ByteBuffer[rkIndexes.length];
                 for (int i = 0; i < components.length; ++i) {
                     ByteBuffer value = wrapper.values[rkIndexes[i]];
@@ -248,12 +259,51 @@ public class BoundStatement extends Statement implements SettableData<BoundState
                         return null;
                     components[i] = value;
                 }
-                return SimpleStatement.compose(components);
+                composed = SimpleStatement.compose(components);
+                composedRoutingKey = composed;
+                return composed;
             }
         }
         return null;
     }
 
+    // Whether the variable at index i is a component of the routing key computed from bound values
+    private boolean isRoutingKeyIndex(int i) {
+        int[] rkIndexes = statement.getPreparedId().routingKeyIndexes;
+        if (rkIndexes == null)
+            return false;
+        for (int rkIndex : rkIndexes) {
+            if (rkIndex == i)
+                return true;
+        }
+        return false;
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p/>
+     * The token is computed from {@link #getRoutingKey(ProtocolVersion, CodecRegistry)} the first time this method
+     * is called, and cached until the routing key changes. This returns {@code null} if there is no routing key, or
+     * if the partitioner of the cluster is not known yet.
+     */
+    @Override
+    public Token getRoutingToken() {
+        ByteBuffer key = getRoutingKey(null, null);
+        if (key == null)
+            return null;
+        RoutingToken cached = routingToken;
+        if (cached != null && cached.key == key)
+            return cached.token;
+        if (!(statement instanceof DefaultPreparedStatement))
+            return null;
+        Token.Factory factory = ((DefaultPreparedStatement) statement).cluster.manager.metadata.tokenFactory();
+        if (factory == null)
+            return null;
+        Token token = factory.hash(key);
+        routingToken = new RoutingToken(key, token);
+        return token;
+    }
+
     /**
      * Sets the routing key for this bound statement.
      * <p/>
@@ -296,6 +346,26 @@ public class BoundStatement extends Statement implements SettableData<BoundState
         return statement.getPreparedId().metadata.size() == 0 ? null : statement.getPreparedId().metadata.getKeyspace(0);
     }
 
+    /**
+     * {@inheritDoc}
+     * <p/>
+     * This looks for an {@code IF} clause in the query string of the prepared statement (which is only done
+     * once, when the statement is prepared).
+     */
+    @Override
+    public boolean isLWT() {
+        return (statement instanceof DefaultPreparedStatement)
+                ? ((DefaultPreparedStatement) statement).lwt
+                : ParseUtils.isConditionalUpdate(statement.getQueryString());
+    }
+
+    @Override
+    RowSizeTracker rowSizeTracker() {
+        return (statement instanceof DefaultPreparedStatement)
+                ? ((DefaultPreparedStatement) statement).rowSizeTracker
+                : null;
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -1377,12 +1447,30 @@ public class BoundStatement extends Statement implements SettableData<BoundState
         }
     }
 
+    private static class RoutingToken {
+        private final ByteBuffer key;
+        private final Token token;
+
+        private RoutingToken(ByteBuffer key, Token token) {
+            this.key = key;
+            this.token = token;
+        }
+    }
+
     static class DataWrapper extends AbstractData<BoundStatement> {
 
         DataWrapper(BoundStatement wrapped, int size) {
             super(wrapped.statement.getPreparedId().protocolVersion, wrapped, size);
         }
 
+        @Override
+        protected BoundStatement setValue(int i, ByteBuffer value) {
+            // Other variables don't change the key, keep it (and its token) cached
+            if (wrapped.isRoutingKeyIndex(i))
+                wrapped.composedRoutingKey = null;
+            return super.setValue(i, value);
+        }
+
         protected int[] getAllIndexesOf(String name) {
             return wrapped.statement.getVariables().getAllIdx(name);
         }
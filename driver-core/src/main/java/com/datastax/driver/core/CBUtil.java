@@ -159,7 +159,8 @@ abstract class CBUtil { // TODO rename
         int size = 2;
         for (Map.Entry<String, ByteBuffer> entry : m.entrySet()) {
             size += sizeOfString(entry.getKey());
-            size += sizeOfBytes(entry.getValue());
+            // values are written with writeValue, see writeBytesMap
+            size += sizeOfValue(entry.getValue());
         }
         return size;
     }
@@ -1055,6 +1055,20 @@ public class Cluster implements Closeable {
             return this;
         }
 
+        /**
+         * Configures the request throttling policy to use for the new cluster.
+         * <p/>
+         * If no policy is set through this method, {@link Policies#defaultRequestThrottlingPolicy()}
+         * will be used instead.
+         *
+         * @param policy the policy to use.
+         * @return this Builder.
+         */
+        public Builder withRequestThrottlingPolicy(RequestThrottlingPolicy policy) {
+            policiesBuilder.withRequestThrottlingPolicy(policy);
+            return this;
+        }
+
 
         /**
          * Configures the {@link CodecRegistry} instance to use for the new cluster.
@@ -1510,6 +1524,7 @@ public class Cluster implements Closeable {
                 loadBalancingPolicy().init(Cluster.this, contactPointHosts);
 
                 speculativeExecutionPolicy().init(Cluster.this);
+                requestThrottlingPolicy().init(Cluster.this);
                 configuration.getPolicies().getRetryPolicy().init(Cluster.this);
                 reconnectionPolicy().init(Cluster.this);
                 configuration.getPolicies().getAddressTranslator().init(Cluster.this);
@@ -1584,6 +1599,10 @@ public class Cluster implements Closeable {
             return configuration.getPolicies().getSpeculativeExecutionPolicy();
         }
 
+        RequestThrottlingPolicy requestThrottlingPolicy() {
+            return configuration.getPolicies().getRequestThrottlingPolicy();
+        }
+
         ReconnectionPolicy reconnectionPolicy() {
             return configuration.getPolicies().getReconnectionPolicy();
         }
@@ -1643,6 +1662,7 @@ public class Cluster implements Closeable {
 
                 loadBalancingPolicy().close();
                 speculativeExecutionPolicy().close();
+                requestThrottlingPolicy().close();
                 configuration.getPolicies().getRetryPolicy().close();
                 reconnectionPolicy().close();
                 configuration.getPolicies().getAddressTranslator().close();
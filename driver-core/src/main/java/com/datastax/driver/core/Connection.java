@@ -40,9 +40,9 @@ import org.slf4j.LoggerFactory;
 
 import java.lang.ref.WeakReference;
 import java.net.InetSocketAddress;
-import java.util.HashSet;
-import java.util.Iterator;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Queue;
 import java.util.concurrent.*;
 import java.util.concurrent.atomic.AtomicBoolean;
@@ -747,6 +747,10 @@ class Connection {
         private final ChannelGroup allChannels = new DefaultChannelGroup(GlobalEventExecutor.INSTANCE);
 
         private final ConcurrentMap<Host, AtomicInteger> idGenerators = new ConcurrentHashMap<Host, AtomicInteger>();
+        private final ConcurrentMap<EventLoop, Flusher> flusherLookup = new MapMaker()
+                .concurrencyLevel(16)
+                .weakKeys()
+                .makeMap();
         final DefaultResponseHandler defaultHandler;
         final Cluster.Manager manager;
         final Cluster.ConnectionReaper reaper;
@@ -904,15 +908,44 @@ class Connection {
         }
     }
 
-    private static final class Flusher implements Runnable {
+    /**
+     * Writes and flushes the requests queued for the connections of an event loop.
+     * <p/>
+     * The coalescing behavior is controlled by {@link SocketOptions#getCoalescingMaxDelayMicros()},
+     * {@link SocketOptions#getCoalescingMaxFramesPerFlush()} and {@link SocketOptions#isCoalescingAdaptive()}.
+     */
+    static final class Flusher implements Runnable {
+        // Adaptive mode: the delay grows if a run writes at least that many frames, and shrinks otherwise
+        private static final int ADAPTIVE_BUSY_THRESHOLD = 4;
+        private static final long ADAPTIVE_MIN_DELAY_NANOS = TimeUnit.MICROSECONDS.toNanos(1);
+
         final WeakReference<EventLoop> eventLoopRef;
         final Queue<FlushItem> queued = new ConcurrentLinkedQueue<FlushItem>();
         final AtomicBoolean running = new AtomicBoolean(false);
-        final HashSet<Channel> channels = new HashSet<Channel>();
+        final HashMap<Channel, PendingFlush> channels = new HashMap<Channel, PendingFlush>();
+        private final SocketOptions options;
+        private final PoolingOptions poolingOptions;
+        private final Cluster.Manager manager;
         int runsWithNoWork = 0;
+        long delayNanos = ADAPTIVE_MIN_DELAY_NANOS;
 
-        private Flusher(EventLoop eventLoop) {
+        Flusher(EventLoop eventLoop, Configuration configuration, Cluster.Manager manager) {
             this.eventLoopRef = new WeakReference<EventLoop>(eventLoop);
+            this.options = configuration.getSocketOptions();
+            this.poolingOptions = configuration.getPoolingOptions();
+            this.manager = manager;
+        }
+
+        void write(FlushItem item) {
+            Channel channel = item.channel;
+            // Nothing to coalesce if it's disabled, or if we're already on the channel's event loop
+            if (options.getCoalescingMaxDelayMicros() == 0
+                    || (poolingOptions.isEventLoopAffinity() && channel.eventLoop().inEventLoop())) {
+                channel.writeAndFlush(item.request).addListener(item.listener);
+            } else {
+                queued.add(item);
+                start();
+            }
         }
 
         void start() {
@@ -926,23 +959,28 @@ class Connection {
         @Override
         public void run() {
 
-            boolean doneWork = false;
+            int maxFramesPerFlush = options.getCoalescingMaxFramesPerFlush();
+            int framesWritten = 0;
             FlushItem flush;
             while (null != (flush = queued.poll())) {
                 Channel channel = flush.channel;
                 if (channel.isActive()) {
-                    channels.add(channel);
+                    PendingFlush pending = channels.get(channel);
+                    if (pending == null)
+                        channels.put(channel, pending = new PendingFlush());
                     channel.write(flush.request).addListener(flush.listener);
-                    doneWork = true;
+                    framesWritten += 1;
+                    if (++pending.frames == maxFramesPerFlush)
+                        flush(channel, pending);
                 }
             }
 
             // Always flush what we have (don't artificially delay to try to coalesce more messages)
-            for (Channel channel : channels)
-                channel.flush();
+            for (Map.Entry<Channel, PendingFlush> entry : channels.entrySet())
+                flush(entry.getKey(), entry.getValue());
             channels.clear();
 
-            if (doneWork) {
+            if (framesWritten > 0) {
                 runsWithNoWork = 0;
             } else {
                 // either reschedule or cancel
@@ -955,22 +993,41 @@ class Connection {
 
             EventLoop eventLoop = eventLoopRef.get();
             if (eventLoop != null && !eventLoop.isShuttingDown()) {
-                eventLoop.schedule(this, 10000, TimeUnit.NANOSECONDS);
+                eventLoop.schedule(this, nextDelayNanos(framesWritten), TimeUnit.NANOSECONDS);
             }
         }
+
+        private void flush(Channel channel, PendingFlush pending) {
+            if (pending.frames == 0)
+                return;
+            channel.flush();
+            Metrics metrics = manager.metrics;
+            if (metrics != null)
+                metrics.getFramesPerFlush().update(pending.frames);
+            pending.frames = 0;
+        }
+
+        private long nextDelayNanos(int framesWritten) {
+            long maxDelayNanos = TimeUnit.MICROSECONDS.toNanos(options.getCoalescingMaxDelayMicros());
+            if (!options.isCoalescingAdaptive())
+                return maxDelayNanos;
+            delayNanos = (framesWritten >= ADAPTIVE_BUSY_THRESHOLD)
+                    ? Math.min(delayNanos * 2, maxDelayNanos)
+                    : Math.max(delayNanos / 2, ADAPTIVE_MIN_DELAY_NANOS);
+            return delayNanos;
+        }
     }
 
-    private static final ConcurrentMap<EventLoop, Flusher> flusherLookup = new MapMaker()
-            .concurrencyLevel(16)
-            .weakKeys()
-            .makeMap();
+    private static class PendingFlush {
+        int frames;
+    }
 
-    private static class FlushItem {
+    static class FlushItem {
         final Channel channel;
         final Object request;
         final ChannelFutureListener listener;
 
-        private FlushItem(Channel channel, Object request, ChannelFutureListener listener) {
+        FlushItem(Channel channel, Object request, ChannelFutureListener listener) {
             this.channel = channel;
             this.request = request;
             this.listener = listener;
@@ -979,21 +1036,21 @@ class Connection {
 
     private void flush(FlushItem item) {
         EventLoop loop = item.channel.eventLoop();
+        ConcurrentMap<EventLoop, Flusher> flusherLookup = factory.flusherLookup;
         Flusher flusher = flusherLookup.get(loop);
         if (flusher == null) {
-            Flusher alt = flusherLookup.putIfAbsent(loop, flusher = new Flusher(loop));
+            Flusher alt = flusherLookup.putIfAbsent(loop, flusher = new Flusher(loop, factory.configuration, factory.manager));
             if (alt != null)
                 flusher = alt;
         }
 
-        flusher.queued.add(item);
-        flusher.start();
+        flusher.write(item);
     }
 
     class Dispatcher extends SimpleChannelInboundHandler<Message.Response> {
 
         final StreamIdGenerator streamIdHandler;
-        private final ConcurrentMap<Integer, ResponseHandler> pending = new ConcurrentHashMap<Integer, ResponseHandler>();
+        private final StreamIdTable<ResponseHandler> pending;
 
         Dispatcher() {
             ProtocolVersion protocolVersion = factory.protocolVersion;
@@ -1002,7 +1059,9 @@ class Connection {
                 // negociated yet.
                 protocolVersion = ProtocolVersion.V2;
             }
-            streamIdHandler = StreamIdGenerator.newInstance(protocolVersion);
+            streamIdHandler = StreamIdGenerator.newInstance(protocolVersion,
+                    factory.configuration.getPoolingOptions().getStreamIdAllocation());
+            pending = new StreamIdTable<ResponseHandler>(streamIdHandler.maxIds());
         }
 
         void add(ResponseHandler handler) {
@@ -1129,12 +1188,12 @@ class Connection {
         }
 
         void errorOutAllHandler(ConnectionException ce) {
-            Iterator<ResponseHandler> iter = pending.values().iterator();
-            while (iter.hasNext()) {
-                ResponseHandler handler = iter.next();
+            for (int streamId = 0; streamId < pending.capacity() && !pending.isEmpty(); streamId++) {
+                ResponseHandler handler = pending.remove(streamId);
+                if (handler == null)
+                    continue;
                 handler.cancelTimeout();
                 handler.callback.onException(Connection.this, ce, System.nanoTime() - handler.startTime, handler.retryCount);
-                iter.remove();
             }
         }
     }
@@ -1390,6 +1449,11 @@ class Connection {
         private static final Message.ProtocolEncoder messageEncoderV2 = new Message.ProtocolEncoder(ProtocolVersion.V2);
         private static final Message.ProtocolEncoder messageEncoderV3 = new Message.ProtocolEncoder(ProtocolVersion.V3);
         private static final Message.ProtocolEncoder messageEncoderV4 = new Message.ProtocolEncoder(ProtocolVersion.V4);
+        // Used when there is no compression: these write the frame header and body in a single pass
+        private static final Message.ProtocolEncoder framingMessageEncoderV1 = new Message.ProtocolEncoder(ProtocolVersion.V1, true);
+        private static final Message.ProtocolEncoder framingMessageEncoderV2 = new Message.ProtocolEncoder(ProtocolVersion.V2, true);
+        private static final Message.ProtocolEncoder framingMessageEncoderV3 = new Message.ProtocolEncoder(ProtocolVersion.V3, true);
+        private static final Message.ProtocolEncoder framingMessageEncoderV4 = new Message.ProtocolEncoder(ProtocolVersion.V4, true);
         private static final Frame.Encoder frameEncoder = new Frame.Encoder();
 
         private final ProtocolVersion protocolVersion;
@@ -1433,7 +1497,7 @@ class Connection {
             }
 
             pipeline.addLast("messageDecoder", messageDecoder);
-            pipeline.addLast("messageEncoder", messageEncoderFor(protocolVersion));
+            pipeline.addLast("messageEncoder", messageEncoderFor(protocolVersion, compressor == null));
 
             pipeline.addLast("idleStateHandler", idleStateHandler);
 
@@ -1442,16 +1506,16 @@ class Connection {
             nettyOptions.afterChannelInitialized(channel);
         }
 
-        private Message.ProtocolEncoder messageEncoderFor(ProtocolVersion version) {
+        private Message.ProtocolEncoder messageEncoderFor(ProtocolVersion version, boolean framing) {
             switch (version) {
                 case V1:
-                    return messageEncoderV1;
+                    return framing ? framingMessageEncoderV1 : messageEncoderV1;
                 case V2:
-                    return messageEncoderV2;
+                    return framing ? framingMessageEncoderV2 : messageEncoderV2;
                 case V3:
-                    return messageEncoderV3;
+                    return framing ? framingMessageEncoderV3 : messageEncoderV3;
                 case V4:
-                    return messageEncoderV4;
+                    return framing ? framingMessageEncoderV4 : messageEncoderV4;
                 default:
                     throw new DriverInternalError("Unsupported protocol version " + protocolVersion);
             }
@@ -32,6 +32,9 @@ public class DefaultPreparedStatement implements PreparedStatement {
     final String queryKeyspace;
     final Map<String, ByteBuffer> incomingPayload;
     final Cluster cluster;
+    final boolean lwt;
+    // Shared by all the bound statements, so that executions benefit from the size of previous results
+    final RowSizeTracker rowSizeTracker = new RowSizeTracker();
 
     volatile ByteBuffer routingKey;
 
@@ -48,6 +51,7 @@ public class DefaultPreparedStatement implements PreparedStatement {
         this.queryKeyspace = queryKeyspace;
         this.incomingPayload = incomingPayload;
         this.cluster = cluster;
+        this.lwt = ParseUtils.isConditionalUpdate(query);
     }
 
     static DefaultPreparedStatement fromMessage(Responses.Result.Prepared msg, Cluster cluster, String query, String queryKeyspace) {
@@ -22,8 +22,8 @@ import io.netty.channel.ChannelHandler;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.handler.codec.*;
 
-import java.util.EnumSet;
-import java.util.List;
+import java.nio.ByteBuffer;
+import java.util.*;
 
 /**
  * A frame for the CQL binary protocol.
@@ -159,6 +159,36 @@ class Frame {
             }
         }
 
+        /**
+         * Writes a request header.
+         *
+         * @param version    the protocol version in use
+         * @param flags      the serialized flags (see {@link Flag#serialize(EnumSet)})
+         * @param streamId   the stream id
+         * @param opcode     the request opcode
+         * @param bodyLength the length of the body that will follow the header
+         * @param dest       the buffer to write to
+         */
+        static void encode(ProtocolVersion version, int flags, int streamId, int opcode, int bodyLength, ByteBuf dest) {
+            // We don't bother with the direction, we only send requests.
+            dest.writeByte(version.toInt());
+            dest.writeByte(flags);
+            switch (version) {
+                case V1:
+                case V2:
+                    dest.writeByte(streamId);
+                    break;
+                case V3:
+                case V4:
+                    dest.writeShort(streamId);
+                    break;
+                default:
+                    throw version.unsupported();
+            }
+            dest.writeByte(opcode);
+            dest.writeInt(bodyLength);
+        }
+
         enum Flag {
             // The order of that enum matters!!
             COMPRESSED,
@@ -166,6 +196,10 @@ class Frame {
             CUSTOM_PAYLOAD,
             WARNING;
 
+            int mask() {
+                return 1 << ordinal();
+            }
+
             static EnumSet<Flag> deserialize(int flags) {
                 EnumSet<Flag> set = EnumSet.noneOf(Flag.class);
                 Flag[] values = Flag.values();
@@ -189,8 +223,44 @@ class Frame {
         return new Frame(header, newBody);
     }
 
+    /**
+     * Splits the incoming bytes into {@link Frame}s.
+     * <p/>
+     * If streaming decoding is enabled, uncompressed ROWS results of at least a given size are not accumulated into a
+     * single frame buffer. Instead, their rows are decoded as the bytes arrive from the network (see
+     * {@link Responses.Result.Rows.IncrementalDecoder}), and this decoder emits the resulting {@link Message.Response}
+     * directly, bypassing {@link Message.ProtocolDecoder}.
+     * <p/>
+     * Note that this only bounds the receive buffer of the connection: the response is still emitted once the whole
+     * frame has been read, with all the rows of the page decoded. Rows are not handed to the result set as they
+     * arrive, so the time to the first row is unchanged, and the decoded page is as large as with the regular path.
+     */
     static final class Decoder extends ByteToMessageDecoder {
+
+        /**
+         * The minimum body size of the ROWS results that are decoded incrementally (to avoid buffering their whole
+         * frame), or a negative value if streaming decoding is disabled.
+         */
+        private static final int STREAMING_THRESHOLD = SystemProperties.getBoolean("com.datastax.driver.STREAMING_ROWS_DECODING", false)
+                ? SystemProperties.getInt("com.datastax.driver.STREAMING_ROWS_DECODING_THRESHOLD_IN_KB", 64) * 1024
+                : -1;
+
+        private final int streamingThreshold;
         private DecoderForStreamIdSize decoder;
+        private int streamIdSize;
+
+        // The ROWS result currently being streamed, if any
+        private StreamedRows streamedRows;
+        // Whether the frame at the start of the buffer has already been found unfit for streaming
+        private boolean skipStreaming;
+
+        Decoder() {
+            this(STREAMING_THRESHOLD);
+        }
+
+        Decoder(int streamingThreshold) {
+            this.streamingThreshold = streamingThreshold;
+        }
 
         @Override
         protected void decode(ChannelHandlerContext ctx, ByteBuf buffer, List<Object> out) throws Exception {
@@ -203,12 +273,136 @@ class Frame {
                 int version = buffer.getByte(buffer.readerIndex());
                 // version first bit is the "direction" of the frame (request or response)
                 version = version & 0x7F;
-                decoder = new DecoderForStreamIdSize(version, version >= 3 ? 2 : 1);
+                streamIdSize = version >= 3 ? 2 : 1;
+                decoder = new DecoderForStreamIdSize(version, streamIdSize);
+            }
+
+            if (streamingThreshold >= 0) {
+                if (streamedRows == null && !skipStreaming)
+                    streamedRows = startStreaming(ctx, buffer);
+                if (streamedRows != null) {
+                    Message.Response response = streamedRows.decode(buffer);
+                    if (response != null) {
+                        streamedRows = null;
+                        out.add(response);
+                    }
+                    return;
+                }
             }
 
             Object frame = decoder.decode(ctx, buffer);
-            if (frame != null)
+            if (frame != null) {
+                skipStreaming = false;
                 out.add(frame);
+            }
+        }
+
+        /**
+         * Checks if the frame at the start of the buffer is a ROWS result that can be streamed, and if so consumes its
+         * header and result metadata.
+         *
+         * @return the streaming state, or null if the frame can't be streamed or if more bytes are needed to decide.
+         */
+        private StreamedRows startStreaming(ChannelHandlerContext ctx, ByteBuf buffer) {
+            int headerLength = 7 + streamIdSize;
+            if (buffer.readableBytes() < headerLength)
+                return null;
+
+            int start = buffer.readerIndex();
+            ProtocolVersion version = ProtocolVersion.fromInt(buffer.getByte(start) & 0x7F);
+            int flags = buffer.getByte(start + 1);
+            int streamId = streamIdSize == 2 ? buffer.getShort(start + 2) : buffer.getByte(start + 2);
+            int opcode = buffer.getByte(start + 2 + streamIdSize);
+            int bodyLength = buffer.getInt(start + 3 + streamIdSize);
+
+            // Oversized frames go through the regular decoder, which reports them
+            if (opcode != Message.Response.Type.RESULT.opcode
+                    || (flags & Header.Flag.COMPRESSED.mask()) != 0
+                    || bodyLength < streamingThreshold
+                    || bodyLength > DecoderForStreamIdSize.MAX_FRAME_LENGTH) {
+                skipStreaming = true;
+                return null;
+            }
+
+            int available = Math.min(buffer.readableBytes() - headerLength, bodyLength);
+            ByteBuf body = buffer.slice(start + headerLength, available);
+            Header header = new Header(version, flags, streamId, opcode);
+            try {
+                UUID tracingId = header.flags.contains(Header.Flag.TRACING) ? CBUtil.readUUID(body) : null;
+                Map<String, ByteBuffer> customPayload = header.flags.contains(Header.Flag.CUSTOM_PAYLOAD) ? CBUtil.readBytesMap(body) : null;
+                List<String> warnings = header.flags.contains(Header.Flag.WARNING) ? CBUtil.readStringList(body) : Collections.<String>emptyList();
+                if (Responses.Result.Kind.fromId(body.readInt()) != Responses.Result.Kind.ROWS) {
+                    skipStreaming = true;
+                    return null;
+                }
+                CodecRegistry codecRegistry = ctx.channel().attr(Message.CODEC_REGISTRY_ATTRIBUTE_KEY).get();
+                assert codecRegistry != null;
+                Responses.Result.Rows.IncrementalDecoder rows = Responses.Result.Rows.IncrementalDecoder.start(body, version, codecRegistry);
+
+                buffer.skipBytes(headerLength + body.readerIndex());
+                return new StreamedRows(header, bodyLength - body.readerIndex(), tracingId, customPayload, warnings, rows);
+            } catch (IndexOutOfBoundsException e) {
+                return waitForMetadata(available, bodyLength);
+            } catch (DriverInternalError e) {
+                // CBUtil reports truncated input this way
+                return waitForMetadata(available, bodyLength);
+            }
+        }
+
+        private StreamedRows waitForMetadata(int available, int bodyLength) {
+            // The metadata is incomplete. If the whole body is there, it is malformed: let the regular decoding
+            // path report the error. Otherwise, wait for more bytes.
+            if (available == bodyLength)
+                skipStreaming = true;
+            return null;
+        }
+
+        private static class StreamedRows {
+            private final Header header;
+            private final UUID tracingId;
+            private final Map<String, ByteBuffer> customPayload;
+            private final List<String> warnings;
+            private final Responses.Result.Rows.IncrementalDecoder rows;
+            private int remaining;
+            private boolean rowsDone;
+
+            StreamedRows(Header header, int remaining, UUID tracingId, Map<String, ByteBuffer> customPayload,
+                         List<String> warnings, Responses.Result.Rows.IncrementalDecoder rows) {
+                this.header = header;
+                this.remaining = remaining;
+                this.tracingId = tracingId;
+                this.customPayload = customPayload;
+                this.warnings = warnings;
+                this.rows = rows;
+            }
+
+            /**
+             * Decodes the complete rows available in the buffer, without reading past the end of the frame.
+             *
+             * @return the response once the whole frame has been read, null otherwise.
+             */
+            Message.Response decode(ByteBuf buffer) {
+                int frameBytes = Math.min(buffer.readableBytes(), remaining);
+                ByteBuf body = buffer.slice(buffer.readerIndex(), frameBytes);
+                if (!rowsDone)
+                    rowsDone = rows.decodeAvailable(body);
+                if (!rowsDone && frameBytes == remaining)
+                    throw new DriverInternalError(String.format("ROWS result ended after %d rows, before the announced row count", rows.decodedRows()));
+                // Skip any trailing bytes once all rows are read
+                if (rowsDone)
+                    body.skipBytes(body.readableBytes());
+
+                buffer.skipBytes(body.readerIndex());
+                remaining -= body.readerIndex();
+                if (remaining > 0)
+                    return null;
+                Message.Response response = rows.result()
+                        .setTracingId(tracingId)
+                        .setWarnings(warnings);
+                response.setCustomPayload(customPayload)
+                        .setStreamId(header.streamId);
+                return response;
+            }
         }
 
         static class DecoderForStreamIdSize extends LengthFieldBasedFrameDecoder {
@@ -258,31 +452,12 @@ class Frame {
         protected void encode(ChannelHandlerContext ctx, Frame frame, List<Object> out) throws Exception {
             ProtocolVersion protocolVersion = frame.header.version;
             ByteBuf header = ctx.alloc().ioBuffer(Frame.Header.lengthFor(protocolVersion));
-            // We don't bother with the direction, we only send requests.
-            header.writeByte(frame.header.version.toInt());
-            header.writeByte(Header.Flag.serialize(frame.header.flags));
-            writeStreamId(frame.header.streamId, header, protocolVersion);
-            header.writeByte(frame.header.opcode);
-            header.writeInt(frame.body.readableBytes());
+            Header.encode(protocolVersion, Header.Flag.serialize(frame.header.flags), frame.header.streamId,
+                    frame.header.opcode, frame.body.readableBytes(), header);
 
             out.add(header);
             out.add(frame.body);
         }
-
-        private void writeStreamId(int streamId, ByteBuf header, ProtocolVersion protocolVersion) {
-            switch (protocolVersion) {
-                case V1:
-                case V2:
-                    header.writeByte(streamId);
-                    break;
-                case V3:
-                case V4:
-                    header.writeShort(streamId);
-                    break;
-                default:
-                    throw protocolVersion.unsupported();
-            }
-        }
     }
 
     static class Decompressor extends MessageToMessageDecoder<Frame> {
@@ -24,6 +24,7 @@ import org.slf4j.LoggerFactory;
 import java.net.InetAddress;
 import java.net.InetSocketAddress;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.concurrent.locks.ReentrantLock;
 
@@ -68,6 +69,9 @@ public class Host {
 
     final ExecutionInfo defaultExecutionInfo;
 
+    // The number of requests in flight to this host, across the pools of all sessions (maintained by HostConnectionPool)
+    final AtomicInteger inFlightQueries = new AtomicInteger();
+
     private volatile String datacenter;
     private volatile String rack;
     private volatile VersionNumber cassandraVersion;
@@ -296,6 +300,19 @@ public class Host {
         this.tokens = tokens;
     }
 
+    /**
+     * Returns the number of requests currently in flight to this host, across all the sessions of the
+     * {@code Cluster}.
+     * <p/>
+     * Unlike {@link Session.State#getInFlightQueries(Host)}, this does not take a snapshot of the sessions, and is
+     * cheap enough to be called for every query plan (see for example {@link com.datastax.driver.core.policies.LeastInFlightPolicy}).
+     *
+     * @return the number of requests in flight to this host.
+     */
+    public int getInFlightQueries() {
+        return inFlightQueries.get();
+    }
+
     /**
      * Returns whether the host is considered up by the driver.
      * <p/>
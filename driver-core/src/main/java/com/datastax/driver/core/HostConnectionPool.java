@@ -24,7 +24,9 @@ import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Throwables;
 import com.google.common.collect.Lists;
 import com.google.common.util.concurrent.*;
+import io.netty.channel.Channel;
 import io.netty.util.concurrent.EventExecutor;
+import io.netty.util.concurrent.FastThreadLocalThread;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -41,6 +43,13 @@ class HostConnectionPool implements Connection.Owner {
 
     private static final int MAX_SIMULTANEOUS_CREATION = 1;
 
+    private static final ThreadLocal<Random> RANDOM = new ThreadLocal<Random>() {
+        @Override
+        protected Random initialValue() {
+            return new Random();
+        }
+    };
+
     final Host host;
     volatile HostDistance hostDistance;
     protected final SessionManager manager;
@@ -55,6 +64,7 @@ class HostConnectionPool implements Connection.Owner {
      * The maximum value of {@link #totalInFlight} since the last call to {@link #cleanupIdleConnections(long)}
      */
     private final AtomicInteger maxTotalInFlight = new AtomicInteger();
+    final AdaptiveConcurrencyLimit concurrencyLimit;
     @VisibleForTesting
     final Set<Connection> trash = new CopyOnWriteArraySet<Connection>();
 
@@ -96,6 +106,7 @@ class HostConnectionPool implements Connection.Owner {
         this.open = new AtomicInteger();
 
         this.minAllowedStreams = options().getMaxRequestsPerConnection(hostDistance) * 3 / 4;
+        this.concurrencyLimit = new AdaptiveConcurrencyLimit(options(), hostDistance);
 
         this.timeoutsExecutor = manager.getCluster().manager.connectionFactory.eventLoopGroup.next();
     }
@@ -216,17 +227,28 @@ class HostConnectionPool implements Connection.Owner {
             }
         }
 
-        int minInFlight = Integer.MAX_VALUE;
-        Connection leastBusy = null;
-        for (Connection connection : connections) {
-            int inFlight = connection.inFlight.get();
-            if (inFlight < minInFlight) {
-                minInFlight = inFlight;
-                leastBusy = connection;
+        // With an adaptive limit, reserve the slot upfront so that concurrent borrowers can't exceed it. 0 if no slot
+        // was reserved, otherwise the total number of requests in flight including this one.
+        int reservedInFlight = 0;
+        if (concurrencyLimit.isEnabled()) {
+            int limit = concurrencyLimit.current(hostDistance);
+            while (reservedInFlight == 0) {
+                int inFlight = totalInFlight.get();
+                if (inFlight >= limit)
+                    return Futures.immediateFailedFuture(new BusyPoolException(host.getSocketAddress(), inFlight, limit));
+                if (totalInFlight.compareAndSet(inFlight, inFlight + 1))
+                    reservedInFlight = inFlight + 1;
             }
         }
 
+        Connection leastBusy = options().isEventLoopAffinity() ? currentEventLoopConnection() : null;
+        if (leastBusy == null)
+            leastBusy = options().getConnectionSelection().select(connections);
+
         if (leastBusy == null) {
+            // Enqueued borrows are counted when they get a connection (see dequeue)
+            if (reservedInFlight > 0)
+                totalInFlight.decrementAndGet();
             // We could have raced with a shutdown since the last check
             if (isClosed())
                 return Futures.immediateFailedFuture(new ConnectionException(host.getSocketAddress(), "Pool is shutdown"));
@@ -239,7 +261,17 @@ class HostConnectionPool implements Connection.Owner {
                 int inFlight = leastBusy.inFlight.get();
 
                 if (inFlight >= Math.min(leastBusy.maxAvailableStreams(), options().getMaxRequestsPerConnection(hostDistance))) {
-                    return enqueue(timeout, unit, maxQueueSize);
+                    // The selection strategy might not have considered every connection, check them all before
+                    // enqueuing
+                    Connection fallback = leastBusy(connections);
+                    if (fallback == null || fallback == leastBusy
+                            || fallback.inFlight.get() >= Math.min(fallback.maxAvailableStreams(), options().getMaxRequestsPerConnection(hostDistance))) {
+                        if (reservedInFlight > 0)
+                            totalInFlight.decrementAndGet();
+                        return enqueue(timeout, unit, maxQueueSize);
+                    }
+                    leastBusy = fallback;
+                    continue;
                 }
 
                 if (leastBusy.inFlight.compareAndSet(inFlight, inFlight + 1))
@@ -247,7 +279,13 @@ class HostConnectionPool implements Connection.Owner {
             }
         }
 
-        int totalInFlightCount = totalInFlight.incrementAndGet();
+        int totalInFlightCount;
+        if (reservedInFlight > 0) {
+            host.inFlightQueries.incrementAndGet();
+            totalInFlightCount = reservedInFlight;
+        } else {
+            totalInFlightCount = incrementInFlight();
+        }
         // update max atomically:
         while (true) {
             int oldMax = maxTotalInFlight.get();
@@ -269,6 +307,57 @@ class HostConnectionPool implements Connection.Owner {
         return leastBusy.setKeyspaceAsync(manager.poolsState.keyspace);
     }
 
+    /**
+     * @return a connection bound to the event loop of the current thread that can accept a new request, or null if
+     * there is none (including if the current thread is not an event loop).
+     */
+    private Connection currentEventLoopConnection() {
+        // Event loop threads are FastThreadLocalThread instances, this avoids scanning the connections for every other
+        // thread
+        if (!(Thread.currentThread() instanceof FastThreadLocalThread))
+            return null;
+        for (Connection connection : connections) {
+            Channel channel = connection.channel;
+            if (channel != null && channel.eventLoop().inEventLoop()
+                    && connection.inFlight.get() < Math.min(connection.maxAvailableStreams(), options().getMaxRequestsPerConnection(hostDistance)))
+                return connection;
+        }
+        return null;
+    }
+
+    static Connection leastBusy(List<Connection> connections) {
+        int minInFlight = Integer.MAX_VALUE;
+        Connection leastBusy = null;
+        for (Connection connection : connections) {
+            int inFlight = connection.inFlight.get();
+            if (inFlight < minInFlight) {
+                minInFlight = inFlight;
+                leastBusy = connection;
+            }
+        }
+        return leastBusy;
+    }
+
+    static Connection lessBusyOfTwo(List<Connection> connections) {
+        try {
+            int size = connections.size();
+            if (size <= 1)
+                return size == 0 ? null : connections.get(0);
+            Random random = RANDOM.get();
+            int i = random.nextInt(size);
+            // Pick a second index among the other size - 1 connections
+            int j = random.nextInt(size - 1);
+            if (j >= i)
+                j += 1;
+            Connection first = connections.get(i);
+            Connection second = connections.get(j);
+            return second.inFlight.get() < first.inFlight.get() ? second : first;
+        } catch (IndexOutOfBoundsException e) {
+            // A connection was removed concurrently
+            return leastBusy(connections);
+        }
+    }
+
     private ListenableFuture<Connection> enqueue(long timeout, TimeUnit unit, int maxQueueSize) {
         if (timeout == 0 || maxQueueSize == 0) {
             return Futures.immediateFailedFuture(new BusyPoolException(host.getSocketAddress(), 0));
@@ -296,9 +385,15 @@ class HostConnectionPool implements Connection.Owner {
         return pendingBorrow.future;
     }
 
+    private int incrementInFlight() {
+        host.inFlightQueries.incrementAndGet();
+        return totalInFlight.incrementAndGet();
+    }
+
     void returnConnection(Connection connection) {
         connection.inFlight.decrementAndGet();
         totalInFlight.decrementAndGet();
+        host.inFlightQueries.decrementAndGet();
 
         if (isClosed()) {
             close(connection);
@@ -350,7 +445,7 @@ class HostConnectionPool implements Connection.Owner {
                 if (setKeyspaceFuture.isDone()) {
                     try {
                         if (pendingBorrow.set(Uninterruptibles.getUninterruptibly(setKeyspaceFuture))) {
-                            totalInFlight.incrementAndGet();
+                            incrementInFlight();
                         } else {
                             connection.inFlight.decrementAndGet();
                         }
@@ -365,7 +460,7 @@ class HostConnectionPool implements Connection.Owner {
                         @Override
                         public void onSuccess(Connection c) {
                             if (pendingBorrow.set(c)) {
-                                totalInFlight.incrementAndGet();
+                                incrementInFlight();
                             } else {
                                 connection.inFlight.decrementAndGet();
                             }
@@ -300,27 +300,41 @@ abstract class Message {
 
     }
 
+    /**
+     * Encodes requests into {@link Frame}s, that are then turned into bytes by {@link Frame.Encoder} (possibly after
+     * going through {@link Frame.Compressor}).
+     * <p/>
+     * If {@code writeHeader} is set, this encoder writes the frame header and body in a single buffer instead, sized
+     * upfront, and skips the {@code Frame} step entirely. This is only possible when the frame is not compressed,
+     * since compression needs the body in a separate buffer.
+     */
     @ChannelHandler.Sharable
     static class ProtocolEncoder extends MessageToMessageEncoder<Request> {
 
         private final ProtocolVersion protocolVersion;
+        private final boolean writeHeader;
 
         ProtocolEncoder(ProtocolVersion version) {
+            this(version, false);
+        }
+
+        ProtocolEncoder(ProtocolVersion version, boolean writeHeader) {
             this.protocolVersion = version;
+            this.writeHeader = writeHeader;
         }
 
         @Override
         protected void encode(ChannelHandlerContext ctx, Request request, List<Object> out) throws Exception {
-            EnumSet<Frame.Header.Flag> flags = EnumSet.noneOf(Frame.Header.Flag.class);
+            int flags = 0;
             if (request.isTracingRequested())
-                flags.add(Frame.Header.Flag.TRACING);
+                flags |= Frame.Header.Flag.TRACING.mask();
             Map<String, ByteBuffer> customPayload = request.getCustomPayload();
             if (customPayload != null) {
                 if (protocolVersion.compareTo(ProtocolVersion.V4) < 0)
                     throw new UnsupportedFeatureException(
                             protocolVersion,
                             "Custom payloads are only supported since native protocol V4");
-                flags.add(Frame.Header.Flag.CUSTOM_PAYLOAD);
+                flags |= Frame.Header.Flag.CUSTOM_PAYLOAD.mask();
             }
 
             @SuppressWarnings("unchecked")
@@ -331,16 +345,32 @@ abstract class Message {
                 payloadLength = CBUtil.sizeOfBytesMap(customPayload);
                 messageSize += payloadLength;
             }
-            ByteBuf body = ctx.alloc().buffer(messageSize);
+
+            ByteBuf buffer;
+            int bodyStart = 0;
+            if (writeHeader) {
+                buffer = ctx.alloc().ioBuffer(Frame.Header.lengthFor(protocolVersion) + messageSize);
+                // The length is a placeholder, it is set once the body is written
+                Frame.Header.encode(protocolVersion, flags, request.getStreamId(), request.type.opcode, 0, buffer);
+                bodyStart = buffer.writerIndex();
+            } else {
+                buffer = ctx.alloc().buffer(messageSize);
+            }
+
             if (customPayload != null) {
-                CBUtil.writeBytesMap(customPayload, body);
+                CBUtil.writeBytesMap(customPayload, buffer);
                 if (logger.isTraceEnabled()) {
                     logger.trace("Sending payload: {} ({} bytes total)", printPayload(customPayload), payloadLength);
                 }
             }
 
-            coder.encode(request, body, protocolVersion);
-            out.add(Frame.create(protocolVersion, request.type.opcode, request.getStreamId(), flags, body));
+            coder.encode(request, buffer, protocolVersion);
+            if (writeHeader) {
+                // The length is the last field of the header
+                buffer.setInt(bodyStart - 4, buffer.writerIndex() - bodyStart);
+                out.add(buffer);
+            } else
+                out.add(Frame.create(protocolVersion, request.type.opcode, request.getStreamId(), Frame.Header.Flag.deserialize(flags), buffer));
         }
     }
 
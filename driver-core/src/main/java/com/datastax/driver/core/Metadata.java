@@ -43,6 +43,12 @@ public class Metadata {
     final ConcurrentMap<String, KeyspaceMetadata> keyspaces = new ConcurrentHashMap<String, KeyspaceMetadata>();
     private volatile TokenMap tokenMap;
 
+    // Whether per-keyspace replicas are computed when the keyspace is first used, rather than each time the token map
+    // is built. This shortens initialization and schema refreshes, and saves memory for keyspaces that are never
+    // queried, but moves the cost to the first query of each keyspace.
+    private static final boolean LAZY_REPLICA_COMPUTATION = SystemProperties.getBoolean("com.datastax.driver.LAZY_REPLICA_COMPUTATION", false);
+    volatile boolean lazyReplicas = LAZY_REPLICA_COMPUTATION;
+
     final ReentrantLock lock = new ReentrantLock();
 
     private static final Pattern alphanumeric = Pattern.compile("\\w+"); // this includes _
@@ -68,13 +74,7 @@ public class Metadata {
         try {
             if (tokenMap == null)
                 return;
-            this.tokenMap = TokenMap.build(
-                    tokenMap.factory,
-                    tokenMap.primaryToTokens,
-                    keyspaces.values(),
-                    tokenMap.ring,
-                    tokenMap.tokenRanges,
-                    tokenMap.tokenToPrimary);
+            this.tokenMap = tokenMap.withKeyspaces(keyspaces.values());
         } finally {
             lock.unlock();
         }
@@ -84,7 +84,10 @@ public class Metadata {
     void rebuildTokenMap(Token.Factory factory, Map<Host, Set<Token>> allTokens) {
         lock.lock();
         try {
-            this.tokenMap = TokenMap.build(factory, allTokens, keyspaces.values());
+            TokenMap current = tokenMap;
+            this.tokenMap = (current != null && current.factory == factory)
+                    ? current.update(allTokens, keyspaces.values(), lazyReplicas)
+                    : TokenMap.build(factory, allTokens, keyspaces.values(), lazyReplicas);
         } finally {
             lock.unlock();
         }
@@ -267,13 +270,8 @@ public class Metadata {
         if (current == null) {
             return Collections.emptySet();
         } else {
-            Map<Host, Set<TokenRange>> dcRanges = current.hostsToRangesByKeyspace.get(keyspace);
-            if (dcRanges == null) {
-                return Collections.emptySet();
-            } else {
-                Set<TokenRange> ranges = dcRanges.get(host);
-                return (ranges == null) ? Collections.<TokenRange>emptySet() : ranges;
-            }
+            Set<TokenRange> ranges = current.getTokenRanges(keyspace, host);
+            return (ranges == null) ? Collections.<TokenRange>emptySet() : ranges;
         }
     }
 
@@ -297,7 +295,32 @@ public class Metadata {
         if (current == null) {
             return Collections.emptySet();
         } else {
-            Set<Host> hosts = current.getReplicas(keyspace, current.factory.hash(partitionKey));
+            Set<Host> hosts = current.getReplicas(keyspace, partitionKey);
+            return hosts == null ? Collections.<Host>emptySet() : hosts;
+        }
+    }
+
+    /**
+     * Returns the set of hosts that are replica for a given token.
+     * <p/>
+     * Note that this information is refreshed asynchronously by the control
+     * connection, when schema or ring topology changes. It might occasionally
+     * be stale (or even empty).
+     *
+     * @param keyspace the name of the keyspace to get replicas for.
+     * @param token    the token, typically obtained with {@link #newToken(ByteBuffer...)} or
+     *                 {@link Statement#getRoutingToken()}.
+     * @return the (immutable) set of replicas for {@code token} as known by the driver.
+     * Note that the result might be stale or empty if metadata was explicitly disabled
+     * with {@link QueryOptions#setMetadataEnabled(boolean)}.
+     */
+    public Set<Host> getReplicas(String keyspace, Token token) {
+        keyspace = handleId(keyspace);
+        TokenMap current = tokenMap;
+        if (current == null) {
+            return Collections.emptySet();
+        } else {
+            Set<Host> hosts = current.getReplicas(keyspace, token);
             return hosts == null ? Collections.<Host>emptySet() : hosts;
         }
     }
@@ -392,7 +415,7 @@ public class Metadata {
     KeyspaceMetadata removeKeyspace(String keyspace) {
         KeyspaceMetadata removed = keyspaces.remove(keyspace);
         if (tokenMap != null)
-            tokenMap.tokenToHostsByKeyspace.remove(keyspace);
+            tokenMap.removeKeyspace(keyspace);
         return removed;
     }
 
@@ -619,35 +642,59 @@ public class Metadata {
 
     private static class TokenMap {
 
+        // The key of keyspaces without a known replication strategy in replicasByStrategy
+        private static final Object NON_REPLICATED = new Object();
+
         private final Token.Factory factory;
         private final Map<Host, Set<Token>> primaryToTokens;
-        private final Map<String, Map<Token, Set<Host>>> tokenToHostsByKeyspace;
-        private final Map<String, Map<Host, Set<TokenRange>>> hostsToRangesByKeyspace;
         private final List<Token> ring;
         private final Set<TokenRange> tokenRanges;
         private final Map<Token, Host> tokenToPrimary;
+        // The location of each host when the map was built, keyed by identity to detect hosts that were replaced
+        private final Map<Host, String> hostLocations;
+        // Murmur3 only (null otherwise): the ring as primitive values, for allocation-free lookups by partition key
+        private final long[] m3pRing;
+
+        private final boolean lazy;
+        private final ConcurrentMap<String, KeyspaceMetadata> keyspaces;
+        private final ConcurrentMap<String, ReplicaMaps> replicasByKeyspace = new ConcurrentHashMap<String, ReplicaMaps>();
+        // Keyspaces with the same replication strategy share the same maps. Each strategy is computed under its own
+        // lock, so that lookups for other strategies don't wait for it.
+        private final ConcurrentMap<Object, StrategyReplicas> replicasByStrategy = new ConcurrentHashMap<Object, StrategyReplicas>();
 
         private TokenMap(Token.Factory factory,
                          List<Token> ring,
                          Set<TokenRange> tokenRanges,
                          Map<Token, Host> tokenToPrimary,
                          Map<Host, Set<Token>> primaryToTokens,
-                         Map<String, Map<Token, Set<Host>>> tokenToHostsByKeyspace,
-                         Map<String, Map<Host, Set<TokenRange>>> hostsToRangesByKeyspace) {
+                         Collection<KeyspaceMetadata> keyspaces,
+                         boolean lazy) {
             this.factory = factory;
             this.ring = ring;
             this.tokenRanges = tokenRanges;
             this.tokenToPrimary = tokenToPrimary;
             this.primaryToTokens = primaryToTokens;
-            this.tokenToHostsByKeyspace = tokenToHostsByKeyspace;
-            this.hostsToRangesByKeyspace = hostsToRangesByKeyspace;
+            this.lazy = lazy;
+            this.keyspaces = new ConcurrentHashMap<String, KeyspaceMetadata>(keyspaces.size());
+            for (KeyspaceMetadata keyspace : keyspaces)
+                this.keyspaces.put(keyspace.getName(), keyspace);
+            this.hostLocations = new IdentityHashMap<Host, String>(primaryToTokens.size());
+            for (Host host : primaryToTokens.keySet())
+                hostLocations.put(host, location(host));
+            if (factory == Token.M3PToken.FACTORY) {
+                this.m3pRing = new long[ring.size()];
+                for (int i = 0; i < ring.size(); i++)
+                    m3pRing[i] = (Long) ring.get(i).getValue();
+            } else {
+                this.m3pRing = null;
+            }
             for (Map.Entry<Host, Set<Token>> entry : primaryToTokens.entrySet()) {
                 Host host = entry.getKey();
                 host.setTokens(ImmutableSet.copyOf(entry.getValue()));
             }
         }
 
-        private static TokenMap build(Token.Factory factory, Map<Host, Set<Token>> allTokens, Collection<KeyspaceMetadata> keyspaces) {
+        private static TokenMap build(Token.Factory factory, Map<Host, Set<Token>> allTokens, Collection<KeyspaceMetadata> keyspaces, boolean lazy) {
             Map<Token, Host> tokenToPrimary = new HashMap<Token, Host>();
             Set<Token> allSorted = new TreeSet<Token>();
             for (Map.Entry<Host, ? extends Collection<Token>> entry : allTokens.entrySet()) {
@@ -663,46 +710,200 @@ public class Metadata {
             }
             List<Token> ring = new ArrayList<Token>(allSorted);
             Set<TokenRange> tokenRanges = makeTokenRanges(ring, factory);
-            return build(factory, allTokens, keyspaces, ring, tokenRanges, tokenToPrimary);
+            return build(factory, allTokens, keyspaces, ring, tokenRanges, tokenToPrimary, lazy, null);
         }
 
-        private static TokenMap build(Token.Factory factory, Map<Host, Set<Token>> allTokens, Collection<KeyspaceMetadata> keyspaces, List<Token> ring, Set<TokenRange> tokenRanges, Map<Token, Host> tokenToPrimary) {
-            Set<Host> hosts = allTokens.keySet();
-            Map<String, Map<Token, Set<Host>>> tokenToHosts = new HashMap<String, Map<Token, Set<Host>>>();
-            Map<ReplicationStrategy, Map<Token, Set<Host>>> replStrategyToHosts = new HashMap<ReplicationStrategy, Map<Token, Set<Host>>>();
-            Map<String, Map<Host, Set<TokenRange>>> hostsToRanges = new HashMap<String, Map<Host, Set<TokenRange>>>();
+        private static TokenMap build(Token.Factory factory, Map<Host, Set<Token>> allTokens, Collection<KeyspaceMetadata> keyspaces, List<Token> ring, Set<TokenRange> tokenRanges, Map<Token, Host> tokenToPrimary, boolean lazy, PreviousReplicas previous) {
+            TokenMap tokenMap = new TokenMap(factory, ring, tokenRanges, tokenToPrimary, allTokens, keyspaces, lazy);
             for (KeyspaceMetadata keyspace : keyspaces) {
-                ReplicationStrategy strategy = keyspace.replicationStrategy();
-                Map<Token, Set<Host>> ksTokens = replStrategyToHosts.get(strategy);
-                if (ksTokens == null) {
-                    ksTokens = (strategy == null)
-                            ? makeNonReplicatedMap(tokenToPrimary)
-                            : strategy.computeTokenToReplicaMap(keyspace.getName(), tokenToPrimary, ring);
-                    replStrategyToHosts.put(strategy, ksTokens);
+                // In lazy mode, still carry over the strategies that were in use, since it's cheap
+                if (!lazy || (previous != null && previous.has(keyspace.replicationStrategy())))
+                    tokenMap.computeReplicas(keyspace.getName(), previous);
+            }
+            return tokenMap;
+        }
+
+        /**
+         * Builds the map for a new set of keyspaces, on the same ring. The replicas of the strategies that were
+         * already computed are reused.
+         */
+        private TokenMap withKeyspaces(Collection<KeyspaceMetadata> keyspaces) {
+            return build(factory, primaryToTokens, keyspaces, ring, tokenRanges, tokenToPrimary, lazy, new PreviousReplicas(this));
+        }
+
+        /**
+         * Builds the map for a new set of hosts. If a single host was added or removed, this only recomputes the
+         * replicas of the ranges that depend on its tokens, the rest is copied from this map.
+         */
+        private TokenMap update(Map<Host, Set<Token>> allTokens, Collection<KeyspaceMetadata> keyspaces, boolean lazy) {
+            Host changedHost = null;
+            for (Map.Entry<Host, Set<Token>> entry : allTokens.entrySet()) {
+                Host host = entry.getKey();
+                Set<Token> previousTokens = primaryToTokens.get(host);
+                if (previousTokens != null && previousTokens.equals(entry.getValue()) && location(host).equals(hostLocations.get(host)))
+                    continue;
+                // Tokens or location changed, new instance for the same address, or several new hosts
+                if (previousTokens != null || changedHost != null)
+                    return build(factory, allTokens, keyspaces, lazy);
+                changedHost = host;
+            }
+            boolean added = (changedHost != null);
+            for (Host host : primaryToTokens.keySet()) {
+                if (!allTokens.containsKey(host)) {
+                    if (changedHost != null)
+                        return build(factory, allTokens, keyspaces, lazy);
+                    changedHost = host;
                 }
+            }
+            if (changedHost == null)
+                return (lazy == this.lazy) ? this : build(factory, allTokens, keyspaces, lazy);
+
+            List<Token> hostTokens = new ArrayList<Token>(added ? allTokens.get(changedHost) : primaryToTokens.get(changedHost));
+            Map<Token, Host> newTokenToPrimary = new HashMap<Token, Host>(tokenToPrimary);
+            List<Token> newRing;
+            for (Token token : hostTokens) {
+                Host previous = added ? newTokenToPrimary.put(token, changedHost) : newTokenToPrimary.remove(token);
+                // Each token is supposed to have a single owner, don't try to deal with anything else
+                if (added ? previous != null : previous != changedHost)
+                    return build(factory, allTokens, keyspaces, lazy);
+            }
+            if (added) {
+                newRing = new ArrayList<Token>(ring.size() + hostTokens.size());
+                newRing.addAll(ring);
+                newRing.addAll(hostTokens);
+                Collections.sort(newRing);
+            } else {
+                newRing = new ArrayList<Token>(ring.size() - hostTokens.size());
+                for (Token token : ring)
+                    if (newTokenToPrimary.containsKey(token))
+                        newRing.add(token);
+            }
+            PreviousReplicas previous = added
+                    ? new PreviousReplicas(this, tokenToPrimary, ring, hostTokens)
+                    : new PreviousReplicas(this, newTokenToPrimary, newRing, hostTokens);
+            return build(factory, allTokens, keyspaces, newRing, makeTokenRanges(newRing, factory), newTokenToPrimary, lazy, previous);
+        }
+
+        private ReplicaMaps replicas(String keyspace) {
+            ReplicaMaps maps = replicasByKeyspace.get(keyspace);
+            // Unknown keyspaces have nothing to compute, return without locking
+            return (maps != null || !lazy || !keyspaces.containsKey(keyspace)) ? maps : computeReplicas(keyspace, null);
+        }
 
-                tokenToHosts.put(keyspace.getName(), ksTokens);
-
-                Map<Host, Set<TokenRange>> ksRanges;
-                if (ring.size() == 1) {
-                    // We forced the single range to ]minToken,minToken], make sure to use that instead of relying on the host's token
-                    ImmutableMap.Builder<Host, Set<TokenRange>> builder = ImmutableMap.builder();
-                    for (Host host : allTokens.keySet())
-                        builder.put(host, tokenRanges);
-                    ksRanges = builder.build();
-                } else {
-                    ksRanges = computeHostsToRangesMap(tokenRanges, ksTokens, hosts.size());
+        private ReplicaMaps computeReplicas(String keyspaceName, PreviousReplicas previous) {
+            KeyspaceMetadata keyspace = keyspaces.get(keyspaceName);
+            if (keyspace == null)
+                return null;
+
+            ReplicationStrategy strategy = keyspace.replicationStrategy();
+            Object key = strategyKey(strategy);
+            StrategyReplicas replicas = replicasByStrategy.get(key);
+            if (replicas == null) {
+                StrategyReplicas newReplicas = new StrategyReplicas();
+                replicas = replicasByStrategy.putIfAbsent(key, newReplicas);
+                if (replicas == null)
+                    replicas = newReplicas;
+            }
+            ReplicaMaps maps = replicas.maps;
+            if (maps == null) {
+                synchronized (replicas) {
+                    maps = replicas.maps;
+                    if (maps == null) {
+                        maps = computeReplicas(keyspaceName, strategy, previous);
+                        replicas.maps = maps;
+                    }
                 }
-                hostsToRanges.put(keyspace.getName(), ksRanges);
             }
-            return new TokenMap(factory, ring, tokenRanges, tokenToPrimary, allTokens, tokenToHosts, hostsToRanges);
+            replicasByKeyspace.put(keyspaceName, maps);
+            // Don't resurrect a keyspace that was removed concurrently
+            if (!keyspaces.containsKey(keyspaceName))
+                replicasByKeyspace.remove(keyspaceName);
+            return maps;
+        }
+
+        private ReplicaMaps computeReplicas(String keyspaceName, ReplicationStrategy strategy, PreviousReplicas previous) {
+            if (previous != null) {
+                ReplicaMaps maps = previous.unchanged(strategy);
+                if (maps != null)
+                    return maps;
+            }
+            Map<Token, Set<Host>> ksTokens = null;
+            if (previous != null)
+                ksTokens = previous.tokenToHosts(strategy, keyspaceName, tokenToPrimary, ring);
+            if (ksTokens == null)
+                ksTokens = (strategy == null)
+                        ? makeNonReplicatedMap(tokenToPrimary)
+                        : strategy.computeTokenToReplicaMap(keyspaceName, tokenToPrimary, ring);
+            return new ReplicaMaps(ksTokens, computeHostsToRanges(ksTokens), makeReplicaArray(ksTokens));
+        }
+
+        private static Object strategyKey(ReplicationStrategy strategy) {
+            return (strategy == null) ? NON_REPLICATED : strategy;
+        }
+
+        private Map<Host, Set<TokenRange>> computeHostsToRanges(Map<Token, Set<Host>> ksTokens) {
+            if (ring.size() == 1) {
+                // We forced the single range to ]minToken,minToken], make sure to use that instead of relying on the host's token
+                ImmutableMap.Builder<Host, Set<TokenRange>> builder = ImmutableMap.builder();
+                for (Host host : primaryToTokens.keySet())
+                    builder.put(host, tokenRanges);
+                return builder.build();
+            } else {
+                return computeHostsToRangesMap(tokenRanges, ksTokens, primaryToTokens.size());
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        private Set<Host>[] makeReplicaArray(Map<Token, Set<Host>> ksTokens) {
+            if (m3pRing == null)
+                return null;
+            Set<Host>[] replicas = new Set[ring.size()];
+            for (int i = 0; i < ring.size(); i++) {
+                Set<Host> hosts = ksTokens.get(ring.get(i));
+                replicas[i] = (hosts == null) ? Collections.<Host>emptySet() : hosts;
+            }
+            return replicas;
+        }
+
+        private Set<TokenRange> getTokenRanges(String keyspace, Host host) {
+            ReplicaMaps maps = replicas(keyspace);
+            return (maps == null) ? null : maps.hostsToRanges.get(host);
+        }
+
+        private Set<Host> getReplicas(String keyspace, ByteBuffer partitionKey) {
+            if (m3pRing == null)
+                return getReplicas(keyspace, factory.hash(partitionKey));
+
+            return getM3PReplicas(keyspace, Token.M3PToken.hashToValue(partitionKey));
+        }
+
+        private Set<Host> getM3PReplicas(String keyspace, long token) {
+            ReplicaMaps maps = replicas(keyspace);
+            if (maps == null || m3pRing.length == 0)
+                return Collections.emptySet();
+
+            int i = Arrays.binarySearch(m3pRing, token);
+            if (i < 0) {
+                i = -i - 1;
+                if (i >= m3pRing.length)
+                    i = 0;
+            }
+            return maps.m3pReplicas[i];
+        }
+
+        private void removeKeyspace(String keyspace) {
+            keyspaces.remove(keyspace);
+            replicasByKeyspace.remove(keyspace);
         }
 
         private Set<Host> getReplicas(String keyspace, Token token) {
+            if (m3pRing != null && token instanceof Token.M3PToken)
+                return getM3PReplicas(keyspace, ((Token.M3PToken) token).longValue());
 
-            Map<Token, Set<Host>> tokenToHosts = tokenToHostsByKeyspace.get(keyspace);
-            if (tokenToHosts == null)
+            ReplicaMaps maps = replicas(keyspace);
+            if (maps == null)
                 return Collections.emptySet();
+            Map<Token, Set<Host>> tokenToHosts = maps.tokenToHosts;
 
             // If the token happens to be one of the "primary" tokens, get result directly
             Set<Host> hosts = tokenToHosts.get(token);
@@ -720,6 +921,10 @@ public class Metadata {
             return tokenToHosts.get(ring.get(i));
         }
 
+        private static String location(Host host) {
+            return host.getDatacenter() + '/' + host.getRack();
+        }
+
         private static Map<Token, Set<Host>> makeNonReplicatedMap(Map<Token, Host> input) {
             Map<Token, Set<Host>> output = new HashMap<Token, Set<Host>>(input.size());
             for (Map.Entry<Token, Host> entry : input.entrySet())
@@ -761,5 +966,77 @@ public class Metadata {
             }
             return ksRanges;
         }
+
+        /**
+         * The replicas of a replication strategy, computed when first needed.
+         */
+        private static class StrategyReplicas {
+            // Written under the lock of this object
+            private volatile ReplicaMaps maps;
+        }
+
+        /**
+         * The replicas of a replication strategy on the ring.
+         */
+        private static class ReplicaMaps {
+            private final Map<Token, Set<Host>> tokenToHosts;
+            private final Map<Host, Set<TokenRange>> hostsToRanges;
+            // Murmur3 only: the replicas of each position of the ring
+            private final Set<Host>[] m3pReplicas;
+
+            private ReplicaMaps(Map<Token, Set<Host>> tokenToHosts, Map<Host, Set<TokenRange>> hostsToRanges, Set<Host>[] m3pReplicas) {
+                this.tokenToHosts = tokenToHosts;
+                this.hostsToRanges = hostsToRanges;
+                this.m3pReplicas = m3pReplicas;
+            }
+        }
+
+        /**
+         * The replicas computed by a previous map, that can be reused or updated when building a new one.
+         */
+        private static class PreviousReplicas {
+            private final Map<Object, ReplicaMaps> replicasByStrategy;
+            // If a single host was added or removed: the ring without its tokens, and its tokens. Null if the ring
+            // did not change.
+            private final Map<Token, Host> baseTokenToPrimary;
+            private final List<Token> baseRing;
+            private final List<Token> hostTokens;
+
+            private PreviousReplicas(TokenMap previous) {
+                this(previous, null, null, null);
+            }
+
+            private PreviousReplicas(TokenMap previous, Map<Token, Host> baseTokenToPrimary, List<Token> baseRing, List<Token> hostTokens) {
+                this.replicasByStrategy = new HashMap<Object, ReplicaMaps>();
+                for (Map.Entry<Object, StrategyReplicas> entry : previous.replicasByStrategy.entrySet()) {
+                    // Strategies that are being computed concurrently are not reused
+                    ReplicaMaps maps = entry.getValue().maps;
+                    if (maps != null)
+                        replicasByStrategy.put(entry.getKey(), maps);
+                }
+                this.baseTokenToPrimary = baseTokenToPrimary;
+                this.baseRing = baseRing;
+                this.hostTokens = hostTokens;
+            }
+
+            private boolean has(ReplicationStrategy strategy) {
+                return replicasByStrategy.containsKey(strategyKey(strategy));
+            }
+
+            // The maps of the strategy, if they can be reused as-is because the ring did not change
+            private ReplicaMaps unchanged(ReplicationStrategy strategy) {
+                return (hostTokens == null) ? replicasByStrategy.get(strategyKey(strategy)) : null;
+            }
+
+            // The replicas of the strategy, updated after a host was added or removed
+            private Map<Token, Set<Host>> tokenToHosts(ReplicationStrategy strategy, String keyspaceName, Map<Token, Host> tokenToPrimary, List<Token> ring) {
+                if (hostTokens == null || strategy == null)
+                    return null;
+                ReplicaMaps previous = replicasByStrategy.get(strategy);
+                if (previous == null)
+                    return null;
+                return strategy.updateTokenToReplicaMap(keyspaceName, previous.tokenToHosts, baseTokenToPrimary, baseRing, tokenToPrimary, ring, hostTokens);
+            }
+        }
     }
 }
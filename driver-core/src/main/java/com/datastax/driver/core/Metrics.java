@@ -43,6 +43,9 @@ public class Metrics {
     private final Errors errors = new Errors();
 
     private final Timer requests = registry.timer("requests");
+    private final Histogram framesPerFlush = registry.histogram("frames-per-flush");
+    private final Counter admittedRequests = registry.counter("admitted-requests");
+    private final Counter throttledRequests = registry.counter("throttled-requests");
 
     private final Gauge<Integer> knownHosts = registry.register("known-hosts", new Gauge<Integer>() {
         @Override
@@ -166,6 +169,44 @@ public class Metrics {
         return requests;
     }
 
+    /**
+     * Returns metrics on the number of requests written to a connection between two flushes.
+     * <p/>
+     * This reflects how effective request coalescing is (see {@link SocketOptions#setCoalescingMaxDelayMicros(int)}):
+     * the higher the values, the fewer system calls are needed to send requests.
+     *
+     * @return a {@code Histogram} metric object exposing the number of frames per flush.
+     */
+    public Histogram getFramesPerFlush() {
+        return framesPerFlush;
+    }
+
+    /**
+     * Returns the number of requests that were admitted by the
+     * {@link com.datastax.driver.core.policies.RequestThrottlingPolicy}, immediately or after waiting in its queue.
+     * <p/>
+     * With the default {@link com.datastax.driver.core.policies.PassThroughThrottlingPolicy}, requests bypass
+     * throttling entirely and are not counted.
+     *
+     * @return the number of admitted requests.
+     */
+    public Counter getAdmittedRequests() {
+        return admittedRequests;
+    }
+
+    /**
+     * Returns the number of requests that had to wait in the queue of the
+     * {@link com.datastax.driver.core.policies.RequestThrottlingPolicy}
+     * before being admitted or rejected.
+     * <p/>
+     * Rejected requests are also counted by {@link Errors#getThrottlingErrors()}.
+     *
+     * @return the number of throttled requests.
+     */
+    public Counter getThrottledRequests() {
+        return throttledRequests;
+    }
+
     /**
      * Returns an object grouping metrics related to the errors encountered.
      *
@@ -332,6 +373,8 @@ public class Metrics {
 
         private final Counter speculativeExecutions = registry.counter("speculative-executions");
 
+        private final Counter throttlingErrors = registry.counter("throttling-errors");
+
         /**
          * Returns the number of errors while connecting to Cassandra nodes.
          * <p/>
@@ -599,5 +642,16 @@ public class Metrics {
         public Counter getSpeculativeExecutions() {
             return speculativeExecutions;
         }
+
+        /**
+         * Returns the number of requests that were rejected by the
+         * {@link com.datastax.driver.core.policies.RequestThrottlingPolicy}
+         * without being sent to any host.
+         *
+         * @return the number of throttling errors.
+         */
+        public Counter getThrottlingErrors() {
+            return throttlingErrors;
+        }
     }
 }
@@ -18,7 +18,9 @@ package com.datastax.driver.core;
 import java.text.ParseException;
 import java.text.ParsePosition;
 import java.text.SimpleDateFormat;
+import java.util.ArrayList;
 import java.util.Date;
+import java.util.List;
 import java.util.TimeZone;
 import java.util.concurrent.TimeUnit;
 
@@ -172,6 +174,158 @@ public abstract class ParseUtils {
         throw new IllegalArgumentException();
     }
 
+    /**
+     * Returns whether a CQL query is a conditional update (lightweight transaction), in other words an
+     * {@code INSERT}, {@code UPDATE}, {@code DELETE} or {@code BATCH} with an {@code IF} clause.
+     * <p/>
+     * This is a lexical check: it looks for the {@code IF} keyword outside of string literals, quoted identifiers
+     * and comments, which is enough since {@code IF} is a reserved keyword.
+     *
+     * @param query the query to inspect.
+     * @return whether the query is a conditional update.
+     */
+    static boolean isConditionalUpdate(String query) {
+        int length = query.length();
+        boolean firstWord = true;
+        int idx = 0;
+        while (idx < length) {
+            char c = query.charAt(idx);
+            char next = idx + 1 < length ? query.charAt(idx + 1) : 0;
+            if (c == '\'' || c == '"') {
+                // Doubled quotes are escapes, which this handles as two consecutive literals
+                int end = query.indexOf(c, idx + 1);
+                idx = (end < 0) ? length : end + 1;
+            } else if (c == '$' && next == '$') {
+                int end = query.indexOf("$$", idx + 2);
+                idx = (end < 0) ? length : end + 2;
+            } else if ((c == '-' && next == '-') || (c == '/' && next == '/')) {
+                int end = query.indexOf('\n', idx + 2);
+                idx = (end < 0) ? length : end + 1;
+            } else if (c == '/' && next == '*') {
+                int end = query.indexOf("*/", idx + 2);
+                idx = (end < 0) ? length : end + 2;
+            } else if (Character.isLetterOrDigit(c)) {
+                int start = idx;
+                while (idx < length && (Character.isLetterOrDigit(query.charAt(idx)) || query.charAt(idx) == '_'))
+                    idx++;
+                int wordLength = idx - start;
+                if (firstWord) {
+                    firstWord = false;
+                    if (!(isWord(query, start, wordLength, "INSERT") || isWord(query, start, wordLength, "UPDATE")
+                            || isWord(query, start, wordLength, "DELETE") || isWord(query, start, wordLength, "BEGIN")))
+                        return false;
+                } else if (isWord(query, start, wordLength, "IF")) {
+                    return true;
+                }
+            } else {
+                idx++;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * How a CQL query adds to or subtracts from a column, see {@link #findSelfIncrement(String)}.
+     */
+    enum SelfIncrement {
+        /**
+         * The query has no {@code c = c + x} or {@code c = c - x} assignment.
+         */
+        NONE,
+        /**
+         * An operand is a bind marker: the column may be a counter, or a collection.
+         */
+        BIND_MARKER,
+        /**
+         * An operand is an integer literal, which is only valid for counters.
+         */
+        INTEGER
+    }
+
+    /**
+     * Looks for assignments that add to or subtract from a column ({@code c = c + 1}), which is the syntax of
+     * counter updates, but also of collection updates when the operand is a collection literal or a bind marker.
+     * <p/>
+     * Like {@link #isConditionalUpdate(String)}, this is a lexical check that ignores string literals and comments.
+     *
+     * @param query the query to inspect.
+     * @return {@link SelfIncrement#INTEGER} if at least one operand is an integer literal, otherwise
+     * {@link SelfIncrement#BIND_MARKER} if at least one operand is a bind marker, otherwise
+     * {@link SelfIncrement#NONE}.
+     */
+    static SelfIncrement findSelfIncrement(String query) {
+        // Tokens: words, quoted identifiers and single characters; string literals are replaced by a single quote
+        List<String> tokens = new ArrayList<String>();
+        int length = query.length();
+        int idx = 0;
+        while (idx < length) {
+            char c = query.charAt(idx);
+            char next = idx + 1 < length ? query.charAt(idx + 1) : 0;
+            if (c == '\'') {
+                int end = query.indexOf(c, idx + 1);
+                idx = (end < 0) ? length : end + 1;
+                tokens.add("'");
+            } else if (c == '"') {
+                int end = query.indexOf(c, idx + 1);
+                int tokenEnd = (end < 0) ? length : end + 1;
+                tokens.add(query.substring(idx, tokenEnd));
+                idx = tokenEnd;
+            } else if (c == '$' && next == '$') {
+                int end = query.indexOf("$$", idx + 2);
+                idx = (end < 0) ? length : end + 2;
+                tokens.add("'");
+            } else if ((c == '-' && next == '-') || (c == '/' && next == '/')) {
+                int end = query.indexOf('\n', idx + 2);
+                idx = (end < 0) ? length : end + 1;
+            } else if (c == '/' && next == '*') {
+                int end = query.indexOf("*/", idx + 2);
+                idx = (end < 0) ? length : end + 2;
+            } else if (Character.isLetterOrDigit(c)) {
+                int start = idx;
+                while (idx < length && (Character.isLetterOrDigit(query.charAt(idx)) || query.charAt(idx) == '_'))
+                    idx++;
+                tokens.add(query.substring(start, idx));
+            } else if (Character.isWhitespace(c)) {
+                idx++;
+            } else {
+                tokens.add(String.valueOf(c));
+                idx++;
+            }
+        }
+
+        SelfIncrement result = SelfIncrement.NONE;
+        for (int i = 0; i + 4 < tokens.size(); i++) {
+            String column = tokens.get(i);
+            if (!isIdentifier(column) || !tokens.get(i + 1).equals("=") || !sameIdentifier(column, tokens.get(i + 2)))
+                continue;
+            String operator = tokens.get(i + 3);
+            if (!operator.equals("+") && !operator.equals("-"))
+                continue;
+            String operand = tokens.get(i + 4);
+            if (operand.equals("-") && i + 5 < tokens.size())
+                operand = tokens.get(i + 5);
+            if (Character.isDigit(operand.charAt(0)))
+                return SelfIncrement.INTEGER;
+            if (operand.equals("?") || operand.equals(":"))
+                result = SelfIncrement.BIND_MARKER;
+        }
+        return result;
+    }
+
+    private static boolean isIdentifier(String token) {
+        char c = token.charAt(0);
+        return c == '"' || Character.isLetter(c);
+    }
+
+    private static boolean sameIdentifier(String token1, String token2) {
+        // Unquoted identifiers are case insensitive
+        return token1.charAt(0) == '"' ? token1.equals(token2) : token1.equalsIgnoreCase(token2);
+    }
+
+    private static boolean isWord(String query, int start, int length, String word) {
+        return length == word.length() && query.regionMatches(true, start, word, 0, length);
+    }
+
     /**
      * Return {@code true} if the given character
      * is allowed in a CQL identifier, that is,
@@ -19,6 +19,7 @@ import com.google.common.base.Preconditions;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.util.concurrent.MoreExecutors;
 
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.Executor;
 
@@ -50,6 +51,82 @@ import static com.datastax.driver.core.HostDistance.REMOTE;
  */
 public class PoolingOptions {
 
+    /**
+     * The strategies available to allocate stream ids on a connection.
+     * <p/>
+     * Each request sent on a connection borrows a stream id, that identifies its response when it comes back; the id
+     * is returned once the response has been received.
+     *
+     * @see #setStreamIdAllocation(StreamIdAllocation)
+     */
+    public enum StreamIdAllocation {
+        /**
+         * Ids are tracked in a bitmap, which is scanned in a round-robin fashion to find an available id.
+         * <p/>
+         * This is the default, and is well suited to moderate numbers of concurrent requests per connection.
+         */
+        BITMAP {
+            @Override
+            StreamIdGenerator newGenerator(int maxIds) {
+                return new StreamIdGenerator.Bitmap(maxIds);
+            }
+        },
+        /**
+         * Available ids are kept in a lock-free stack, so that borrowing and releasing an id are constant time
+         * operations.
+         * <p/>
+         * This reduces contention when a connection has a very high number of concurrent requests (for example, tens
+         * of thousands with {@code ProtocolVersion#V3} or above).
+         */
+        FREE_LIST {
+            @Override
+            StreamIdGenerator newGenerator(int maxIds) {
+                return new StreamIdGenerator.FreeList(maxIds);
+            }
+        };
+
+        abstract StreamIdGenerator newGenerator(int maxIds);
+    }
+
+    /**
+     * The strategies available to pick a connection when a request is sent to a host.
+     *
+     * @see #setConnectionSelection(ConnectionSelection)
+     */
+    public enum ConnectionSelection {
+        /**
+         * Scans all the connections of the pool, and picks the one with the fewest in-flight requests.
+         * <p/>
+         * This is the default. The cost of each borrow grows with the number of connections per host.
+         */
+        LEAST_BUSY {
+            @Override
+            Connection select(List<Connection> connections) {
+                return HostConnectionPool.leastBusy(connections);
+            }
+        },
+        /**
+         * Picks two connections at random, and keeps the one with the fewest in-flight requests ("power of two
+         * choices").
+         * <p/>
+         * Each borrow is a constant time operation, and the load remains almost as balanced as with
+         * {@link #LEAST_BUSY}. If both candidates are full, all connections are checked before the request gets
+         * enqueued, so the pool limits apply exactly as with {@link #LEAST_BUSY}. Consider this strategy if you use a
+         * high number of connections per host.
+         */
+        POWER_OF_TWO_CHOICES {
+            @Override
+            Connection select(List<Connection> connections) {
+                return HostConnectionPool.lessBusyOfTwo(connections);
+            }
+        };
+
+        /**
+         * @return the selected connection, or null if the list is empty.
+         */
+        abstract Connection select(List<Connection> connections);
+    }
+
     /**
      * The value returned for connection options when they have not been set by the client, and the protocol version
      * is not known yet.
@@ -142,6 +219,16 @@ public class PoolingOptions {
      */
     public static final int DEFAULT_HEARTBEAT_INTERVAL_SECONDS = 30;
 
+    /**
+     * The default value for {@link #getStreamIdAllocation()}.
+     */
+    public static final StreamIdAllocation DEFAULT_STREAM_ID_ALLOCATION = StreamIdAllocation.BITMAP;
+
+    /**
+     * The default value for {@link #getConnectionSelection()}.
+     */
+    public static final ConnectionSelection DEFAULT_CONNECTION_SELECTION = ConnectionSelection.LEAST_BUSY;
+
     private static final Executor DEFAULT_INITIALIZATION_EXECUTOR = MoreExecutors.sameThreadExecutor();
 
     private volatile Cluster.Manager manager;
@@ -159,6 +246,10 @@ public class PoolingOptions {
     private volatile int poolTimeoutMillis = DEFAULT_POOL_TIMEOUT_MILLIS;
     private volatile int maxQueueSize = DEFAULT_MAX_QUEUE_SIZE;
     private volatile int heartbeatIntervalSeconds = DEFAULT_HEARTBEAT_INTERVAL_SECONDS;
+    private volatile StreamIdAllocation streamIdAllocation = DEFAULT_STREAM_ID_ALLOCATION;
+    private volatile ConnectionSelection connectionSelection = DEFAULT_CONNECTION_SELECTION;
+    private volatile boolean eventLoopAffinity = false;
+    private volatile int adaptiveConcurrencyLatencyThresholdMillis = 0;
 
     private volatile Executor initializationExecutor = DEFAULT_INITIALIZATION_EXECUTOR;
 
@@ -511,6 +602,128 @@ public class PoolingOptions {
         return this;
     }
 
+    /**
+     * Returns the strategy used to allocate stream ids on connections.
+     *
+     * @return the strategy.
+     */
+    public StreamIdAllocation getStreamIdAllocation() {
+        return streamIdAllocation;
+    }
+
+    /**
+     * Sets the strategy used to allocate stream ids on connections.
+     * <p/>
+     * The default is {@link StreamIdAllocation#BITMAP}. Consider {@link StreamIdAllocation#FREE_LIST} if you allow
+     * a very high number of requests per connection (see {@link #setMaxRequestsPerConnection(HostDistance, int)}).
+     * <p/>
+     * This only applies to connections opened after the call.
+     *
+     * @param streamIdAllocation the new value.
+     * @return this {@code PoolingOptions}
+     * @throws NullPointerException if the value is null.
+     */
+    public PoolingOptions setStreamIdAllocation(StreamIdAllocation streamIdAllocation) {
+        Preconditions.checkNotNull(streamIdAllocation);
+        this.streamIdAllocation = streamIdAllocation;
+        return this;
+    }
+
+    /**
+     * Returns the strategy used to pick a connection from the pool of a host.
+     *
+     * @return the strategy.
+     */
+    public ConnectionSelection getConnectionSelection() {
+        return connectionSelection;
+    }
+
+    /**
+     * Sets the strategy used to pick a connection from the pool of a host.
+     * <p/>
+     * The default is {@link ConnectionSelection#LEAST_BUSY}. Consider {@link ConnectionSelection#POWER_OF_TWO_CHOICES}
+     * if you allow a high number of connections per host (see {@link #setMaxConnectionsPerHost(HostDistance, int)}).
+     * <p/>
+     * This can be changed at runtime, and applies to subsequent requests.
+     *
+     * @param connectionSelection the new value.
+     * @return this {@code PoolingOptions}
+     * @throws NullPointerException if the value is null.
+     */
+    public PoolingOptions setConnectionSelection(ConnectionSelection connectionSelection) {
+        Preconditions.checkNotNull(connectionSelection);
+        this.connectionSelection = connectionSelection;
+        return this;
+    }
+
+    /**
+     * Returns whether requests issued from a Netty event loop prefer connections bound to that event loop.
+     *
+     * @return whether event loop affinity is enabled.
+     * @see #setEventLoopAffinity(boolean)
+     */
+    public boolean isEventLoopAffinity() {
+        return eventLoopAffinity;
+    }
+
+    /**
+     * Sets whether requests issued from a Netty event loop prefer connections bound to that event loop.
+     * <p/>
+     * This is useful if you chain requests from callbacks that run on the driver's I/O threads (for example a
+     * callback registered on a {@link ResultSetFuture} with a direct executor). When this option is enabled, and the
+     * calling thread is the event loop of one of the host's connections, that connection is borrowed (unless it has
+     * reached its maximum number of requests), and the request is written and flushed inline instead of being handed
+     * over to the event loop; this skips request coalescing for that request.
+     * <p/>
+     * For any other thread, connections are picked as usual (see {@link #setConnectionSelection(ConnectionSelection)}).
+     * Note that event loop threads are only recognized if they are {@link io.netty.util.concurrent.FastThreadLocalThread}
+     * instances, which is the case with the default {@link NettyOptions}.
+     * This is disabled by default. It can be changed at runtime, and applies to subsequent requests.
+     *
+     * @param eventLoopAffinity whether to enable event loop affinity.
+     * @return this {@code PoolingOptions}
+     */
+    public PoolingOptions setEventLoopAffinity(boolean eventLoopAffinity) {
+        this.eventLoopAffinity = eventLoopAffinity;
+        return this;
+    }
+
+    /**
+     * Returns the latency threshold of the adaptive per-host concurrency limit.
+     *
+     * @return the threshold in milliseconds, or 0 if adaptive limiting is disabled.
+     * @see #setAdaptiveConcurrencyLatencyThresholdMillis(int)
+     */
+    public int getAdaptiveConcurrencyLatencyThresholdMillis() {
+        return adaptiveConcurrencyLatencyThresholdMillis;
+    }
+
+    /**
+     * Enables an adaptive limit on the number of in-flight requests to each host, and sets its latency threshold.
+     * <p/>
+     * The limit of a host starts at its static maximum (max connections per host times max requests per connection).
+     * Each response slower than the threshold, or an {@code OVERLOADED} error or client timeout, lowers it by 10%
+     * (at most once per round trip); each faster response raises it by one. When a host's limit is reached, requests
+     * fail immediately with a {@link com.datastax.driver.core.exceptions.BusyPoolException} instead of being
+     * enqueued, and are retried on the next host of the query plan.
+     * <p/>
+     * The current limit of each host is exposed by {@link Session.State#getConcurrencyLimit(Host)}.
+     * <p/>
+     * The threshold should be well above the normal latency of your queries, but lower than
+     * {@link SocketOptions#getReadTimeoutMillis()}. This is disabled by default. It can be changed at runtime.
+     *
+     * @param adaptiveConcurrencyLatencyThresholdMillis the new value in milliseconds. If set to 0, adaptive limiting
+     *                                                  is disabled.
+     * @return this {@code PoolingOptions}
+     * @throws IllegalArgumentException if the value is negative.
+     */
+    public PoolingOptions setAdaptiveConcurrencyLatencyThresholdMillis(int adaptiveConcurrencyLatencyThresholdMillis) {
+        if (adaptiveConcurrencyLatencyThresholdMillis < 0)
+            throw new IllegalArgumentException("Adaptive concurrency latency threshold must be positive");
+        this.adaptiveConcurrencyLatencyThresholdMillis = adaptiveConcurrencyLatencyThresholdMillis;
+        return this;
+    }
+
     /**
      * Returns the executor to use for connection initialization.
      *
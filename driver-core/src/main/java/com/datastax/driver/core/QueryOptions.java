@@ -44,6 +44,21 @@ public class QueryOptions {
      */
     public static final boolean DEFAULT_IDEMPOTENCE = false;
 
+    /**
+     * The default prefetch threshold: 0, the next page is only fetched when the current one is exhausted.
+     */
+    public static final int DEFAULT_PREFETCH_THRESHOLD_PERCENTAGE = 0;
+
+    /**
+     * The default maximum number of pages fetched ahead of the current one when prefetching: 1.
+     */
+    public static final int DEFAULT_MAX_PREFETCHED_PAGES = 1;
+
+    /**
+     * The default target size of a page: 0, the fetch size is a fixed number of rows.
+     */
+    public static final int DEFAULT_TARGET_PAGE_SIZE_IN_BYTES = 0;
+
     public static final int DEFAULT_MAX_PENDING_REFRESH_NODE_LIST_REQUESTS = 20;
 
     public static final int DEFAULT_MAX_PENDING_REFRESH_NODE_REQUESTS = 20;
@@ -59,6 +74,9 @@ public class QueryOptions {
     private volatile ConsistencyLevel consistency = DEFAULT_CONSISTENCY_LEVEL;
     private volatile ConsistencyLevel serialConsistency = DEFAULT_SERIAL_CONSISTENCY_LEVEL;
     private volatile int fetchSize = DEFAULT_FETCH_SIZE;
+    private volatile int prefetchThresholdPercentage = DEFAULT_PREFETCH_THRESHOLD_PERCENTAGE;
+    private volatile int maxPrefetchedPages = DEFAULT_MAX_PREFETCHED_PAGES;
+    private volatile int targetPageSizeInBytes = DEFAULT_TARGET_PAGE_SIZE_IN_BYTES;
     private volatile boolean defaultIdempotence = DEFAULT_IDEMPOTENCE;
 
     private volatile boolean metadataEnabled = true;
@@ -172,6 +190,103 @@ public class QueryOptions {
         return fetchSize;
     }
 
+    /**
+     * Sets the threshold at which result set iteration starts fetching the next page in the background.
+     * <p/>
+     * By default, when iterating over a {@link ResultSet}, the next page is only requested once the current one
+     * is exhausted, so every page boundary blocks the iteration for a full round-trip. With a threshold, the next
+     * page is requested as soon as the number of rows left in the current page drops to that percentage of its
+     * size, so that network time overlaps with the processing of the remaining rows. Once prefetching has started,
+     * up to {@link #getMaxPrefetchedPages()} pages are fetched ahead.
+     * <p/>
+     * This only applies to synchronous iteration (through {@link ResultSet#one()}, or the iterator); explicit calls
+     * to {@link ResultSet#fetchMoreResults()} still work as before. {@link TableScanner} and {@link RowPublisher},
+     * which request every page explicitly, never prefetch.
+     *
+     * @param prefetchThresholdPercentage the percentage of the current page that must remain when the next page is
+     *                                    requested, between 0 (prefetching disabled) and 100.
+     * @return this {@code QueryOptions} instance.
+     * @throws IllegalArgumentException if the percentage is not between 0 and 100.
+     */
+    public QueryOptions setPrefetchThresholdPercentage(int prefetchThresholdPercentage) {
+        if (prefetchThresholdPercentage < 0 || prefetchThresholdPercentage > 100)
+            throw new IllegalArgumentException("Invalid prefetchThresholdPercentage, should be between 0 and 100, got " + prefetchThresholdPercentage);
+        this.prefetchThresholdPercentage = prefetchThresholdPercentage;
+        return this;
+    }
+
+    /**
+     * The percentage of the current page that must remain when the next page is requested.
+     *
+     * @return the prefetch threshold, or 0 if prefetching is disabled.
+     * @see #setPrefetchThresholdPercentage(int)
+     */
+    public int getPrefetchThresholdPercentage() {
+        return prefetchThresholdPercentage;
+    }
+
+    /**
+     * Sets the maximum number of pages that are fetched ahead of the current one, once the prefetch threshold was
+     * reached.
+     * <p/>
+     * Pages are still fetched one after the other (a page can only be requested once the previous one has
+     * arrived), but with more than one page, the driver keeps fetching as long as fewer pages are buffered.
+     * This uses more memory, but smooths out the iteration when the processing is faster than the network.
+     *
+     * @param maxPrefetchedPages the maximum number of pages fetched ahead.
+     * @return this {@code QueryOptions} instance.
+     * @throws IllegalArgumentException if {@code maxPrefetchedPages < 1}.
+     */
+    public QueryOptions setMaxPrefetchedPages(int maxPrefetchedPages) {
+        if (maxPrefetchedPages < 1)
+            throw new IllegalArgumentException("Invalid maxPrefetchedPages, should be >= 1, got " + maxPrefetchedPages);
+        this.maxPrefetchedPages = maxPrefetchedPages;
+        return this;
+    }
+
+    /**
+     * The maximum number of pages that are fetched ahead of the current one.
+     *
+     * @return the maximum number of pages fetched ahead.
+     * @see #setMaxPrefetchedPages(int)
+     */
+    public int getMaxPrefetchedPages() {
+        return maxPrefetchedPages;
+    }
+
+    /**
+     * Enables adaptive fetch sizes, by setting the size in bytes that pages should have.
+     * <p/>
+     * A fixed fetch size in rows doesn't suit tables whose rows vary a lot in size: large rows produce pages of
+     * several megabytes, that put pressure on the garbage collector, and small rows produce tiny pages, that
+     * multiply round-trips. With a target size, the driver measures the average encoded size of the rows returned
+     * by a query, and computes the fetch size of its next pages so that they get close to the target.
+     * <p/>
+     * The average is tracked per prepared statement (shared by all its bound statements), and per instance for
+     * regular statements. The first page of a query that was never executed uses {@link #getFetchSize()}. This only
+     * applies to statements that don't have an explicit fetch size (see {@link Statement#setFetchSize(int)}).
+     *
+     * @param targetPageSizeInBytes the target size of a page, or 0 to disable adaptive fetch sizes.
+     * @return this {@code QueryOptions} instance.
+     * @throws IllegalArgumentException if {@code targetPageSizeInBytes < 0}.
+     */
+    public QueryOptions setTargetPageSizeInBytes(int targetPageSizeInBytes) {
+        if (targetPageSizeInBytes < 0)
+            throw new IllegalArgumentException("Invalid targetPageSizeInBytes, should be >= 0, got " + targetPageSizeInBytes);
+        this.targetPageSizeInBytes = targetPageSizeInBytes;
+        return this;
+    }
+
+    /**
+     * The target size of a page, when adaptive fetch sizes are enabled.
+     *
+     * @return the target size in bytes, or 0 if adaptive fetch sizes are disabled.
+     * @see #setTargetPageSizeInBytes(int)
+     */
+    public int getTargetPageSizeInBytes() {
+        return targetPageSizeInBytes;
+    }
+
     /**
      * Sets the default idempotence for queries.
      * <p/>
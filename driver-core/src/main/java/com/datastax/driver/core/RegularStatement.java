@@ -33,6 +33,9 @@ import java.util.Map;
  */
 public abstract class RegularStatement extends Statement {
 
+    // Created on first use, most statements are executed once and only need it if their result is paged
+    private volatile RowSizeTracker rowSizeTracker;
+
     /**
      * Creates a new RegularStatement.
      */
@@ -189,6 +192,14 @@ public abstract class RegularStatement extends Statement {
         return hasValues(CodecRegistry.DEFAULT_INSTANCE);
     }
 
+    @Override
+    RowSizeTracker rowSizeTracker() {
+        RowSizeTracker tracker = rowSizeTracker;
+        if (tracker == null)
+            rowSizeTracker = tracker = new RowSizeTracker();
+        return tracker;
+    }
+
     /**
      * Returns this statement as a CQL query string.
      * <p/>
@@ -61,7 +61,102 @@ abstract class ReplicationStrategy {
         }
     }
 
-    abstract Map<Token, Set<Host>> computeTokenToReplicaMap(String keyspaceName, Map<Token, Host> tokenToPrimary, List<Token> ring);
+    Map<Token, Set<Host>> computeTokenToReplicaMap(String keyspaceName, Map<Token, Host> tokenToPrimary, List<Token> ring) {
+        RingWalker walker = newWalker(keyspaceName, tokenToPrimary, ring);
+        Map<Token, Set<Host>> replicaMap = new HashMap<Token, Set<Host>>(tokenToPrimary.size());
+        for (int i = 0; i < ring.size(); i++)
+            replicaMap.put(ring.get(i), walker.replicasAt(i));
+        return replicaMap;
+    }
+
+    /**
+     * Updates a map computed by {@link #computeTokenToReplicaMap}, after the tokens of a single host were added to or
+     * removed from the ring. Only the positions whose replicas depend on those tokens are recomputed.
+     * <p/>
+     * The walk from a position stops as soon as all the replicas are found; if it does not reach the place of any of the
+     * host's tokens in the ring that does not contain them (the "base" ring), the result is the same with or without
+     * them. And since walking from an earlier position never stops later, we only need to walk backwards from each of
+     * the host's tokens until a walk stops short of it.
+     *
+     * @param previous            the map for the ring before the change.
+     * @param baseTokenToPrimary  the primary hosts of the ring without the host's tokens.
+     * @param baseRing            the ring without the host's tokens.
+     * @param tokenToPrimary      the primary hosts of the ring after the change.
+     * @param ring                the ring after the change.
+     * @param hostTokens          the tokens of the host that was added or removed.
+     * @return the updated map, or {@code null} if it can't be updated incrementally (in which case it should be
+     * recomputed with {@link #computeTokenToReplicaMap}).
+     */
+    Map<Token, Set<Host>> updateTokenToReplicaMap(String keyspaceName, Map<Token, Set<Host>> previous,
+                                                  Map<Token, Host> baseTokenToPrimary, List<Token> baseRing,
+                                                  Map<Token, Host> tokenToPrimary, List<Token> ring,
+                                                  Collection<Token> hostTokens) {
+        int n = baseRing.size();
+        if (n == 0)
+            return null;
+        RingWalker baseWalker = newWalker(keyspaceName, baseTokenToPrimary, baseRing);
+        RingWalker walker = newWalker(keyspaceName, tokenToPrimary, ring);
+        // The number of hosts or racks might have changed in a way that affects every position
+        if (!baseWalker.globalParameters().equals(walker.globalParameters()))
+            return null;
+
+        Set<Token> affected = new HashSet<Token>();
+        for (Token token : hostTokens) {
+            int k = Collections.binarySearch(baseRing, token);
+            if (k >= 0)
+                return null; // not supposed to happen, the token would have two owners
+            k = -k - 1;
+            for (int distance = 1; distance <= n; distance++) {
+                int i = (k - distance + n) % n;
+                baseWalker.replicasAt(i);
+                if (!baseWalker.walkComplete)
+                    return null; // the replication factor can't be satisfied, every walk goes around the whole ring
+                if (baseWalker.walkLength <= distance)
+                    break;
+                affected.add(baseRing.get(i));
+            }
+        }
+
+        Map<Token, Set<Host>> replicaMap = new HashMap<Token, Set<Host>>(previous);
+        replicaMap.keySet().retainAll(tokenToPrimary.keySet());
+        for (Token token : hostTokens)
+            if (tokenToPrimary.containsKey(token))
+                affected.add(token);
+        for (Token token : affected)
+            replicaMap.put(token, walker.replicasAt(Collections.binarySearch(ring, token)));
+        return replicaMap;
+    }
+
+    abstract RingWalker newWalker(String keyspaceName, Map<Token, Host> tokenToPrimary, List<Token> ring);
+
+    /**
+     * Computes the replicas of the positions of a ring, by walking the ring clockwise from each position.
+     */
+    static abstract class RingWalker {
+        final Map<Token, Host> tokenToPrimary;
+        final List<Token> ring;
+
+        // The number of positions visited by the last call to replicasAt(), and whether it found all the replicas
+        int walkLength;
+        boolean walkComplete;
+
+        RingWalker(Map<Token, Host> tokenToPrimary, List<Token> ring) {
+            this.tokenToPrimary = tokenToPrimary;
+            this.ring = ring;
+        }
+
+        abstract Set<Host> replicasAt(int i);
+
+        /**
+         * The inputs of the walks that depend on the whole ring, as an object that can be compared with
+         * {@code equals}: if they differ between two rings, the replicas of any position might differ.
+         */
+        abstract Object globalParameters();
+
+        Host primaryAt(int i) {
+            return tokenToPrimary.get(getTokenWrapping(i, ring));
+        }
+    }
 
     private static Token getTokenWrapping(int i, List<Token> ring) {
         return ring.get(i % ring.size());
@@ -76,19 +171,26 @@ abstract class ReplicationStrategy {
         }
 
         @Override
-        Map<Token, Set<Host>> computeTokenToReplicaMap(String keyspaceName, Map<Token, Host> tokenToPrimary, List<Token> ring) {
-
-            int rf = Math.min(replicationFactor, ring.size());
+        RingWalker newWalker(String keyspaceName, Map<Token, Host> tokenToPrimary, List<Token> ring) {
+            final int rf = Math.min(replicationFactor, ring.size());
+            return new RingWalker(tokenToPrimary, ring) {
+                @Override
+                Set<Host> replicasAt(int i) {
+                    // Consecutive sections of the ring can assigned to the same host
+                    Set<Host> replicas = new LinkedHashSet<Host>();
+                    int j = 0;
+                    for (; j < ring.size() && replicas.size() < rf; j++)
+                        replicas.add(primaryAt(i + j));
+                    walkLength = j;
+                    walkComplete = replicas.size() >= rf;
+                    return ImmutableSet.copyOf(replicas);
+                }
 
-            Map<Token, Set<Host>> replicaMap = new HashMap<Token, Set<Host>>(tokenToPrimary.size());
-            for (int i = 0; i < ring.size(); i++) {
-                // Consecutive sections of the ring can assigned to the same host
-                Set<Host> replicas = new LinkedHashSet<Host>();
-                for (int j = 0; j < ring.size() && replicas.size() < rf; j++)
-                    replicas.add(tokenToPrimary.get(getTokenWrapping(i + j, ring)));
-                replicaMap.put(ring.get(i), ImmutableSet.copyOf(replicas));
-            }
-            return replicaMap;
+                @Override
+                Object globalParameters() {
+                    return rf;
+                }
+            };
         }
 
         @Override
@@ -127,20 +229,44 @@ abstract class ReplicationStrategy {
             // Track how long it takes to compute the token to replica map
             long startTime = System.currentTimeMillis();
 
-            // This is essentially a copy of org.apache.cassandra.locator.NetworkTopologyStrategy
-            Map<String, Set<String>> racks = getRacksInDcs(tokenToPrimary.values());
-            Map<Token, Set<Host>> replicaMap = new HashMap<Token, Set<Host>>(tokenToPrimary.size());
-            Map<String, Integer> dcHostCount = Maps.newHashMapWithExpectedSize(replicationFactors.size());
-            Set<String> warnedDcs = Sets.newHashSetWithExpectedSize(replicationFactors.size());
-            // find maximum number of nodes in each DC
-            for (Host host : Sets.newHashSet(tokenToPrimary.values())) {
-                String dc = host.getDatacenter();
-                if (dcHostCount.get(dc) == null) {
-                    dcHostCount.put(dc, 0);
+            Map<Token, Set<Host>> replicaMap = super.computeTokenToReplicaMap(keyspaceName, tokenToPrimary, ring);
+
+            long duration = System.currentTimeMillis() - startTime;
+            logger.debug("Token to replica map computation for keyspace {} completed in {} milliseconds",
+                    keyspaceName, duration);
+
+            return replicaMap;
+        }
+
+        @Override
+        RingWalker newWalker(String keyspaceName, Map<Token, Host> tokenToPrimary, List<Token> ring) {
+            return new Walker(keyspaceName, tokenToPrimary, ring);
+        }
+
+        private class Walker extends RingWalker {
+            private final String keyspaceName;
+            private final Map<String, Set<String>> racks;
+            private final Map<String, Integer> dcHostCount;
+            private final Set<String> warnedDcs = Sets.newHashSetWithExpectedSize(replicationFactors.size());
+
+            Walker(String keyspaceName, Map<Token, Host> tokenToPrimary, List<Token> ring) {
+                super(tokenToPrimary, ring);
+                this.keyspaceName = keyspaceName;
+                this.racks = getRacksInDcs(tokenToPrimary.values());
+                this.dcHostCount = Maps.newHashMapWithExpectedSize(replicationFactors.size());
+                // find maximum number of nodes in each DC
+                for (Host host : Sets.newHashSet(tokenToPrimary.values())) {
+                    String dc = host.getDatacenter();
+                    if (dcHostCount.get(dc) == null) {
+                        dcHostCount.put(dc, 0);
+                    }
+                    dcHostCount.put(dc, dcHostCount.get(dc) + 1);
                 }
-                dcHostCount.put(dc, dcHostCount.get(dc) + 1);
             }
-            for (int i = 0; i < ring.size(); i++) {
+
+            // This is essentially a copy of org.apache.cassandra.locator.NetworkTopologyStrategy
+            @Override
+            Set<Host> replicasAt(int i) {
                 Map<String, Set<Host>> allDcReplicas = new HashMap<String, Set<Host>>();
                 Map<String, Set<String>> seenRacks = new HashMap<String, Set<String>>();
                 Map<String, Set<Host>> skippedDcEndpoints = new HashMap<String, Set<Host>>();
@@ -152,8 +278,9 @@ abstract class ReplicationStrategy {
 
                 // Preserve order - primary replica will be first
                 Set<Host> replicas = new LinkedHashSet<Host>();
-                for (int j = 0; j < ring.size() && !allDone(allDcReplicas, dcHostCount); j++) {
-                    Host h = tokenToPrimary.get(getTokenWrapping(i + j, ring));
+                int j = 0;
+                for (; j < ring.size() && !allDone(allDcReplicas, dcHostCount); j++) {
+                    Host h = primaryAt(i + j);
                     String dc = h.getDatacenter();
                     if (dc == null || !allDcReplicas.containsKey(dc))
                         continue;
@@ -188,6 +315,8 @@ abstract class ReplicationStrategy {
                         }
                     }
                 }
+                walkLength = j;
+                walkComplete = allDone(allDcReplicas, dcHostCount);
 
                 // If we haven't found enough replicas after a whole trip around the ring, this probably
                 // means that the replication factors are broken.
@@ -206,14 +335,24 @@ abstract class ReplicationStrategy {
                     }
                 }
 
-                replicaMap.put(ring.get(i), ImmutableSet.copyOf(replicas));
+                return ImmutableSet.copyOf(replicas);
             }
 
-            long duration = System.currentTimeMillis() - startTime;
-            logger.debug("Token to replica map computation for keyspace {} completed in {} milliseconds",
-                    keyspaceName, duration);
-
-            return replicaMap;
+            @Override
+            Object globalParameters() {
+                // The walk depends on the number of racks in each DC, and on the number of hosts if it is lower
+                // than the replication factor
+                Map<String, List<Integer>> parameters = new HashMap<String, List<Integer>>();
+                for (Map.Entry<String, Integer> entry : replicationFactors.entrySet()) {
+                    String dc = entry.getKey();
+                    Integer hostCount = dcHostCount.get(dc);
+                    Set<String> dcRacks = racks.get(dc);
+                    parameters.put(dc, Arrays.asList(
+                            Math.min(entry.getValue(), hostCount == null ? 0 : hostCount),
+                            dcRacks == null ? 0 : dcRacks.size()));
+                }
+                return parameters;
+            }
         }
 
         private boolean allDone(Map<String, Set<Host>> map, Map<String, Integer> dcHostCount) {
@@ -81,8 +81,11 @@ class RequestHandler {
 
         this.queryPlan = new QueryPlan(manager.loadBalancingPolicy().newQueryPlan(manager.poolsState.keyspace, statement));
         this.speculativeExecutionPlan = manager.speculativeExecutionPolicy().newPlan(manager.poolsState.keyspace, statement);
+        // Lightweight transactions are not retried speculatively even if marked idempotent: concurrent Paxos rounds
+        // for the same partition only contend with each other
         this.allowSpeculativeExecutions = statement != Statement.DEFAULT
-                && statement.isIdempotentWithDefault(manager.configuration().getQueryOptions());
+                && statement.isIdempotentWithDefault(manager.configuration().getQueryOptions())
+                && !statement.isLWT();
         this.statement = statement;
 
         this.timerContext = metricsEnabled()
@@ -645,7 +648,7 @@ class RequestHandler {
                 setFinalException(connection, e);
             } finally {
                 if (queriedHost != null && statement != Statement.DEFAULT) {
-                    manager.cluster.manager.reportQuery(queriedHost, statement, exceptionToReport, latency);
+                    reportQuery(queriedHost, exceptionToReport, latency);
                 }
             }
         }
@@ -753,7 +756,7 @@ class RequestHandler {
                 setFinalException(null, new DriverInternalError("An unexpected error happened while handling exception " + exception, e));
             } finally {
                 if (queriedHost != null && statement != Statement.DEFAULT)
-                    manager.cluster.manager.reportQuery(queriedHost, statement, exception, latency);
+                    reportQuery(queriedHost, exception, latency);
             }
         }
 
@@ -781,7 +784,7 @@ class RequestHandler {
                 setFinalException(null, new DriverInternalError("An unexpected error happened while handling timeout", e));
             } finally {
                 if (queriedHost != null && statement != Statement.DEFAULT)
-                    manager.cluster.manager.reportQuery(queriedHost, statement, timeoutException, latency);
+                    reportQuery(queriedHost, timeoutException, latency);
             }
             return true;
         }
@@ -791,6 +794,13 @@ class RequestHandler {
             return queryStateRef.get().retryCount;
         }
 
+        private void reportQuery(Host queriedHost, Exception exception, long latency) {
+            manager.cluster.manager.reportQuery(queriedHost, statement, exception, latency);
+            HostConnectionPool pool = manager.pools.get(queriedHost);
+            if (pool != null)
+                pool.concurrencyLimit.update(latency, exception, pool.hostDistance, pool.totalInFlight.get());
+        }
+
         private void setFinalException(Connection connection, Exception exception) {
             RequestHandler.this.setFinalException(this, connection, exception);
         }
@@ -329,6 +329,14 @@ class Responses {
 
         static class Rows extends Result {
 
+            /**
+             * Whether to decode the rows of a page lazily (see {@link LazyPage}).
+             * <p/>
+             * This trades a few allocations per cell for the fact that a single row retained by the client keeps the
+             * bytes of its whole page in memory; that's why it is disabled by default.
+             */
+            private static final boolean LAZY_DECODING = SystemProperties.getBoolean("com.datastax.driver.LAZY_ROWS_DECODING", false);
+
             static class Metadata {
 
                 private enum Flag {
@@ -437,32 +445,238 @@ class Responses {
             static final Message.Decoder<Result> subcodec = new Message.Decoder<Result>() {
                 @Override
                 public Result decode(ByteBuf body, ProtocolVersion version, CodecRegistry codecRegistry) {
+                    return Rows.decode(body, version, codecRegistry, LAZY_DECODING);
+                }
+            };
 
-                    Metadata metadata = Metadata.decode(body, version, codecRegistry);
+            static Rows decode(ByteBuf body, ProtocolVersion version, CodecRegistry codecRegistry, boolean lazy) {
 
-                    int rowCount = body.readInt();
-                    int columnCount = metadata.columnCount;
+                Metadata metadata = Metadata.decode(body, version, codecRegistry);
+
+                int rowCount = body.readInt();
+                int columnCount = metadata.columnCount;
+                int dataStart = body.readerIndex();
 
-                    Queue<List<ByteBuffer>> data = new ArrayDeque<List<ByteBuffer>>(rowCount);
+                Queue<List<ByteBuffer>> data;
+                if (lazy) {
+                    data = LazyPage.decode(body, rowCount, columnCount);
+                } else {
+                    data = new ArrayDeque<List<ByteBuffer>>(rowCount);
                     for (int i = 0; i < rowCount; i++) {
                         List<ByteBuffer> row = new ArrayList<ByteBuffer>(columnCount);
                         for (int j = 0; j < columnCount; j++)
                             row.add(CBUtil.readValue(body));
                         data.add(row);
                     }
+                }
 
-                    return new Rows(metadata, data, version);
+                return new Rows(metadata, data, body.readerIndex() - dataStart, version);
+            }
+
+            /**
+             * The rows of a page, backed by a single copy of the bytes of all its cells.
+             * <p/>
+             * When decoding, we only record the offset and length of each cell in a primitive array. Rows are views
+             * over the shared page bytes, and cell values are only wrapped into a {@code ByteBuffer} (without copy)
+             * when they are actually read.
+             * <p/>
+             * Note that we can't keep a reference to the frame itself, because the rows can outlive the page (for
+             * example with {@link ResultSet#all()}), and the frame buffer is pooled memory that must be released
+             * explicitly. So the cells are copied once in a heap array; it will be garbage-collected once the page
+             * and all its rows become unreachable.
+             */
+            static class LazyPage extends AbstractQueue<List<ByteBuffer>> {
+
+                private final byte[] bytes;
+                private final int rowCount;
+                private final int columnCount;
+                // For each cell, in row order: its offset in 'bytes', followed by its length (negative if null).
+                private final int[] cells;
+                private int nextRow;
+
+                private LazyPage(byte[] bytes, int rowCount, int columnCount, int[] cells) {
+                    this.bytes = bytes;
+                    this.rowCount = rowCount;
+                    this.columnCount = columnCount;
+                    this.cells = cells;
                 }
-            };
+
+                static LazyPage decode(ByteBuf body, int rowCount, int columnCount) {
+                    int start = body.readerIndex();
+                    int[] cells = new int[rowCount * columnCount * 2];
+                    for (int i = 0; i < cells.length; i += 2) {
+                        int length = body.readInt();
+                        cells[i] = body.readerIndex() - start;
+                        cells[i + 1] = length;
+                        if (length > 0)
+                            body.skipBytes(length);
+                    }
+                    byte[] bytes = new byte[body.readerIndex() - start];
+                    body.getBytes(start, bytes);
+                    return new LazyPage(bytes, rowCount, columnCount, cells);
+                }
+
+                @Override
+                public boolean offer(List<ByteBuffer> row) {
+                    throw new UnsupportedOperationException();
+                }
+
+                @Override
+                public List<ByteBuffer> poll() {
+                    return (nextRow < rowCount) ? new RowView(nextRow++) : null;
+                }
+
+                @Override
+                public List<ByteBuffer> peek() {
+                    return (nextRow < rowCount) ? new RowView(nextRow) : null;
+                }
+
+                @Override
+                public int size() {
+                    return rowCount - nextRow;
+                }
+
+                @Override
+                public Iterator<List<ByteBuffer>> iterator() {
+                    return new Iterator<List<ByteBuffer>>() {
+                        private int row = nextRow;
+
+                        @Override
+                        public boolean hasNext() {
+                            return row < rowCount;
+                        }
+
+                        @Override
+                        public List<ByteBuffer> next() {
+                            if (row >= rowCount)
+                                throw new NoSuchElementException();
+                            return new RowView(row++);
+                        }
+
+                        @Override
+                        public void remove() {
+                            throw new UnsupportedOperationException();
+                        }
+                    };
+                }
+
+                private class RowView extends AbstractList<ByteBuffer> implements RandomAccess {
+                    private final int firstCell;
+
+                    private RowView(int row) {
+                        this.firstCell = row * columnCount * 2;
+                    }
+
+                    @Override
+                    public ByteBuffer get(int column) {
+                        if (column < 0 || column >= columnCount)
+                            throw new IndexOutOfBoundsException("Index: " + column + ", Size: " + columnCount);
+                        int i = firstCell + column * 2;
+                        int length = cells[i + 1];
+                        return (length < 0) ? null : ByteBuffer.wrap(bytes, cells[i], length).slice();
+                    }
+
+                    @Override
+                    public int size() {
+                        return columnCount;
+                    }
+                }
+            }
+
+            /**
+             * Decodes the rows of a page incrementally, as the bytes of the frame arrive from the network (see
+             * {@link Frame.Decoder}).
+             * <p/>
+             * The result metadata is decoded upfront by {@link #start}; after that, each call to
+             * {@link #decodeAvailable} decodes the rows that are fully contained in the given buffer, and leaves the
+             * bytes of an incomplete row unread so that they can be completed by the next chunk. Decoded values are
+             * copied, so the consumed bytes can be discarded; but the rows are only available as a whole, through
+             * {@link #result()}, once the page is complete.
+             */
+            static class IncrementalDecoder {
+
+                private final Metadata metadata;
+                private final int rowCount;
+                private final ProtocolVersion version;
+                private final Queue<List<ByteBuffer>> data;
+                private int dataBytes;
+
+                private IncrementalDecoder(Metadata metadata, int rowCount, ProtocolVersion version) {
+                    this.metadata = metadata;
+                    this.rowCount = rowCount;
+                    this.version = version;
+                    this.data = new ArrayDeque<List<ByteBuffer>>(rowCount);
+                }
+
+                /**
+                 * Decodes the metadata and row count of a ROWS result (the result kind must already have been read).
+                 *
+                 * @throws IndexOutOfBoundsException if {@code body} does not contain the whole metadata yet.
+                 */
+                static IncrementalDecoder start(ByteBuf body, ProtocolVersion version, CodecRegistry codecRegistry) {
+                    Metadata metadata = Metadata.decode(body, version, codecRegistry);
+                    int rowCount = body.readInt();
+                    return new IncrementalDecoder(metadata, rowCount, version);
+                }
+
+                /**
+                 * Decodes all the complete rows available in {@code body}.
+                 *
+                 * @return whether all the rows of the page have been decoded.
+                 */
+                boolean decodeAvailable(ByteBuf body) {
+                    int columnCount = metadata.columnCount;
+                    while (data.size() < rowCount) {
+                        if (!isRowAvailable(body, columnCount))
+                            return false;
+                        int rowStart = body.readerIndex();
+                        List<ByteBuffer> row = new ArrayList<ByteBuffer>(columnCount);
+                        for (int i = 0; i < columnCount; i++)
+                            row.add(CBUtil.readValue(body));
+                        data.add(row);
+                        dataBytes += body.readerIndex() - rowStart;
+                    }
+                    return true;
+                }
+
+                private static boolean isRowAvailable(ByteBuf body, int columnCount) {
+                    int position = body.readerIndex();
+                    int end = body.writerIndex();
+                    for (int i = 0; i < columnCount; i++) {
+                        if (end - position < 4)
+                            return false;
+                        int length = body.getInt(position);
+                        position += 4;
+                        if (length > 0) {
+                            if (end - position < length)
+                                return false;
+                            position += length;
+                        }
+                    }
+                    return true;
+                }
+
+                int decodedRows() {
+                    return data.size();
+                }
+
+                Rows result() {
+                    assert data.size() == rowCount;
+                    return new Rows(metadata, data, dataBytes, version);
+                }
+            }
 
             final Metadata metadata;
             final Queue<List<ByteBuffer>> data;
+            // The encoded size of the rows, used for adaptive fetch sizes
+            final int dataBytes;
             private final ProtocolVersion version;
 
-            private Rows(Metadata metadata, Queue<List<ByteBuffer>> data, ProtocolVersion version) {
+            private Rows(Metadata metadata, Queue<List<ByteBuffer>> data, int dataBytes, ProtocolVersion version) {
                 super(Kind.ROWS);
                 this.metadata = metadata;
                 this.data = data;
+                this.dataBytes = dataBytes;
                 this.version = version;
             }
 
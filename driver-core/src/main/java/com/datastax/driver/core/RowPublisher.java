@@ -0,0 +1,318 @@
+/*
+ *      Copyright (C) 2012-2015 DataStax Inc.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package com.datastax.driver.core;
+
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Publishes the rows of a query to subscribers that signal their demand, fetching pages only as rows are requested.
+ * <p/>
+ * This follows the semantics of the <a href="http://www.reactive-streams.org">Reactive Streams</a> {@code Publisher}
+ * interface (the driver does not depend on that library, but {@link Subscriber} and {@link Subscription} have the
+ * same methods, so adapting them is straightforward). Each subscription executes the statement independently; the
+ * first page is requested when the subscriber first signals demand, and subsequent pages are fetched so that at most
+ * {@code prefetch} pages are buffered ahead of the page being consumed. Each page is released as soon as all its rows
+ * were emitted, so memory usage is bounded regardless of the size of the result.
+ * <p/>
+ * Signals are delivered without ever blocking, either on the thread that calls {@link Subscription#request(long)},
+ * or on the driver's I/O threads when a page arrives. Subscribers should therefore not block in their callbacks.
+ * <pre>
+ * new RowPublisher(session, statement).subscribe(new RowPublisher.Subscriber&lt;Row&gt;() {
+ *     private RowPublisher.Subscription subscription;
+ *
+ *     public void onSubscribe(RowPublisher.Subscription s) {
+ *         subscription = s;
+ *         s.request(100);
+ *     }
+ *
+ *     public void onNext(Row row) {
+ *         process(row);
+ *         subscription.request(1);
+ *     }
+ *     ...
+ * });
+ * </pre>
+ */
+public class RowPublisher {
+
+    private static final Logger logger = LoggerFactory.getLogger(RowPublisher.class);
+
+    /**
+     * The default number of pages fetched ahead of the page being consumed.
+     */
+    public static final int DEFAULT_PREFETCH = 1;
+
+    /**
+     * Receives the rows published by a {@link RowPublisher}; equivalent to {@code org.reactivestreams.Subscriber}.
+     *
+     * @param <T> the type of the elements.
+     */
+    public interface Subscriber<T> {
+
+        /**
+         * Invoked once, before any other signal.
+         *
+         * @param subscription the subscription, used to request rows or cancel.
+         */
+        void onSubscribe(Subscription subscription);
+
+        /**
+         * Invoked for each row, no more times than requested through the subscription.
+         *
+         * @param element the row.
+         */
+        void onNext(T element);
+
+        /**
+         * Invoked if the query fails. No other signal follows.
+         *
+         * @param error the error.
+         */
+        void onError(Throwable error);
+
+        /**
+         * Invoked once all the rows were emitted. No other signal follows.
+         */
+        void onComplete();
+    }
+
+    /**
+     * The link between a {@link RowPublisher} and one of its subscribers; equivalent to
+     * {@code org.reactivestreams.Subscription}.
+     */
+    public interface Subscription {
+
+        /**
+         * Requests more rows.
+         *
+         * @param n the number of additional rows to emit, which must be strictly positive.
+         */
+        void request(long n);
+
+        /**
+         * Stops emitting rows. Pages that are being fetched are discarded.
+         */
+        void cancel();
+    }
+
+    private final Session session;
+    private final Statement statement;
+    private final int prefetch;
+
+    /**
+     * Creates a new publisher with the default prefetch ({@link #DEFAULT_PREFETCH}).
+     *
+     * @param session   the session that will execute the statement.
+     * @param statement the statement.
+     */
+    public RowPublisher(Session session, Statement statement) {
+        this(session, statement, DEFAULT_PREFETCH);
+    }
+
+    /**
+     * Creates a new publisher.
+     *
+     * @param session   the session that will execute the statement.
+     * @param statement the statement.
+     * @param prefetch  the number of pages to fetch ahead of the page being consumed. With 0, the next page is only
+     *                  requested once the current one is entirely consumed and the subscriber requests more rows.
+     * @throws IllegalArgumentException if {@code prefetch < 0}.
+     */
+    public RowPublisher(Session session, Statement statement, int prefetch) {
+        if (prefetch < 0)
+            throw new IllegalArgumentException("prefetch must be positive or zero, was " + prefetch);
+        this.session = session;
+        this.statement = statement;
+        this.prefetch = prefetch;
+    }
+
+    /**
+     * Subscribes to the rows of the statement. Each call executes the statement again.
+     *
+     * @param subscriber the subscriber.
+     */
+    public void subscribe(Subscriber<? super Row> subscriber) {
+        if (subscriber == null)
+            throw new NullPointerException("subscriber can't be null");
+        RowSubscription subscription = new RowSubscription(subscriber);
+        subscriber.onSubscribe(subscription);
+    }
+
+    private class RowSubscription implements Subscription {
+
+        private final Subscriber<? super Row> subscriber;
+        private final AtomicLong requested = new AtomicLong();
+        // Number of pending drain requests, only the thread that increments it from 0 drains
+        private final AtomicInteger wip = new AtomicInteger();
+
+        private volatile boolean cancelled;
+        private volatile boolean fetching;
+        private volatile ResultSet resultSet;
+        private volatile Throwable error;
+
+        // Only accessed while draining
+        private final Queue<Queue<Row>> pages = new ArrayDeque<Queue<Row>>();
+        private boolean started;
+        private boolean done;
+
+        RowSubscription(Subscriber<? super Row> subscriber) {
+            this.subscriber = subscriber;
+        }
+
+        @Override
+        public void request(long n) {
+            if (n <= 0) {
+                error = new IllegalArgumentException("Requested rows must be strictly positive, was " + n);
+            } else {
+                while (true) {
+                    long current = requested.get();
+                    long next = current + n;
+                    // Saturate, Long.MAX_VALUE means unbounded
+                    if (next < 0)
+                        next = Long.MAX_VALUE;
+                    if (requested.compareAndSet(current, next))
+                        break;
+                }
+            }
+            drain();
+        }
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+            drain();
+        }
+
+        private void drain() {
+            if (wip.getAndIncrement() != 0)
+                return;
+            int missed = 1;
+            do {
+                drainLoop();
+                missed = wip.addAndGet(-missed);
+            } while (missed != 0);
+        }
+
+        private void drainLoop() {
+            if (done)
+                return;
+            if (cancelled) {
+                done = true;
+                pages.clear();
+                return;
+            }
+            if (error != null) {
+                done = true;
+                pages.clear();
+                subscriber.onError(error);
+                return;
+            }
+            if (!started) {
+                if (requested.get() == 0)
+                    return;
+                started = true;
+                fetching = true;
+                try {
+                    track(session.executeAsync(statement), true);
+                } catch (RuntimeException e) {
+                    done = true;
+                    subscriber.onError(e);
+                }
+                return;
+            }
+
+            ResultSet rs = resultSet;
+            if (rs == null)
+                return;
+            int available = rs.getAvailableWithoutFetching();
+            if (available > 0) {
+                Queue<Row> page = new ArrayDeque<Row>(available);
+                // Pages are requested according to the demand, so don't let the result set prefetch
+                ArrayBackedResultSet.drainAvailable(rs, page);
+                pages.add(page);
+            }
+
+            long emitted = 0;
+            long demand = requested.get();
+            while (emitted < demand && !pages.isEmpty()) {
+                Queue<Row> page = pages.peek();
+                Row row = page.poll();
+                if (page.isEmpty())
+                    pages.poll();
+                try {
+                    subscriber.onNext(row);
+                } catch (RuntimeException e) {
+                    logger.warn("Unexpected error in subscriber, cancelling the subscription", e);
+                    cancelled = true;
+                }
+                emitted += 1;
+                if (cancelled) {
+                    done = true;
+                    pages.clear();
+                    return;
+                }
+            }
+            if (emitted > 0 && demand != Long.MAX_VALUE)
+                requested.addAndGet(-emitted);
+
+            if (fetching)
+                return;
+            if (rs.isFullyFetched()) {
+                if (pages.isEmpty()) {
+                    done = true;
+                    subscriber.onComplete();
+                }
+            } else if (pages.isEmpty() ? (prefetch > 0 || requested.get() > 0) : pages.size() <= prefetch) {
+                fetching = true;
+                try {
+                    track(rs.fetchMoreResults(), false);
+                } catch (RuntimeException e) {
+                    done = true;
+                    pages.clear();
+                    subscriber.onError(e);
+                }
+            }
+        }
+
+        private void track(ListenableFuture<ResultSet> future, final boolean first) {
+            Futures.addCallback(future, new FutureCallback<ResultSet>() {
+                @Override
+                public void onSuccess(ResultSet rs) {
+                    if (first)
+                        resultSet = rs;
+                    fetching = false;
+                    drain();
+                }
+
+                @Override
+                public void onFailure(Throwable t) {
+                    error = t;
+                    fetching = false;
+                    drain();
+                }
+            });
+        }
+    }
+}
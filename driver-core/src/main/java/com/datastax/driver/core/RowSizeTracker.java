@@ -0,0 +1,63 @@
+/*
+ *      Copyright (C) 2012-2015 DataStax Inc.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package com.datastax.driver.core;
+
+/**
+ * Tracks the average encoded size of the rows returned by a query, in order to pick fetch sizes that produce pages
+ * of a target size in bytes (see {@link QueryOptions#setTargetPageSizeInBytes(int)}).
+ * <p/>
+ * The average is an exponentially weighted moving average over pages, so that it follows changes in the data without
+ * being too sensitive to a single unusual page. Concurrent updates may overwrite each other; this is harmless since
+ * the value is only an estimate.
+ */
+class RowSizeTracker {
+
+    // Weight of the latest page in the average
+    private static final double NEW_PAGE_WEIGHT = 0.25;
+
+    private volatile double averageRowSize; // 0 until the first page is measured
+
+    /**
+     * Records the size of a page.
+     *
+     * @param rowCount the number of rows in the page.
+     * @param bytes    the encoded size of the rows.
+     */
+    void update(int rowCount, int bytes) {
+        if (rowCount <= 0)
+            return;
+        double rowSize = Math.max(1.0, (double) bytes / rowCount);
+        double previous = averageRowSize;
+        averageRowSize = (previous == 0)
+                ? rowSize
+                : previous + (rowSize - previous) * NEW_PAGE_WEIGHT;
+    }
+
+    /**
+     * Computes the fetch size of the next page.
+     *
+     * @param targetBytes      the target size of a page.
+     * @param defaultFetchSize the fetch size to use if no page was measured yet.
+     * @return the fetch size.
+     */
+    int fetchSize(int targetBytes, int defaultFetchSize) {
+        double rowSize = averageRowSize;
+        if (rowSize == 0)
+            return defaultFetchSize;
+        // Integer.MAX_VALUE would mean "no paging"
+        return (int) Math.max(1, Math.min(Integer.MAX_VALUE - 1, targetBytes / rowSize));
+    }
+}
@@ -463,5 +463,19 @@ public interface Session extends Closeable {
          * queries to {@code host}.
          */
         int getInFlightQueries(Host host);
+
+        /**
+         * The maximum number of queries that can currently be in flight to a given host.
+         * <p/>
+         * If adaptive concurrency limiting is enabled (see
+         * {@link PoolingOptions#setAdaptiveConcurrencyLatencyThresholdMillis(int)}), this is the current adaptive
+         * limit of the host, which shrinks when its latency rises. Otherwise, this is the static maximum of the pool,
+         * that is the maximum number of connections per host times the maximum number of requests per connection.
+         *
+         * @param host the host to get the concurrency limit for.
+         * @return the concurrency limit of {@code host} (as in 'at the time the state was grabbed'), or 0 if
+         * the session is not connected to it.
+         */
+        int getConcurrencyLimit(Host host);
     }
 }
@@ -18,10 +18,13 @@ package com.datastax.driver.core;
 import com.datastax.driver.core.Message.Response;
 import com.datastax.driver.core.exceptions.DriverInternalError;
 import com.datastax.driver.core.exceptions.InvalidQueryException;
+import com.datastax.driver.core.exceptions.RequestThrottlingException;
 import com.datastax.driver.core.exceptions.UnsupportedFeatureException;
 import com.datastax.driver.core.exceptions.UnsupportedProtocolVersionException;
 import com.datastax.driver.core.policies.LoadBalancingPolicy;
+import com.datastax.driver.core.policies.PassThroughThrottlingPolicy;
 import com.datastax.driver.core.policies.ReconnectionPolicy;
+import com.datastax.driver.core.policies.RequestThrottlingPolicy;
 import com.datastax.driver.core.policies.SpeculativeExecutionPolicy;
 import com.datastax.driver.core.utils.MoreFutures;
 import com.google.common.base.Functions;
@@ -56,6 +59,11 @@ class SessionManager extends AbstractSession {
     private volatile boolean isInit;
     private volatile boolean isClosing;
 
+    // Set once initAsync() is called, before the init future completes
+    private volatile RequestThrottlingPolicy.RequestThrottler throttler;
+    // False with the default PassThroughThrottlingPolicy: requests then bypass the throttler entirely
+    private volatile boolean throttling;
+
     // Package protected, only Cluster should construct that.
     SessionManager(Cluster cluster) {
         this.cluster = cluster;
@@ -85,6 +93,10 @@ class SessionManager extends AbstractSession {
         if (!initFuture.compareAndSet(null, myInitFuture))
             return initFuture.get();
 
+        RequestThrottlingPolicy throttlingPolicy = cluster.manager.requestThrottlingPolicy();
+        throttling = !(throttlingPolicy instanceof PassThroughThrottlingPolicy);
+        throttler = throttlingPolicy.newThrottler();
+
         Collection<Host> hosts = cluster.getMetadata().allHosts();
         ListenableFuture<?> allPoolsCreatedFuture = createPools(hosts);
         ListenableFuture<?> allPoolsUpdatedFuture = Futures.transform(allPoolsCreatedFuture,
@@ -129,7 +141,7 @@ class SessionManager extends AbstractSession {
     public ResultSetFuture executeAsync(final Statement statement) {
         if (isInit) {
             DefaultResultSetFuture future = new DefaultResultSetFuture(this, cluster.manager.protocolVersion(), makeRequestMessage(statement, null));
-            new RequestHandler(this, future, statement).sendRequest();
+            sendThrottled(future, statement);
             return future;
         } else {
             // If the session is not initialized, we can't call makeRequestMessage() synchronously, because it
@@ -140,7 +152,7 @@ class SessionManager extends AbstractSession {
                 @Override
                 public void run() {
                     DefaultResultSetFuture actualFuture = new DefaultResultSetFuture(SessionManager.this, cluster.manager.protocolVersion(), makeRequestMessage(statement, null));
-                    execute(actualFuture, statement);
+                    sendThrottled(actualFuture, statement);
                     chainedFuture.setSource(actualFuture);
                 }
             }, executor());
@@ -148,6 +160,79 @@ class SessionManager extends AbstractSession {
         }
     }
 
+    /**
+     * Sends a user request once the {@link RequestThrottlingPolicy} admits it.
+     */
+    private void sendThrottled(DefaultResultSetFuture future, Statement statement) {
+        if (!throttling) {
+            new RequestHandler(this, future, statement).sendRequest();
+            return;
+        }
+        RequestThrottlingPolicy.RequestThrottler throttler = this.throttler;
+        ListenableFuture<Void> permit = throttler.acquire();
+        Metrics metrics = cluster.manager.metrics;
+        if (metrics != null && !permit.isDone())
+            metrics.getThrottledRequests().inc();
+        // If the permit is already available, this runs synchronously
+        Futures.addCallback(permit, new AdmissionCallback(this, throttler, future, statement, metrics));
+    }
+
+    private void onAdmitted(RequestThrottlingPolicy.RequestThrottler throttler, DefaultResultSetFuture future, Statement statement) {
+        future.addListener(new PermitRelease(throttler), MoreExecutors.sameThreadExecutor());
+        // The user might have cancelled while the request was waiting (the listener has released the permit already)
+        if (!future.isCancelled())
+            new RequestHandler(this, future, statement).sendRequest();
+    }
+
+    // Named classes rather than anonymous ones, to keep the numbering of the other anonymous classes of this class
+    // stable (the API compatibility check compares them with the previous release)
+    private static class AdmissionCallback implements FutureCallback<Void> {
+        private final SessionManager session;
+        private final RequestThrottlingPolicy.RequestThrottler throttler;
+        private final DefaultResultSetFuture future;
+        private final Statement statement;
+        private final Metrics metrics;
+
+        AdmissionCallback(SessionManager session, RequestThrottlingPolicy.RequestThrottler throttler,
+                          DefaultResultSetFuture future, Statement statement, Metrics metrics) {
+            this.session = session;
+            this.throttler = throttler;
+            this.future = future;
+            this.statement = statement;
+            this.metrics = metrics;
+        }
+
+        @Override
+        public void onSuccess(Void result) {
+            if (metrics != null)
+                metrics.getAdmittedRequests().inc();
+            session.onAdmitted(throttler, future, statement);
+        }
+
+        @Override
+        public void onFailure(Throwable t) {
+            if (metrics != null)
+                metrics.getErrorMetrics().getThrottlingErrors().inc();
+            Exception exception = (t instanceof RequestThrottlingException)
+                    ? (RequestThrottlingException) t
+                    : new RequestThrottlingException("Unexpected error while waiting for admission", t);
+            future.onException(null, exception, 0, 0);
+        }
+    }
+
+    private static class PermitRelease implements Runnable {
+        private final RequestThrottlingPolicy.RequestThrottler throttler;
+
+        PermitRelease(RequestThrottlingPolicy.RequestThrottler throttler) {
+            this.throttler = throttler;
+        }
+
+        @Override
+        public void run() {
+            throttler.release();
+        }
+    }
+
     @Override
     protected ListenableFuture<PreparedStatement> prepareAsync(String query, Map<String, ByteBuffer> customPayload) {
         Requests.Prepare request = new Requests.Prepare(query);
@@ -166,6 +251,10 @@ class SessionManager extends AbstractSession {
         isClosing = true;
         cluster.manager.removeSession(this);
 
+        RequestThrottlingPolicy.RequestThrottler throttler = this.throttler;
+        if (throttler != null)
+            throttler.close();
+
         List<CloseFuture> futures = new ArrayList<CloseFuture>(pools.size());
         for (HostConnectionPool pool : pools.values())
             futures.add(pool.closeAsync());
@@ -488,7 +577,10 @@ class SessionManager extends AbstractSession {
         // init() locks, so avoid if we know we don't need it.
         if (!isInit)
             init();
-        ProtocolVersion protocolVersion = cluster.manager.protocolVersion();
+        return makeRequestMessage(statement, pagingState, cluster.manager.protocolVersion());
+    }
+
+    Message.Request makeRequestMessage(Statement statement, ByteBuffer pagingState, ProtocolVersion protocolVersion) {
         CodecRegistry codecRegistry = cluster.manager.configuration.getCodecRegistry();
 
         ConsistencyLevel consistency = statement.getConsistencyLevel();
@@ -524,7 +616,14 @@ class SessionManager extends AbstractSession {
             else if (fetchSize != Integer.MAX_VALUE)
                 throw new UnsupportedFeatureException(protocolVersion, "Paging is not supported");
         } else if (fetchSize <= 0) {
-            fetchSize = configuration().getQueryOptions().getFetchSize();
+            QueryOptions queryOptions = configuration().getQueryOptions();
+            fetchSize = queryOptions.getFetchSize();
+            int targetPageSize = queryOptions.getTargetPageSizeInBytes();
+            if (targetPageSize > 0) {
+                RowSizeTracker tracker = statement.rowSizeTracker();
+                if (tracker != null)
+                    fetchSize = tracker.fetchSize(targetPageSize, fetchSize);
+            }
         }
 
         if (fetchSize == Integer.MAX_VALUE)
@@ -677,6 +776,7 @@ class SessionManager extends AbstractSession {
         private final int[] openConnections;
         private final int[] trashedConnections;
         private final int[] inFlightQueries;
+        private final int[] concurrencyLimits;
 
         private State(SessionManager session) {
             this.session = session;
@@ -685,6 +785,7 @@ class SessionManager extends AbstractSession {
             this.openConnections = new int[connectedHosts.size()];
             this.trashedConnections = new int[connectedHosts.size()];
             this.inFlightQueries = new int[connectedHosts.size()];
+            this.concurrencyLimits = new int[connectedHosts.size()];
 
             int i = 0;
             for (Host h : connectedHosts) {
@@ -696,12 +797,14 @@ class SessionManager extends AbstractSession {
                     openConnections[i] = 0;
                     trashedConnections[i] = 0;
                     inFlightQueries[i] = 0;
+                    concurrencyLimits[i] = 0;
                     continue;
                 }
 
                 openConnections[i] = p.opened();
                 inFlightQueries[i] = p.totalInFlight.get();
                 trashedConnections[i] = p.trashed();
+                concurrencyLimits[i] = p.concurrencyLimit.current(p.hostDistance);
                 i++;
             }
         }
@@ -746,5 +849,11 @@ class SessionManager extends AbstractSession {
             int i = getIdx(host);
             return i < 0 ? 0 : inFlightQueries[i];
         }
+
+        @Override
+        public int getConcurrencyLimit(Host host) {
+            int i = getIdx(host);
+            return i < 0 ? 0 : concurrencyLimits[i];
+        }
     }
 }
@@ -35,6 +35,7 @@ public class SimpleStatement extends RegularStatement {
 
     private volatile ByteBuffer routingKey;
     private volatile String keyspace;
+    private volatile Boolean lwt;
 
     /**
      * Creates a new {@code SimpleStatement} with the provided query string (and no values).
@@ -277,6 +278,19 @@ public class SimpleStatement extends RegularStatement {
         return keyspace;
     }
 
+    /**
+     * {@inheritDoc}
+     * <p/>
+     * This looks for an {@code IF} clause in the query string, the first time it is called.
+     */
+    @Override
+    public boolean isLWT() {
+        Boolean lwt = this.lwt;
+        if (lwt == null)
+            this.lwt = lwt = ParseUtils.isConditionalUpdate(query);
+        return lwt;
+    }
+
     /**
      * Sets the keyspace this query operates on.
      * <p/>
@@ -40,6 +40,11 @@ public class SocketOptions {
      */
     public static final int DEFAULT_READ_TIMEOUT_MILLIS = 12000;
 
+    /**
+     * The default value for {@link #getCoalescingMaxDelayMicros()} ({@value}).
+     */
+    public static final int DEFAULT_COALESCING_MAX_DELAY_MICROS = 10;
+
     private volatile int connectTimeoutMillis = DEFAULT_CONNECT_TIMEOUT_MILLIS;
     private volatile int readTimeoutMillis = DEFAULT_READ_TIMEOUT_MILLIS;
     private volatile Boolean keepAlive;
@@ -48,6 +53,9 @@ public class SocketOptions {
     private volatile Boolean tcpNoDelay = Boolean.TRUE;
     private volatile Integer receiveBufferSize;
     private volatile Integer sendBufferSize;
+    private volatile int coalescingMaxDelayMicros = DEFAULT_COALESCING_MAX_DELAY_MICROS;
+    private volatile int coalescingMaxFramesPerFlush = 0;
+    private volatile boolean coalescingAdaptive = false;
 
     /**
      * Creates a new {@code SocketOptions} instance with default values.
@@ -281,4 +289,95 @@ public class SocketOptions {
         this.sendBufferSize = sendBufferSize;
         return this;
     }
+
+    /**
+     * Returns the maximum delay between two flushes of the outgoing requests.
+     *
+     * @return the delay in microseconds.
+     * @see #setCoalescingMaxDelayMicros(int)
+     */
+    public int getCoalescingMaxDelayMicros() {
+        return coalescingMaxDelayMicros;
+    }
+
+    /**
+     * Sets the maximum delay between two flushes of the outgoing requests.
+     * <p/>
+     * Instead of flushing each request to the socket as soon as it is written, the driver coalesces requests: they
+     * are queued, and a task running on each I/O thread periodically writes and flushes all the requests queued since
+     * its previous run. This reduces the number of system calls under load, at the cost of a slightly higher
+     * latency. When there is no activity, that task stops, and the next request is flushed immediately.
+     * <p/>
+     * This option controls the delay between two runs of that task. If it is set to 0, coalescing is disabled and
+     * every request is flushed individually.
+     * <p/>
+     * The default value is {@value #DEFAULT_COALESCING_MAX_DELAY_MICROS} microseconds.
+     *
+     * @param coalescingMaxDelayMicros the new value.
+     * @return this {@code SocketOptions}.
+     * @throws IllegalArgumentException if the value is negative.
+     */
+    public SocketOptions setCoalescingMaxDelayMicros(int coalescingMaxDelayMicros) {
+        if (coalescingMaxDelayMicros < 0)
+            throw new IllegalArgumentException("Coalescing max delay must be positive");
+        this.coalescingMaxDelayMicros = coalescingMaxDelayMicros;
+        return this;
+    }
+
+    /**
+     * Returns the maximum number of requests written to a connection before it is flushed.
+     *
+     * @return the value of the option, 0 if there is no limit.
+     * @see #setCoalescingMaxFramesPerFlush(int)
+     */
+    public int getCoalescingMaxFramesPerFlush() {
+        return coalescingMaxFramesPerFlush;
+    }
+
+    /**
+     * Sets the maximum number of requests written to a connection before it is flushed.
+     * <p/>
+     * When coalescing is enabled (see {@link #setCoalescingMaxDelayMicros(int)}), a connection is flushed as soon as
+     * that many requests have been written to it, instead of waiting for all queued requests to be written. This
+     * bounds the amount of data buffered before hitting the socket.
+     * <p/>
+     * By default, this option is set to 0 (no limit).
+     *
+     * @param coalescingMaxFramesPerFlush the new value.
+     * @return this {@code SocketOptions}.
+     * @throws IllegalArgumentException if the value is negative.
+     */
+    public SocketOptions setCoalescingMaxFramesPerFlush(int coalescingMaxFramesPerFlush) {
+        if (coalescingMaxFramesPerFlush < 0)
+            throw new IllegalArgumentException("Coalescing max frames per flush must be positive");
+        this.coalescingMaxFramesPerFlush = coalescingMaxFramesPerFlush;
+        return this;
+    }
+
+    /**
+     * Returns whether the delay between two flushes adapts to the load.
+     *
+     * @return the value of the option.
+     * @see #setCoalescingAdaptive(boolean)
+     */
+    public boolean isCoalescingAdaptive() {
+        return coalescingAdaptive;
+    }
+
+    /**
+     * Sets whether the delay between two flushes adapts to the load.
+     * <p/>
+     * If enabled, the delay between two flushes starts small, grows (up to
+     * {@link #getCoalescingMaxDelayMicros()}) while each flush carries many requests, and shrinks back when the load
+     * decreases. Otherwise, the delay is always {@link #getCoalescingMaxDelayMicros()}.
+     * <p/>
+     * By default, this option is disabled.
+     *
+     * @param coalescingAdaptive whether to enable or disable the option.
+     * @return this {@code SocketOptions}.
+     */
+    public SocketOptions setCoalescingAdaptive(boolean coalescingAdaptive) {
+        this.coalescingAdaptive = coalescingAdaptive;
+        return this;
+    }
 }
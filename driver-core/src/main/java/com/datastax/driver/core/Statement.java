@@ -198,6 +198,46 @@ public abstract class Statement {
      */
     public abstract ByteBuffer getRoutingKey(ProtocolVersion protocolVersion, CodecRegistry codecRegistry);
 
+    /**
+     * Returns the token of the routing key of this query, if it is already known.
+     * <p/>
+     * This is an optimization for token-aware routing: if it returns a non-{@code null} value, the driver uses it
+     * directly instead of hashing the routing key. The default implementation returns {@code null};
+     * {@link BoundStatement} computes the token of its routing key once, and caches it until one of its values is
+     * bound again.
+     *
+     * @return the token of the routing key of this query, or {@code null} if it is not known.
+     */
+    public Token getRoutingToken() {
+        return null;
+    }
+
+    /**
+     * Returns whether this statement is a lightweight transaction, in other words a conditional update
+     * ({@code INSERT ... IF NOT EXISTS}, {@code UPDATE ... IF ...} or {@code DELETE ... IF ...}, or a batch
+     * containing one).
+     * <p/>
+     * Lightweight transactions are never executed speculatively (see
+     * {@link com.datastax.driver.core.policies.SpeculativeExecutionPolicy}), and
+     * {@link com.datastax.driver.core.policies.TokenAwarePolicy} can be configured to always send them to the same
+     * replica. The default implementation returns {@code false}; query builder statements know whether they have a
+     * condition, and {@link SimpleStatement} and {@link BoundStatement} look for an {@code IF} clause in their query
+     * string.
+     *
+     * @return whether this statement is a lightweight transaction.
+     */
+    public boolean isLWT() {
+        return false;
+    }
+
+    /**
+     * The tracker of the row size of this statement's results, used for adaptive fetch sizes, or {@code null} if
+     * this kind of statement doesn't return rows (or can't keep track of them).
+     */
+    RowSizeTracker rowSizeTracker() {
+        return null;
+    }
+
     /**
      * Returns the keyspace this query operates on.
      * <p/>
@@ -116,6 +116,21 @@ public abstract class StatementWrapper extends Statement {
         return wrapped.getRoutingKey(protocolVersion, codecRegistry);
     }
 
+    @Override
+    public Token getRoutingToken() {
+        return wrapped.getRoutingToken();
+    }
+
+    @Override
+    public boolean isLWT() {
+        return wrapped.isLWT();
+    }
+
+    @Override
+    RowSizeTracker rowSizeTracker() {
+        return wrapped.rowSizeTracker();
+    }
+
     @Override
     public String getKeyspace() {
         return wrapped.getKeyspace();
@@ -16,6 +16,8 @@
 package com.datastax.driver.core;
 
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.AtomicLongArray;
 
 /**
@@ -23,20 +25,26 @@ import java.util.concurrent.atomic.AtomicLongArray;
  * <p/>
  * Clients can borrow an id with {@link #next()}, and return it to the set with {@link #release(int)}.
  * It is guaranteed that a given id can't be borrowed by two clients at the same time.
- * This class is thread-safe and non-blocking.
+ * Implementations are thread-safe and non-blocking.
  * <p/>
- * Implementation notes: we use an atomic long array where each bit represents an id. It is set to 1 if
- * the id is available, 0 otherwise. When looking for an id, we find a long that has remaining 1's and
- * pick the rightmost one.
- * To minimize the average time to find that long, we search the array in a round-robin fashion.
+ * The allocation strategy is selected with {@link PoolingOptions#setStreamIdAllocation(PoolingOptions.StreamIdAllocation)}.
  */
-class StreamIdGenerator {
+abstract class StreamIdGenerator {
     static final int MAX_STREAM_PER_CONNECTION_V2 = 128;
     static final int MAX_STREAM_PER_CONNECTION_V3 = 32768;
-    private static final long MAX_UNSIGNED_LONG = -1L;
 
     static StreamIdGenerator newInstance(ProtocolVersion version) {
-        return new StreamIdGenerator(streamIdSizeFor(version));
+        return newInstance(version, PoolingOptions.StreamIdAllocation.BITMAP);
+    }
+
+    static StreamIdGenerator newInstance(ProtocolVersion version, PoolingOptions.StreamIdAllocation allocation) {
+        return allocation.newGenerator(maxIdsFor(version));
+    }
+
+    private static int maxIdsFor(ProtocolVersion version) {
+        // Stream IDs are signed and we only handle positive values
+        // (negative stream IDs are for server side initiated streams).
+        return 1 << (streamIdSizeFor(version) * 8 - 1);
     }
 
     private static int streamIdSizeFor(ProtocolVersion version) {
@@ -52,9 +60,7 @@ class StreamIdGenerator {
         }
     }
 
-    private final AtomicLongArray bits;
-    private final int maxIds;
-    private final AtomicInteger offset;
+    final int maxIds;
 
     // If a query timeout, we'll stop waiting for it. However in that case, we
     // can't release/reuse the ID because we don't know if the response is lost
@@ -63,44 +69,21 @@ class StreamIdGenerator {
     // how many marks we've put.
     private final AtomicInteger marked = new AtomicInteger(0);
 
-    private StreamIdGenerator(int streamIdSizeInBytes) {
-        // Stream IDs are signed and we only handle positive values
-        // (negative stream IDs are for server side initiated streams).
-        maxIds = 1 << (streamIdSizeInBytes * 8 - 1);
-
-        // This is true for 1 byte = 128 streams, and therefore for any higher value
-        assert maxIds % 64 == 0;
-
-        // We use one bit in our array of longs to represent each stream ID.
-        bits = new AtomicLongArray(maxIds / 64);
-
-        // Initialize all bits to 1
-        for (int i = 0; i < bits.length(); i++)
-            bits.set(i, MAX_UNSIGNED_LONG);
-
-        offset = new AtomicInteger(bits.length() - 1);
+    StreamIdGenerator(int maxIds) {
+        this.maxIds = maxIds;
     }
 
-    public int next() {
-        int previousOffset, myOffset;
-        do {
-            previousOffset = offset.get();
-            myOffset = (previousOffset + 1) % bits.length();
-        } while (!offset.compareAndSet(previousOffset, myOffset));
+    /**
+     * Borrows an id.
+     *
+     * @return the id, or -1 if all ids are currently in use.
+     */
+    public abstract int next();
 
-        for (int i = 0; i < bits.length(); i++) {
-            int j = (i + myOffset) % bits.length();
-
-            int id = atomicGetAndSetFirstAvailable(j);
-            if (id >= 0)
-                return id + (64 * j);
-        }
-        return -1;
-    }
-
-    public void release(int streamId) {
-        atomicClear(streamId / 64, streamId % 64);
-    }
+    /**
+     * Returns an id to the set, so that it can be borrowed again.
+     */
+    public abstract void release(int streamId);
 
     public void mark(int streamId) {
         marked.incrementAndGet();
@@ -110,33 +93,158 @@ class StreamIdGenerator {
         marked.decrementAndGet();
     }
 
+    /**
+     * @return the total number of ids managed by this generator; ids range from 0 (inclusive) to this value (exclusive).
+     */
+    int maxIds() {
+        return maxIds;
+    }
+
     public int maxAvailableStreams() {
         return maxIds - marked.get();
     }
 
-    // Returns >= 0 if found and set an id, -1 if no bits are available.
-    private int atomicGetAndSetFirstAvailable(int idx) {
-        while (true) {
-            long l = bits.get(idx);
-            if (l == 0)
-                return -1;
-
-            // Find the position of the right-most 1-bit
-            int id = Long.numberOfTrailingZeros(l);
-            if (bits.compareAndSet(idx, l, l ^ mask(id)))
-                return id;
+    /**
+     * Implementation notes: we use an atomic long array where each bit represents an id. It is set to 1 if
+     * the id is available, 0 otherwise. When looking for an id, we find a long that has remaining 1's and
+     * pick the rightmost one.
+     * To minimize the average time to find that long, we search the array in a round-robin fashion.
+     */
+    static class Bitmap extends StreamIdGenerator {
+        private static final long MAX_UNSIGNED_LONG = -1L;
+
+        private final AtomicLongArray bits;
+        private final AtomicInteger offset;
+
+        Bitmap(int maxIds) {
+            super(maxIds);
+
+            // This is true for 1 byte = 128 streams, and therefore for any higher value
+            assert maxIds % 64 == 0;
+
+            // We use one bit in our array of longs to represent each stream ID.
+            bits = new AtomicLongArray(maxIds / 64);
+
+            // Initialize all bits to 1
+            for (int i = 0; i < bits.length(); i++)
+                bits.set(i, MAX_UNSIGNED_LONG);
+
+            offset = new AtomicInteger(bits.length() - 1);
+        }
+
+        @Override
+        public int next() {
+            int previousOffset, myOffset;
+            do {
+                previousOffset = offset.get();
+                myOffset = (previousOffset + 1) % bits.length();
+            } while (!offset.compareAndSet(previousOffset, myOffset));
+
+            for (int i = 0; i < bits.length(); i++) {
+                int j = (i + myOffset) % bits.length();
+
+                int id = atomicGetAndSetFirstAvailable(j);
+                if (id >= 0)
+                    return id + (64 * j);
+            }
+            return -1;
+        }
+
+        @Override
+        public void release(int streamId) {
+            atomicClear(streamId / 64, streamId % 64);
+        }
+
+        // Returns >= 0 if found and set an id, -1 if no bits are available.
+        private int atomicGetAndSetFirstAvailable(int idx) {
+            while (true) {
+                long l = bits.get(idx);
+                if (l == 0)
+                    return -1;
+
+                // Find the position of the right-most 1-bit
+                int id = Long.numberOfTrailingZeros(l);
+                if (bits.compareAndSet(idx, l, l ^ mask(id)))
+                    return id;
+            }
+        }
+
+        private void atomicClear(int idx, int toClear) {
+            while (true) {
+                long l = bits.get(idx);
+                if (bits.compareAndSet(idx, l, l | mask(toClear)))
+                    return;
+            }
+        }
+
+        private static long mask(int id) {
+            return 1L << id;
         }
     }
 
-    private void atomicClear(int idx, int toClear) {
-        while (true) {
-            long l = bits.get(idx);
-            if (bits.compareAndSet(idx, l, l | mask(toClear)))
+    /**
+     * Implementation notes: available ids form a lock-free linked stack (Treiber stack), where {@code nextFree[id]}
+     * holds the id below {@code id} in the stack. Borrowing or releasing an id is a single CAS on the head, in constant
+     * time, instead of a scan over the words of a bitmap.
+     * <p/>
+     * The head packs the top id in its low 32 bits and a version counter in its high 32 bits, which is incremented on
+     * every change to protect against the ABA problem.
+     * <p/>
+     * Pushing an id twice would corrupt the stack, so we also keep a flag per id to ignore duplicate releases.
+     */
+    static class FreeList extends StreamIdGenerator {
+        private static final int EMPTY = -1;
+
+        private final AtomicLong head;
+        private final AtomicIntegerArray nextFree;
+        private final AtomicIntegerArray inUse;
+
+        FreeList(int maxIds) {
+            super(maxIds);
+            nextFree = new AtomicIntegerArray(maxIds);
+            inUse = new AtomicIntegerArray(maxIds);
+            // Lower ids on top, so that ids are initially handed out in ascending order
+            for (int i = 0; i < maxIds; i++)
+                nextFree.set(i, i == maxIds - 1 ? EMPTY : i + 1);
+            head = new AtomicLong(pack(0, 0));
+        }
+
+        @Override
+        public int next() {
+            while (true) {
+                long h = head.get();
+                int id = top(h);
+                if (id == EMPTY)
+                    return -1;
+                if (head.compareAndSet(h, pack(version(h) + 1, nextFree.get(id)))) {
+                    inUse.set(id, 1);
+                    return id;
+                }
+            }
+        }
+
+        @Override
+        public void release(int streamId) {
+            if (!inUse.compareAndSet(streamId, 1, 0))
                 return;
+            while (true) {
+                long h = head.get();
+                nextFree.set(streamId, top(h));
+                if (head.compareAndSet(h, pack(version(h) + 1, streamId)))
+                    return;
+            }
         }
-    }
 
-    private static long mask(int id) {
-        return 1L << id;
+        private static long pack(int version, int top) {
+            return ((long) version << 32) | (top & 0xFFFFFFFFL);
+        }
+
+        private static int version(long head) {
+            return (int) (head >>> 32);
+        }
+
+        private static int top(long head) {
+            return (int) head;
+        }
     }
 }
@@ -0,0 +1,90 @@
+/*
+ *      Copyright (C) 2012-2015 DataStax Inc.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package com.datastax.driver.core;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Associates an object to each stream id currently in use on a connection.
+ * <p/>
+ * This is meant to be used alongside a {@link StreamIdGenerator}: since the generator guarantees that a given id
+ * can't be borrowed by two clients at the same time, we can use the ids directly as indices in an array, instead
+ * of a map. This avoids boxing the ids and allocating map entries on each request.
+ * This class is thread-safe and non-blocking.
+ */
+class StreamIdTable<T> {
+
+    private final AtomicReferenceArray<T> entries;
+
+    // Tracked separately so that isEmpty() does not have to scan the array.
+    private final AtomicInteger size = new AtomicInteger();
+
+    StreamIdTable(int maxIds) {
+        this.entries = new AtomicReferenceArray<T>(maxIds);
+    }
+
+    /**
+     * Associates an entry to a stream id.
+     *
+     * @return the entry that was previously associated to that id, or {@code null} if there was none.
+     */
+    T put(int streamId, T entry) {
+        T old = entries.getAndSet(streamId, entry);
+        if (old == null)
+            size.incrementAndGet();
+        return old;
+    }
+
+    /**
+     * Removes the entry associated to a stream id.
+     *
+     * @return the entry that was removed, or {@code null} if there was none (or the id is out of range).
+     */
+    T remove(int streamId) {
+        if (streamId < 0 || streamId >= entries.length())
+            return null;
+        T old = entries.getAndSet(streamId, null);
+        if (old != null)
+            size.decrementAndGet();
+        return old;
+    }
+
+    /**
+     * Removes the entry associated to a stream id, only if it is the given entry.
+     *
+     * @return whether the entry was removed.
+     */
+    boolean remove(int streamId, T entry) {
+        if (entries.compareAndSet(streamId, entry, null)) {
+            size.decrementAndGet();
+            return true;
+        }
+        return false;
+    }
+
+    boolean isEmpty() {
+        return size.get() == 0;
+    }
+
+    int size() {
+        return size.get();
+    }
+
+    int capacity() {
+        return entries.length();
+    }
+}
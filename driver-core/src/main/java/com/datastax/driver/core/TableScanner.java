@@ -0,0 +1,648 @@
+/*
+ *      Copyright (C) 2012-2015 DataStax Inc.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package com.datastax.driver.core;
+
+import com.datastax.driver.core.exceptions.QueryValidationException;
+import com.google.common.base.Joiner;
+import com.google.common.collect.AbstractIterator;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.util.concurrent.*;
+
+import java.util.*;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Reads all the rows of a table by scanning its token ranges in parallel.
+ * <p/>
+ * The ring is split into ranges that each belong to a single set of replicas (see {@link Metadata#getTokenRanges()}),
+ * and each range is queried with {@code SELECT ... WHERE token(pk) > ? AND token(pk) <= ?}. The queries are routed to
+ * a replica of their range (provided that the load balancing policy is a {@link com.datastax.driver.core.policies.TokenAwarePolicy}),
+ * and the order in which the ranges are scanned alternates between replicas, so that the load is spread across the
+ * whole cluster. At most {@link Builder#withParallelism(int) parallelism} ranges are read at the same time, one page
+ * at a time.
+ * <p/>
+ * A scanner is created with a {@link Builder} and can be used for any number of scans:
+ * <pre>
+ * TableScanner scanner = TableScanner.builder(session, tableMetadata)
+ *     .withColumns("id", "name")
+ *     .withParallelism(16)
+ *     .build();
+ * TableScanner.RowIterator rows = scanner.scan();
+ * while (rows.hasNext()) {
+ *     Row row = rows.next();
+ *     ...
+ * }
+ * </pre>
+ * <p/>
+ * If the query of a range fails, it is retried (up to {@link Builder#withMaxRetries(int)} times) from the last page
+ * that was successfully read, so that the rows that were already returned are not returned again.
+ */
+public class TableScanner {
+
+    /**
+     * The default number of ranges that are read in parallel.
+     */
+    public static final int DEFAULT_PARALLELISM = 8;
+
+    /**
+     * The default number of times the query of a range is retried before the scan fails.
+     */
+    public static final int DEFAULT_MAX_RETRIES = 3;
+
+    // How many splits we aim to create per parallel slot, so that slots that finish early find more work
+    private static final int SPLITS_PER_SLOT = 4;
+
+    private final Session session;
+    private final String keyspace;
+    private final PreparedStatement statement;
+    private final int parallelism;
+    private final int fetchSize;
+    private final int maxBufferedPages;
+    private final int maxRetries;
+    private final ConsistencyLevel consistencyLevel;
+
+    TableScanner(Session session, String keyspace, PreparedStatement statement, int parallelism,
+                         int fetchSize, int maxBufferedPages, int maxRetries, ConsistencyLevel consistencyLevel) {
+        this.session = session;
+        this.keyspace = keyspace;
+        this.statement = statement;
+        this.parallelism = parallelism;
+        this.fetchSize = fetchSize;
+        this.maxBufferedPages = maxBufferedPages;
+        this.maxRetries = maxRetries;
+        this.consistencyLevel = consistencyLevel;
+    }
+
+    /**
+     * Creates a new builder for a scanner of the given table.
+     *
+     * @param session the session that will execute the queries.
+     * @param table   the table to scan.
+     * @return the new builder.
+     */
+    public static Builder builder(Session session, TableMetadata table) {
+        return new Builder(session, table);
+    }
+
+    /**
+     * Starts a new scan of the table, that returns its rows through an iterator.
+     * <p/>
+     * The iterator blocks until rows are available. To bound the memory used by the scan, the ranges stop fetching
+     * new pages while the iterator has more than {@link Builder#withMaxBufferedPages(int)} pages that were not
+     * consumed yet.
+     *
+     * @return the iterator over the rows of the table.
+     * @throws IllegalStateException if token metadata is not available (see {@link QueryOptions#setMetadataEnabled(boolean)}).
+     */
+    public RowIterator scan() {
+        RowIterator scan = new RowIterator(this, computeSplits());
+        scan.start();
+        return scan;
+    }
+
+    /**
+     * Starts a new scan of the table, that hands its rows over to a callback.
+     * <p/>
+     * The callback is invoked on the I/O threads of the driver, possibly concurrently for different ranges, and
+     * should therefore not block. The next page of a range is only fetched once the callback returned for all the
+     * rows of the current page. If the callback throws, the scan fails.
+     *
+     * @param callback the callback to invoke for each row.
+     * @return the scan, that can be used to track its progress and wait for its completion.
+     * @throws IllegalStateException if token metadata is not available (see {@link QueryOptions#setMetadataEnabled(boolean)}).
+     */
+    public Scan scan(RowCallback callback) {
+        Scan scan = new CallbackScan(this, computeSplits(), callback);
+        scan.start();
+        return scan;
+    }
+
+    private List<TokenRange> computeSplits() {
+        Metadata metadata = session.getCluster().getMetadata();
+        return computeSplits(metadata, keyspace, parallelism);
+    }
+
+    /**
+     * Splits the ring for the given parallelism, and orders the resulting ranges so that consecutive ranges belong
+     * to different replicas.
+     *
+     * @throws IllegalStateException if token metadata is not available.
+     */
+    static List<TokenRange> computeSplits(Metadata metadata, String keyspace, int parallelism) {
+        Set<TokenRange> ringRanges = metadata.getTokenRanges();
+        if (ringRanges.isEmpty())
+            throw new IllegalStateException("Token metadata is not available, the table can't be split into ranges");
+        int splitsPerRange = Math.max(1, (parallelism * SPLITS_PER_SLOT + ringRanges.size() - 1) / ringRanges.size());
+
+        Map<Host, Queue<TokenRange>> splitsPerReplica = Maps.newLinkedHashMap();
+        int count = 0;
+        for (TokenRange ringRange : new TreeSet<TokenRange>(ringRanges)) {
+            for (TokenRange range : ringRange.unwrap()) {
+                Set<Host> replicas = metadata.getReplicas(keyspace, range);
+                Host replica = replicas.isEmpty() ? null : replicas.iterator().next();
+                Queue<TokenRange> splits = splitsPerReplica.get(replica);
+                if (splits == null) {
+                    splits = new LinkedList<TokenRange>();
+                    splitsPerReplica.put(replica, splits);
+                }
+                for (TokenRange split : split(range, splitsPerRange)) {
+                    splits.add(split);
+                    count += 1;
+                }
+            }
+        }
+
+        List<TokenRange> result = new ArrayList<TokenRange>(count);
+        while (result.size() < count) {
+            for (Queue<TokenRange> splits : splitsPerReplica.values()) {
+                TokenRange split = splits.poll();
+                if (split != null)
+                    result.add(split);
+            }
+        }
+        return result;
+    }
+
+    private static List<TokenRange> split(TokenRange range, int numberOfSplits) {
+        if (range.isEmpty())
+            return Collections.emptyList();
+        if (numberOfSplits == 1)
+            return Collections.singletonList(range);
+        try {
+            List<TokenRange> splits = new ArrayList<TokenRange>(numberOfSplits);
+            for (TokenRange split : range.splitEvenly(numberOfSplits)) {
+                if (!split.isEmpty())
+                    splits.add(split);
+            }
+            return splits;
+        } catch (IllegalArgumentException e) {
+            // The whole ring can't be split with the ordered partitioner
+            return Collections.singletonList(range);
+        }
+    }
+
+    /**
+     * A callback that receives the rows of a scan started with {@link #scan(RowCallback)}.
+     */
+    public interface RowCallback {
+
+        /**
+         * Invoked for each row of the table.
+         *
+         * @param row the row.
+         */
+        void onRow(Row row);
+    }
+
+    /**
+     * A scan in progress.
+     */
+    public static abstract class Scan {
+
+        private final TableScanner scanner;
+        private final Queue<Split> pending;
+        private final int totalRanges;
+        private final AtomicInteger completedRanges = new AtomicInteger();
+        private final AtomicLong rowCount = new AtomicLong();
+        private final AtomicInteger retryCount = new AtomicInteger();
+        final SettableFuture<Void> future = SettableFuture.create();
+
+        private Scan(TableScanner scanner, List<TokenRange> ranges) {
+            this.scanner = scanner;
+            this.pending = new ConcurrentLinkedQueue<Split>();
+            for (TokenRange range : ranges)
+                pending.add(new Split(range));
+            this.totalRanges = ranges.size();
+        }
+
+        /**
+         * Returns the number of ranges that the table was split into.
+         *
+         * @return the number of ranges.
+         */
+        public int getTotalRanges() {
+            return totalRanges;
+        }
+
+        /**
+         * Returns the number of ranges that were entirely read.
+         *
+         * @return the number of completed ranges.
+         */
+        public int getCompletedRanges() {
+            return completedRanges.get();
+        }
+
+        /**
+         * Returns the number of rows that were read so far.
+         * <p/>
+         * Note that, when iterating, this includes the rows that were fetched but not consumed yet.
+         *
+         * @return the number of rows.
+         */
+        public long getRowCount() {
+            return rowCount.get();
+        }
+
+        /**
+         * Returns the number of times a range query was retried after a failure.
+         *
+         * @return the number of retries.
+         */
+        public int getRetryCount() {
+            return retryCount.get();
+        }
+
+        /**
+         * Returns a future that completes when all the ranges were read, or fails with the first error that could
+         * not be retried.
+         *
+         * @return the future.
+         */
+        public ListenableFuture<Void> getFuture() {
+            return future;
+        }
+
+        /**
+         * Stops the scan. The queries that are currently in flight complete, but no new page is fetched.
+         */
+        public void cancel() {
+            future.cancel(false);
+        }
+
+        void start() {
+            if (totalRanges == 0) {
+                future.set(null);
+                return;
+            }
+            for (int i = 0; i < scanner.parallelism && i < totalRanges; i++) {
+                Split split = pending.poll();
+                if (split != null)
+                    fetch(split);
+            }
+        }
+
+        /**
+         * Hands over a page of rows; implementations must call {@link #fetchNextPage(Split)} once they are ready
+         * to receive the next one.
+         */
+        abstract void onPage(Split split, List<Row> rows);
+
+        void fetchNextPage(Split split) {
+            if (split.pagingState != null) {
+                fetch(split);
+            } else if (completedRanges.incrementAndGet() == totalRanges) {
+                future.set(null);
+            } else {
+                Split next = pending.poll();
+                if (next != null)
+                    fetch(next);
+            }
+        }
+
+        private void fetch(final Split split) {
+            if (future.isDone())
+                return;
+
+            BoundStatement bs = scanner.statement.bind();
+            bs.setToken(0, split.range.getStart());
+            bs.setToken(1, split.range.getEnd());
+            if (scanner.fetchSize > 0)
+                bs.setFetchSize(scanner.fetchSize);
+            if (scanner.consistencyLevel != null)
+                bs.setConsistencyLevel(scanner.consistencyLevel);
+            if (split.pagingState != null)
+                bs.setPagingStateUnsafe(split.pagingState);
+
+            ResultSetFuture queryFuture;
+            try {
+                queryFuture = scanner.session.executeAsync(new RoutedStatement(bs, split.range.getEnd()));
+            } catch (RuntimeException e) {
+                future.setException(e);
+                return;
+            }
+            Futures.addCallback(queryFuture, new FutureCallback<ResultSet>() {
+                @Override
+                public void onSuccess(ResultSet rs) {
+                    if (future.isDone())
+                        return;
+                    // Ranges are paged explicitly (see fetch), so don't let the result set prefetch
+                    List<Row> rows = new ArrayList<Row>(rs.getAvailableWithoutFetching());
+                    ArrayBackedResultSet.drainAvailable(rs, rows);
+                    rowCount.addAndGet(rows.size());
+                    split.pagingState = rs.getExecutionInfo().getPagingStateUnsafe();
+                    split.attempts = 0;
+                    onPage(split, rows);
+                }
+
+                @Override
+                public void onFailure(Throwable t) {
+                    if (future.isDone())
+                        return;
+                    if (split.attempts < scanner.maxRetries && !(t instanceof QueryValidationException)) {
+                        split.attempts += 1;
+                        retryCount.incrementAndGet();
+                        fetch(split);
+                    } else {
+                        future.setException(t);
+                    }
+                }
+            });
+        }
+    }
+
+    /**
+     * A scan that returns its rows through an iterator.
+     * <p/>
+     * If the scan fails, {@link #hasNext()} throws the error that caused the failure. If the scan is cancelled, the
+     * iteration stops after the rows that were already fetched.
+     */
+    public static class RowIterator extends Scan implements Iterator<Row> {
+
+        // Marks the end of the scan in the page queue
+        private static final List<Row> END = new ArrayList<Row>(0);
+
+        private final BlockingQueue<List<Row>> pages = new LinkedBlockingQueue<List<Row>>();
+        // Ranges waiting for the consumer to catch up; guarded by this
+        private final Queue<Split> parked = new LinkedList<Split>();
+        private final int maxBufferedPages;
+        private int bufferedPages; // guarded by this
+
+        private final Iterator<Row> rows = new AbstractIterator<Row>() {
+            private Iterator<Row> current = Collections.<Row>emptyList().iterator();
+
+            @Override
+            protected Row computeNext() {
+                while (!current.hasNext()) {
+                    List<Row> page = Uninterruptibles.takeUninterruptibly(pages);
+                    if (page == END) {
+                        if (!future.isCancelled()) {
+                            try {
+                                Uninterruptibles.getUninterruptibly(future);
+                            } catch (ExecutionException e) {
+                                throw DriverThrowables.propagateCause(e);
+                            }
+                        }
+                        return endOfData();
+                    }
+                    pageConsumed();
+                    current = page.iterator();
+                }
+                return current.next();
+            }
+        };
+
+        private RowIterator(TableScanner scanner, List<TokenRange> ranges) {
+            super(scanner, ranges);
+            this.maxBufferedPages = scanner.maxBufferedPages;
+            future.addListener(new Runnable() {
+                @Override
+                public void run() {
+                    pages.add(END);
+                }
+            }, MoreExecutors.sameThreadExecutor());
+        }
+
+        @Override
+        void onPage(Split split, List<Row> rows) {
+            boolean park;
+            synchronized (this) {
+                if (!rows.isEmpty()) {
+                    pages.add(rows);
+                    bufferedPages += 1;
+                }
+                park = split.pagingState != null && bufferedPages >= maxBufferedPages;
+                if (park)
+                    parked.add(split);
+            }
+            if (!park) {
+                fetchNextPage(split);
+                // The page might have been empty, or the range complete: make sure parked ranges don't wait for a
+                // page that will never be consumed
+                resumeParked();
+            }
+        }
+
+        private void pageConsumed() {
+            synchronized (this) {
+                bufferedPages -= 1;
+            }
+            resumeParked();
+        }
+
+        private void resumeParked() {
+            while (true) {
+                Split resumed;
+                synchronized (this) {
+                    if (bufferedPages >= maxBufferedPages)
+                        return;
+                    resumed = parked.poll();
+                }
+                if (resumed == null)
+                    return;
+                fetchNextPage(resumed);
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return rows.hasNext();
+        }
+
+        @Override
+        public Row next() {
+            return rows.next();
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    private static class CallbackScan extends Scan {
+
+        private final RowCallback callback;
+
+        private CallbackScan(TableScanner scanner, List<TokenRange> ranges, RowCallback callback) {
+            super(scanner, ranges);
+            this.callback = callback;
+        }
+
+        @Override
+        void onPage(Split split, List<Row> rows) {
+            try {
+                for (Row row : rows)
+                    callback.onRow(row);
+            } catch (RuntimeException e) {
+                future.setException(e);
+                return;
+            }
+            fetchNextPage(split);
+        }
+    }
+
+    private static class Split {
+        final TokenRange range;
+        // Only accessed by the callback of the current query of the range, queries of a range are sequential
+        byte[] pagingState;
+        int attempts;
+
+        Split(TokenRange range) {
+            this.range = range;
+        }
+    }
+
+    /**
+     * Routes a range query to the replicas of the range.
+     */
+    private static class RoutedStatement extends StatementWrapper {
+        private final Token routingToken;
+
+        RoutedStatement(Statement wrapped, Token routingToken) {
+            super(wrapped);
+            this.routingToken = routingToken;
+        }
+
+        @Override
+        public Token getRoutingToken() {
+            return routingToken;
+        }
+    }
+
+    /**
+     * Helper class to build {@link TableScanner} instances.
+     */
+    public static class Builder {
+
+        private final Session session;
+        private final TableMetadata table;
+        private final List<String> columns = Lists.newArrayList();
+        private int parallelism = DEFAULT_PARALLELISM;
+        private int fetchSize;
+        private int maxBufferedPages;
+        private int maxRetries = DEFAULT_MAX_RETRIES;
+        private ConsistencyLevel consistencyLevel;
+
+        private Builder(Session session, TableMetadata table) {
+            this.session = session;
+            this.table = table;
+        }
+
+        /**
+         * Sets the columns to read. By default, all the columns are read.
+         *
+         * @param columns the names of the columns, as they would appear in a CQL query.
+         * @return this builder.
+         */
+        public Builder withColumns(String... columns) {
+            this.columns.addAll(Arrays.asList(columns));
+            return this;
+        }
+
+        /**
+         * Sets the number of ranges that are read in parallel. Defaults to {@link #DEFAULT_PARALLELISM}.
+         *
+         * @param parallelism the parallelism.
+         * @return this builder.
+         * @throws IllegalArgumentException if {@code parallelism < 1}.
+         */
+        public Builder withParallelism(int parallelism) {
+            if (parallelism < 1)
+                throw new IllegalArgumentException("parallelism must be strictly positive, was " + parallelism);
+            this.parallelism = parallelism;
+            return this;
+        }
+
+        /**
+         * Sets the fetch size of the range queries. By default, the one of {@link QueryOptions} is used.
+         *
+         * @param fetchSize the fetch size.
+         * @return this builder.
+         */
+        public Builder withFetchSize(int fetchSize) {
+            this.fetchSize = fetchSize;
+            return this;
+        }
+
+        /**
+         * Sets the number of fetched pages that an iterator can hold before ranges stop fetching. Defaults to twice
+         * the parallelism.
+         *
+         * @param maxBufferedPages the maximum number of buffered pages.
+         * @return this builder.
+         * @throws IllegalArgumentException if {@code maxBufferedPages < 1}.
+         */
+        public Builder withMaxBufferedPages(int maxBufferedPages) {
+            if (maxBufferedPages < 1)
+                throw new IllegalArgumentException("maxBufferedPages must be strictly positive, was " + maxBufferedPages);
+            this.maxBufferedPages = maxBufferedPages;
+            return this;
+        }
+
+        /**
+         * Sets the number of times the query of a range is retried before the scan fails. Defaults to
+         * {@link #DEFAULT_MAX_RETRIES}.
+         * <p/>
+         * Note that this is in addition to the retries decided by the {@link com.datastax.driver.core.policies.RetryPolicy}.
+         * Invalid queries are never retried.
+         *
+         * @param maxRetries the maximum number of retries.
+         * @return this builder.
+         */
+        public Builder withMaxRetries(int maxRetries) {
+            this.maxRetries = maxRetries;
+            return this;
+        }
+
+        /**
+         * Sets the consistency level of the range queries. By default, the one of {@link QueryOptions} is used.
+         *
+         * @param consistencyLevel the consistency level.
+         * @return this builder.
+         */
+        public Builder withConsistencyLevel(ConsistencyLevel consistencyLevel) {
+            this.consistencyLevel = consistencyLevel;
+            return this;
+        }
+
+        /**
+         * Builds the scanner. This prepares the range query, and therefore blocks until it is prepared.
+         *
+         * @return the scanner.
+         */
+        public TableScanner build() {
+            List<String> partitionKey = Lists.newArrayList();
+            for (ColumnMetadata column : table.getPartitionKey())
+                partitionKey.add(Metadata.escapeId(column.getName()));
+            String token = "token(" + Joiner.on(',').join(partitionKey) + ")";
+            String keyspace = Metadata.quote(table.getKeyspace().getName());
+            String query = String.format("SELECT %s FROM %s.%s WHERE %s > ? AND %s <= ?",
+                    columns.isEmpty() ? "*" : Joiner.on(',').join(columns),
+                    keyspace, Metadata.escapeId(table.getName()),
+                    token, token);
+            PreparedStatement statement = session.prepare(query);
+            return new TableScanner(session, keyspace, statement, parallelism, fetchSize,
+                    maxBufferedPages > 0 ? maxBufferedPages : 2 * parallelism, maxRetries, consistencyLevel);
+        }
+    }
+}
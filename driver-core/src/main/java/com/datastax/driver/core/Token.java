@@ -272,8 +272,12 @@ public abstract class Token implements Comparable<Token> {
 
             @Override
             M3PToken hash(ByteBuffer partitionKey) {
+                return new M3PToken(hashToValue(partitionKey));
+            }
+
+            long hashToValue(ByteBuffer partitionKey) {
                 long v = murmur(partitionKey);
-                return new M3PToken(v == Long.MIN_VALUE ? Long.MAX_VALUE : v);
+                return v == Long.MIN_VALUE ? Long.MAX_VALUE : v;
             }
 
             @Override
@@ -303,6 +307,17 @@ public abstract class Token implements Comparable<Token> {
             this.value = value;
         }
 
+        long longValue() {
+            return value;
+        }
+
+        /**
+         * Computes the value of the token of a partition key, without allocating the token itself.
+         */
+        static long hashToValue(ByteBuffer partitionKey) {
+            return ((M3PTokenFactory) FACTORY).hashToValue(partitionKey);
+        }
+
         @Override
         public DataType getType() {
             return FACTORY.getTokenType();
@@ -39,6 +39,8 @@ import java.util.concurrent.TimeUnit;
  * <li>{@link com.datastax.driver.core.PoolingOptions#setMaxQueueSize(int)}: maximum number of enqueued requests before
  * this exception is thrown.</li>
  * </ul>
+ * It is also thrown, without enqueuing the request, if the host has reached its adaptive concurrency limit (see
+ * {@link com.datastax.driver.core.PoolingOptions#setAdaptiveConcurrencyLatencyThresholdMillis(int)}).
  */
 public class BusyPoolException extends DriverException implements CoordinatorException {
 
@@ -54,6 +56,10 @@ public class BusyPoolException extends DriverException implements CoordinatorExc
         this(address, buildMessage(address, timeout, unit), null);
     }
 
+    public BusyPoolException(InetSocketAddress address, int inFlight, int concurrencyLimit) {
+        this(address, buildMessage(address, inFlight, concurrencyLimit), null);
+    }
+
     private BusyPoolException(InetSocketAddress address, String message, Throwable cause) {
         super(message, cause);
         this.address = address;
@@ -65,6 +71,12 @@ public class BusyPoolException extends DriverException implements CoordinatorExc
                 queueSize);
     }
 
+    private static String buildMessage(InetSocketAddress address, int inFlight, int concurrencyLimit) {
+        return String.format("[%s] Pool is busy (%d requests in flight, the adaptive concurrency limit is %d)",
+                address.getAddress(),
+                inFlight, concurrencyLimit);
+    }
+
     private static String buildMessage(InetSocketAddress address, long timeout, TimeUnit unit) {
         return String.format("[%s] Pool is busy (no available connection and timed out after %d %s)",
                 address.getAddress(),
@@ -0,0 +1,41 @@
+/*
+ *      Copyright (C) 2012-2015 DataStax Inc.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package com.datastax.driver.core.exceptions;
+
+/**
+ * Thrown when a request was rejected by the session's request throttler, either because the throttler's queue was
+ * full, because the request waited in the queue for too long, or because the session was closed while the request
+ * was waiting.
+ *
+ * @see com.datastax.driver.core.policies.RequestThrottlingPolicy
+ */
+public class RequestThrottlingException extends DriverException {
+
+    private static final long serialVersionUID = 0;
+
+    public RequestThrottlingException(String message) {
+        super(message);
+    }
+
+    public RequestThrottlingException(String message, Throwable cause) {
+        super(message, cause);
+    }
+
+    @Override
+    public RequestThrottlingException copy() {
+        return new RequestThrottlingException(getMessage(), this);
+    }
+}
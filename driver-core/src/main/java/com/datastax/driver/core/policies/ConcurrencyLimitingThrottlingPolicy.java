@@ -0,0 +1,104 @@
+/*
+ *      Copyright (C) 2012-2015 DataStax Inc.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package com.datastax.driver.core.policies;
+
+import com.datastax.driver.core.Cluster;
+import com.google.common.base.Preconditions;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A {@link RequestThrottlingPolicy} that limits the number of requests that each session executes concurrently.
+ * <p/>
+ * Once the limit is reached, new requests wait in a queue until a running request completes. If the queue is full,
+ * or if a request waits for longer than the queue timeout, it fails with a
+ * {@link com.datastax.driver.core.exceptions.RequestThrottlingException}.
+ */
+public class ConcurrencyLimitingThrottlingPolicy implements RequestThrottlingPolicy {
+
+    private final int maxConcurrentRequests;
+    private final int maxQueueSize;
+    private final long queueTimeoutMillis;
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(
+            new ThreadFactoryBuilder().setNameFormat("ConcurrencyLimitingThrottlingPolicy timeouts").setDaemon(true).build());
+
+    /**
+     * Builds a new instance.
+     *
+     * @param maxConcurrentRequests the maximum number of requests that a session executes concurrently.
+     * @param maxQueueSize          the maximum number of requests that can wait for admission. If set to 0, requests
+     *                              over the limit are rejected immediately.
+     * @param queueTimeoutMillis    how long a request can wait for admission before it is rejected.
+     * @throws IllegalArgumentException if {@code maxConcurrentRequests} or {@code queueTimeoutMillis} is not
+     *                                  strictly positive, or if {@code maxQueueSize} is negative.
+     */
+    public ConcurrencyLimitingThrottlingPolicy(int maxConcurrentRequests, int maxQueueSize, long queueTimeoutMillis) {
+        Preconditions.checkArgument(maxConcurrentRequests > 0, "maxConcurrentRequests must be strictly positive");
+        Preconditions.checkArgument(maxQueueSize >= 0, "maxQueueSize must be positive");
+        Preconditions.checkArgument(queueTimeoutMillis > 0, "queueTimeoutMillis must be strictly positive");
+        this.maxConcurrentRequests = maxConcurrentRequests;
+        this.maxQueueSize = maxQueueSize;
+        this.queueTimeoutMillis = queueTimeoutMillis;
+    }
+
+    @Override
+    public void init(Cluster cluster) {
+        // nothing to do
+    }
+
+    @Override
+    public RequestThrottler newThrottler() {
+        return new Throttler();
+    }
+
+    @Override
+    public void close() {
+        scheduler.shutdownNow();
+    }
+
+    private class Throttler extends QueueingRequestThrottler {
+        private final AtomicInteger concurrentRequests = new AtomicInteger();
+
+        Throttler() {
+            super(maxQueueSize, queueTimeoutMillis, ConcurrencyLimitingThrottlingPolicy.this.scheduler);
+        }
+
+        @Override
+        boolean tryAcquirePermit() {
+            while (true) {
+                int current = concurrentRequests.get();
+                if (current >= maxConcurrentRequests)
+                    return false;
+                if (concurrentRequests.compareAndSet(current, current + 1))
+                    return true;
+            }
+        }
+
+        @Override
+        void returnPermit() {
+            concurrentRequests.decrementAndGet();
+        }
+
+        @Override
+        public void release() {
+            concurrentRequests.decrementAndGet();
+            drain();
+        }
+    }
+}
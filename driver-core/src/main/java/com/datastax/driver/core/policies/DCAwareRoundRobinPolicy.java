@@ -27,7 +27,6 @@ import org.slf4j.LoggerFactory;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
-import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.atomic.AtomicInteger;
 
 /**
@@ -43,6 +42,11 @@ import java.util.concurrent.atomic.AtomicInteger;
  * If used with a single data center, this policy is equivalent to the
  * {@link RoundRobinPolicy}, but its DC awareness incurs a slight overhead
  * so the latter should be preferred to this policy in that case.
+ * <p/>
+ * The live hosts of each data center are kept in copy-on-write arrays, so
+ * that creating a query plan does not copy anything: a plan only references
+ * the current array of the local data center and a starting index. The hosts
+ * of remote data centers are only looked up once the local ones are exhausted.
  */
 public class DCAwareRoundRobinPolicy implements LoadBalancingPolicy {
 
@@ -59,7 +63,10 @@ public class DCAwareRoundRobinPolicy implements LoadBalancingPolicy {
 
     private static final String UNSET = "";
 
-    private final ConcurrentMap<String, CopyOnWriteArrayList<Host>> perDcLiveHosts = new ConcurrentHashMap<String, CopyOnWriteArrayList<Host>>();
+    private static final Host[] NO_HOSTS = new Host[0];
+
+    // The arrays are never modified, updates replace them
+    private final ConcurrentMap<String, Host[]> perDcLiveHosts = new ConcurrentHashMap<String, Host[]>();
     private final AtomicInteger index = new AtomicInteger();
 
     @VisibleForTesting
@@ -97,11 +104,7 @@ public class DCAwareRoundRobinPolicy implements LoadBalancingPolicy {
             } else if (!dc.equals(localDc))
                 notInLocalDC.add(String.format("%s (%s)", host.toString(), dc));
 
-            CopyOnWriteArrayList<Host> prev = perDcLiveHosts.get(dc);
-            if (prev == null)
-                perDcLiveHosts.put(dc, new CopyOnWriteArrayList<Host>(Collections.singletonList(host)));
-            else
-                prev.addIfAbsent(host);
+            addLiveHost(dc, host);
         }
 
         if (notInLocalDC.size() > 0) {
@@ -118,9 +121,47 @@ public class DCAwareRoundRobinPolicy implements LoadBalancingPolicy {
         return dc == null ? localDc : dc;
     }
 
-    @SuppressWarnings("unchecked")
-    private static CopyOnWriteArrayList<Host> cloneList(CopyOnWriteArrayList<Host> list) {
-        return (CopyOnWriteArrayList<Host>) list.clone();
+    private void addLiveHost(String dc, Host host) {
+        while (true) {
+            Host[] hosts = perDcLiveHosts.get(dc);
+            if (hosts == null) {
+                if (perDcLiveHosts.putIfAbsent(dc, new Host[]{host}) == null)
+                    return;
+                // We've been beaten, retry with the new array
+                continue;
+            }
+            if (indexOf(hosts, host, hosts.length) >= 0)
+                return;
+            Host[] newHosts = Arrays.copyOf(hosts, hosts.length + 1);
+            newHosts[hosts.length] = host;
+            // ConcurrentMap.replace compares arrays by identity
+            if (perDcLiveHosts.replace(dc, hosts, newHosts))
+                return;
+        }
+    }
+
+    private void removeLiveHost(String dc, Host host) {
+        while (true) {
+            Host[] hosts = perDcLiveHosts.get(dc);
+            if (hosts == null)
+                return;
+            int i = indexOf(hosts, host, hosts.length);
+            if (i < 0)
+                return;
+            Host[] newHosts = hosts.length == 1 ? NO_HOSTS : new Host[hosts.length - 1];
+            System.arraycopy(hosts, 0, newHosts, 0, i);
+            System.arraycopy(hosts, i + 1, newHosts, i, hosts.length - i - 1);
+            if (perDcLiveHosts.replace(dc, hosts, newHosts))
+                return;
+        }
+    }
+
+    private static int indexOf(Host[] hosts, Host host, int limit) {
+        for (int i = 0; i < limit; i++) {
+            if (hosts[i].equals(host))
+                return i;
+        }
+        return -1;
     }
 
     /**
@@ -142,13 +183,11 @@ public class DCAwareRoundRobinPolicy implements LoadBalancingPolicy {
         if (dc == UNSET || dc.equals(localDc))
             return HostDistance.LOCAL;
 
-        CopyOnWriteArrayList<Host> dcHosts = perDcLiveHosts.get(dc);
+        Host[] dcHosts = perDcLiveHosts.get(dc);
         if (dcHosts == null || usedHostsPerRemoteDc == 0)
             return HostDistance.IGNORED;
 
-        // We need to clone, otherwise our subList call is not thread safe
-        dcHosts = cloneList(dcHosts);
-        return dcHosts.subList(0, Math.min(dcHosts.size(), usedHostsPerRemoteDc)).contains(host)
+        return indexOf(dcHosts, host, Math.min(dcHosts.length, usedHostsPerRemoteDc)) >= 0
                 ? HostDistance.REMOTE
                 : HostDistance.IGNORED;
     }
@@ -171,69 +210,73 @@ public class DCAwareRoundRobinPolicy implements LoadBalancingPolicy {
     @Override
     public Iterator<Host> newQueryPlan(String loggedKeyspace, final Statement statement) {
 
-        CopyOnWriteArrayList<Host> localLiveHosts = perDcLiveHosts.get(localDc);
-        final List<Host> hosts = localLiveHosts == null ? Collections.<Host>emptyList() : cloneList(localLiveHosts);
-        final int startIdx = index.getAndIncrement();
-
-        return new AbstractIterator<Host>() {
-
-            private int idx = startIdx;
-            private int remainingLocal = hosts.size();
-
-            // For remote Dcs
-            private Iterator<String> remoteDcs;
-            private List<Host> currentDcHosts;
-            private int currentDcRemaining;
-
-            @Override
-            protected Host computeNext() {
-                while (true) {
-                    if (remainingLocal > 0) {
-                        remainingLocal--;
-                        int c = idx++ % hosts.size();
-                        if (c < 0) {
-                            c += hosts.size();
-                        }
-                        return hosts.get(c);
-                    }
+        Host[] localLiveHosts = perDcLiveHosts.get(localDc);
+        return new QueryPlan(localLiveHosts == null ? NO_HOSTS : localLiveHosts, index.getAndIncrement(), statement);
+    }
 
-                    if (currentDcHosts != null && currentDcRemaining > 0) {
-                        currentDcRemaining--;
-                        int c = idx++ % currentDcHosts.size();
-                        if (c < 0) {
-                            c += currentDcHosts.size();
-                        }
-                        return currentDcHosts.get(c);
-                    }
+    private class QueryPlan extends AbstractIterator<Host> {
 
-                    ConsistencyLevel cl = statement.getConsistencyLevel() == null
-                            ? configuration.getQueryOptions().getConsistencyLevel()
-                            : statement.getConsistencyLevel();
+        private final Host[] localHosts;
+        private final Statement statement;
+        private int idx;
+        private int remainingLocal;
 
-                    if (dontHopForLocalCL && cl.isDCLocal())
-                        return endOfData();
+        // For remote Dcs
+        private Iterator<Map.Entry<String, Host[]>> remoteDcs;
+        private Host[] currentDcHosts;
+        private int currentDcSize;
+        private int currentDcRemaining;
 
-                    if (remoteDcs == null) {
-                        Set<String> copy = new HashSet<String>(perDcLiveHosts.keySet());
-                        copy.remove(localDc);
-                        remoteDcs = copy.iterator();
-                    }
+        QueryPlan(Host[] localHosts, int startIdx, Statement statement) {
+            this.localHosts = localHosts;
+            this.idx = startIdx;
+            this.remainingLocal = localHosts.length;
+            this.statement = statement;
+        }
 
-                    if (!remoteDcs.hasNext())
-                        break;
+        @Override
+        protected Host computeNext() {
+            while (true) {
+                if (remainingLocal > 0) {
+                    remainingLocal--;
+                    int c = idx++ % localHosts.length;
+                    if (c < 0) {
+                        c += localHosts.length;
+                    }
+                    return localHosts[c];
+                }
 
-                    String nextRemoteDc = remoteDcs.next();
-                    CopyOnWriteArrayList<Host> nextDcHosts = perDcLiveHosts.get(nextRemoteDc);
-                    if (nextDcHosts != null) {
-                        // Clone for thread safety
-                        List<Host> dcHosts = cloneList(nextDcHosts);
-                        currentDcHosts = dcHosts.subList(0, Math.min(dcHosts.size(), usedHostsPerRemoteDc));
-                        currentDcRemaining = currentDcHosts.size();
+                if (currentDcRemaining > 0) {
+                    currentDcRemaining--;
+                    int c = idx++ % currentDcSize;
+                    if (c < 0) {
+                        c += currentDcSize;
                     }
+                    return currentDcHosts[c];
                 }
-                return endOfData();
+
+                ConsistencyLevel cl = statement.getConsistencyLevel() == null
+                        ? configuration.getQueryOptions().getConsistencyLevel()
+                        : statement.getConsistencyLevel();
+
+                if (dontHopForLocalCL && cl.isDCLocal())
+                    return endOfData();
+
+                if (remoteDcs == null)
+                    remoteDcs = perDcLiveHosts.entrySet().iterator();
+
+                if (!remoteDcs.hasNext())
+                    break;
+
+                Map.Entry<String, Host[]> nextRemoteDc = remoteDcs.next();
+                if (nextRemoteDc.getKey().equals(localDc))
+                    continue;
+                currentDcHosts = nextRemoteDc.getValue();
+                currentDcSize = Math.min(currentDcHosts.length, usedHostsPerRemoteDc);
+                currentDcRemaining = currentDcSize;
             }
-        };
+            return endOfData();
+        }
     }
 
     @Override
@@ -246,22 +289,12 @@ public class DCAwareRoundRobinPolicy implements LoadBalancingPolicy {
             localDc = dc;
         }
 
-        CopyOnWriteArrayList<Host> dcHosts = perDcLiveHosts.get(dc);
-        if (dcHosts == null) {
-            CopyOnWriteArrayList<Host> newMap = new CopyOnWriteArrayList<Host>(Collections.singletonList(host));
-            dcHosts = perDcLiveHosts.putIfAbsent(dc, newMap);
-            // If we've successfully put our new host, we're good, otherwise we've been beaten so continue
-            if (dcHosts == null)
-                return;
-        }
-        dcHosts.addIfAbsent(host);
+        addLiveHost(dc, host);
     }
 
     @Override
     public void onDown(Host host) {
-        CopyOnWriteArrayList<Host> dcHosts = perDcLiveHosts.get(dc(host));
-        if (dcHosts != null)
-            dcHosts.remove(host);
+        removeLiveHost(dc(host), host);
     }
 
     @Override
@@ -0,0 +1,52 @@
+/*
+ *      Copyright (C) 2012-2015 DataStax Inc.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package com.datastax.driver.core.policies;
+
+import com.datastax.driver.core.Host;
+
+/**
+ * A wrapper load balancing policy that sends each query to the less busy of the first two hosts of its child policy's
+ * query plan.
+ * <p/>
+ * This policy is meant to wrap a {@link TokenAwarePolicy} with shuffling enabled: the first hosts of the child plan are
+ * then the local replicas in random order, and comparing the first two is a "power of two choices" sampling of the
+ * replicas. The load of a host is its number of requests in flight (see {@link Host#getInFlightQueries()}), which
+ * reacts to a slow host as soon as its requests start piling up, instead of waiting for their latencies to be measured
+ * like {@link LatencyAwarePolicy}.
+ * <p/>
+ * The first two hosts are only swapped if they are both replicas of the query (if the replicas can be determined, see
+ * {@link com.datastax.driver.core.Metadata#getReplicas(String, java.nio.ByteBuffer)}), or both {@code LOCAL}
+ * (otherwise), so that a non-replica or a remote host never gets promoted. The rest of the plan is the child plan,
+ * unchanged.
+ * <p/>
+ * The distance of a host is always the same as returned by the child policy.
+ */
+public class LeastInFlightPolicy extends TwoChoicesPolicy {
+
+    /**
+     * Creates a new instance.
+     *
+     * @param childPolicy the load balancing policy to wrap, typically a {@link TokenAwarePolicy}.
+     */
+    public LeastInFlightPolicy(LoadBalancingPolicy childPolicy) {
+        super(childPolicy);
+    }
+
+    @Override
+    protected double load(Host host) {
+        return host.getInFlightQueries();
+    }
+}
@@ -0,0 +1,69 @@
+/*
+ *      Copyright (C) 2012-2015 DataStax Inc.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package com.datastax.driver.core.policies;
+
+import com.datastax.driver.core.Cluster;
+import com.datastax.driver.core.utils.MoreFutures;
+import com.google.common.util.concurrent.ListenableFuture;
+
+/**
+ * A {@link RequestThrottlingPolicy} that never throttles requests.
+ * <p/>
+ * This is the default.
+ */
+public class PassThroughThrottlingPolicy implements RequestThrottlingPolicy {
+
+    /**
+     * The single instance (this class is stateless).
+     */
+    public static final PassThroughThrottlingPolicy INSTANCE = new PassThroughThrottlingPolicy();
+
+    private static final RequestThrottler THROTTLER = new RequestThrottler() {
+        @Override
+        public ListenableFuture<Void> acquire() {
+            return MoreFutures.VOID_SUCCESS;
+        }
+
+        @Override
+        public void release() {
+            // do nothing
+        }
+
+        @Override
+        public void close() {
+            // do nothing
+        }
+    };
+
+    private PassThroughThrottlingPolicy() {
+        // do nothing
+    }
+
+    @Override
+    public void init(Cluster cluster) {
+        // do nothing
+    }
+
+    @Override
+    public RequestThrottler newThrottler() {
+        return THROTTLER;
+    }
+
+    @Override
+    public void close() {
+        // do nothing
+    }
+}
@@ -0,0 +1,313 @@
+/*
+ *      Copyright (C) 2012-2015 DataStax Inc.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package com.datastax.driver.core.policies;
+
+import com.datastax.driver.core.Cluster;
+import com.datastax.driver.core.Host;
+import com.datastax.driver.core.LatencyTracker;
+import com.datastax.driver.core.Statement;
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableMap;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * A wrapper load balancing policy that sends each query to the host with the better "peak EWMA" score of the first
+ * two hosts of its child policy's query plan.
+ * <p/>
+ * The latency of a host is tracked with an exponentially weighted moving average that is peak-sensitive: a latency
+ * higher than the current average replaces it immediately, while lower latencies only bring it down progressively
+ * (with a weight that depends on the time elapsed since the previous measurement, see
+ * {@link #PeakEwmaPolicy(LoadBalancingPolicy, long, TimeUnit) decay time}). In the absence of new measurements,
+ * the average decays towards zero over time, so a host that was slow gets tried again, without a separate retry
+ * period. The score of a host is this average, multiplied by its number of requests in flight plus one (see
+ * {@link Host#getInFlightQueries()}), so that a host that starts queuing requests is penalized before its responses
+ * even come back.
+ * <p/>
+ * Averages are updated inline, and without locking, by the {@link LatencyTracker} that this policy registers with the
+ * cluster. Query plans don't sort hosts: like {@link LeastInFlightPolicy}, the policy compares the first two hosts of
+ * the child policy's plan, which are two random replicas when the child is a shuffling {@link TokenAwarePolicy}
+ * ("power of two choices"). The hosts are only swapped if they are both replicas of the query (or both {@code LOCAL},
+ * if the replicas can't be determined).
+ * <p/>
+ * The distance of a host is always the same as returned by the child policy.
+ */
+public class PeakEwmaPolicy extends TwoChoicesPolicy {
+
+    /**
+     * The default decay time (10 seconds).
+     */
+    public static final long DEFAULT_DECAY_TIME_NANOS = TimeUnit.SECONDS.toNanos(10);
+
+    private final double decayTimeNanos;
+    private final Tracker latencyTracker = new Tracker();
+
+    /**
+     * Creates a new instance with the {@link #DEFAULT_DECAY_TIME_NANOS default decay time}.
+     *
+     * @param childPolicy the load balancing policy to wrap, typically a {@link TokenAwarePolicy}.
+     */
+    public PeakEwmaPolicy(LoadBalancingPolicy childPolicy) {
+        this(childPolicy, DEFAULT_DECAY_TIME_NANOS, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Creates a new instance.
+     *
+     * @param childPolicy the load balancing policy to wrap, typically a {@link TokenAwarePolicy}.
+     * @param decayTime   the time it takes for the weight of a measurement to decrease by a factor of {@code e}.
+     *                    A shorter time makes the policy react faster to a host getting faster (or idle), but
+     *                    makes the scores noisier.
+     * @param unit        the unit of {@code decayTime}.
+     * @throws IllegalArgumentException if {@code decayTime <= 0}.
+     */
+    public PeakEwmaPolicy(LoadBalancingPolicy childPolicy, long decayTime, TimeUnit unit) {
+        super(childPolicy);
+        Preconditions.checkArgument(decayTime > 0, "decay time must be strictly positive");
+        this.decayTimeNanos = (double) unit.toNanos(decayTime);
+    }
+
+    @Override
+    public void init(Cluster cluster, Collection<Host> hosts) {
+        super.init(cluster, hosts);
+        cluster.register(latencyTracker);
+    }
+
+    @Override
+    protected double load(Host host) {
+        Ewma ewma = latencyTracker.ewmaOf(host);
+        int inFlight = host.getInFlightQueries();
+        if (ewma == null)
+            // Never measured: try it first if it's idle, to get a measurement, but don't pile requests on it
+            return inFlight == 0 ? 0 : Double.MAX_VALUE;
+        return ewma.decayedCost(System.nanoTime(), decayTimeNanos) * (inFlight + 1);
+    }
+
+    /**
+     * Returns a snapshot of the scores maintained by this policy.
+     *
+     * @return a new (immutable) {@link Snapshot} object containing the current scores maintained by this policy.
+     */
+    public Snapshot getScoresSnapshot() {
+        ImmutableMap.Builder<Host, Snapshot.Stats> builder = ImmutableMap.builder();
+        long now = System.nanoTime();
+        for (Map.Entry<Host, AtomicReference<Ewma>> entry : latencyTracker.ewmas.entrySet()) {
+            Host host = entry.getKey();
+            Ewma ewma = entry.getValue().get();
+            if (ewma == null)
+                continue;
+            int inFlight = host.getInFlightQueries();
+            double cost = ewma.decayedCost(now, decayTimeNanos);
+            builder.put(host, new Snapshot.Stats(now - ewma.timestamp, (long) cost, inFlight,
+                    (long) (cost * (inFlight + 1)), ewma.nbMeasure));
+        }
+        return new Snapshot(builder.build());
+    }
+
+    @Override
+    public void onDown(Host host) {
+        super.onDown(host);
+        latencyTracker.resetHost(host);
+    }
+
+    @Override
+    public void onRemove(Host host) {
+        super.onRemove(host);
+        latencyTracker.resetHost(host);
+    }
+
+    /**
+     * An immutable snapshot of the per-host scores maintained by {@code PeakEwmaPolicy}.
+     */
+    public static class Snapshot {
+        private final Map<Host, Stats> stats;
+
+        private Snapshot(Map<Host, Stats> stats) {
+            this.stats = stats;
+        }
+
+        /**
+         * A map with the stats for all hosts tracked by the {@code PeakEwmaPolicy} at the time of the snapshot.
+         *
+         * @return a immutable map with all the stats contained in this snapshot.
+         */
+        public Map<Host, Stats> getAllStats() {
+            return stats;
+        }
+
+        /**
+         * The {@code Stats} object for a given host.
+         *
+         * @param host the host to return the stats of.
+         * @return the {@code Stats} for {@code host} in this snapshot or {@code null} if the snapshot has no
+         * information on {@code host}.
+         */
+        public Stats getStats(Host host) {
+            return stats.get(host);
+        }
+
+        /**
+         * A snapshot of the statistics on a given host kept by {@code PeakEwmaPolicy}.
+         */
+        public static class Stats {
+            private final long lastUpdatedSince;
+            private final long averageLatency;
+            private final int inFlightQueries;
+            private final long score;
+            private final long nbMeasurements;
+
+            private Stats(long lastUpdatedSince, long averageLatency, int inFlightQueries, long score, long nbMeasurements) {
+                this.lastUpdatedSince = lastUpdatedSince;
+                this.averageLatency = averageLatency;
+                this.inFlightQueries = inFlightQueries;
+                this.score = score;
+                this.nbMeasurements = nbMeasurements;
+            }
+
+            /**
+             * The number of nanoseconds since the last latency update was recorded (at the time of the snapshot).
+             *
+             * @return the number of nanoseconds since the last latency update was recorded.
+             */
+            public long lastUpdatedSince() {
+                return lastUpdatedSince;
+            }
+
+            /**
+             * The peak EWMA of the latencies of the host, in nanoseconds, decayed to the time of the snapshot.
+             *
+             * @return the average latency.
+             */
+            public long getAverageLatency() {
+                return averageLatency;
+            }
+
+            /**
+             * The number of requests in flight to the host at the time of the snapshot.
+             *
+             * @return the number of requests in flight.
+             */
+            public int getInFlightQueries() {
+                return inFlightQueries;
+            }
+
+            /**
+             * The score of the host at the time of the snapshot (lower is better): its average latency multiplied
+             * by its number of requests in flight plus one.
+             *
+             * @return the score.
+             */
+            public long getScore() {
+                return score;
+            }
+
+            /**
+             * The number of recorded latency measurements for the host.
+             *
+             * @return the number of recorded latency measurements.
+             */
+            public long getMeasurementsCount() {
+                return nbMeasurements;
+            }
+        }
+    }
+
+    private class Tracker implements LatencyTracker {
+
+        private final ConcurrentMap<Host, AtomicReference<Ewma>> ewmas = new ConcurrentHashMap<Host, AtomicReference<Ewma>>();
+
+        @Override
+        public void update(Host host, Statement statement, Exception exception, long newLatencyNanos) {
+            // Like LatencyAwarePolicy, ignore errors that don't reflect the responsiveness of the host
+            if (exception != null && LatencyAwarePolicy.EXCLUDED_EXCEPTIONS.contains(exception.getClass()))
+                return;
+
+            AtomicReference<Ewma> ref = ewmas.get(host);
+            if (ref == null) {
+                ref = new AtomicReference<Ewma>();
+                AtomicReference<Ewma> old = ewmas.putIfAbsent(host, ref);
+                if (old != null)
+                    ref = old;
+            }
+            long now = System.nanoTime();
+            Ewma previous, next;
+            do {
+                previous = ref.get();
+                next = (previous == null)
+                        ? new Ewma(now, newLatencyNanos, 1)
+                        : previous.next(now, newLatencyNanos, decayTimeNanos);
+            } while (!ref.compareAndSet(previous, next));
+        }
+
+        Ewma ewmaOf(Host host) {
+            AtomicReference<Ewma> ref = ewmas.get(host);
+            return ref == null ? null : ref.get();
+        }
+
+        void resetHost(Host host) {
+            ewmas.remove(host);
+        }
+
+        @Override
+        public void onRegister(Cluster cluster) {
+            // nothing to do
+        }
+
+        @Override
+        public void onUnregister(Cluster cluster) {
+            // nothing to do
+        }
+    }
+
+    static class Ewma {
+        final long timestamp;
+        final double cost;
+        final long nbMeasure;
+
+        Ewma(long timestamp, double cost, long nbMeasure) {
+            this.timestamp = timestamp;
+            this.cost = cost;
+            this.nbMeasure = nbMeasure;
+        }
+
+        Ewma next(long now, long latencyNanos, double decayTimeNanos) {
+            // Peak sensitivity: a latency above the average replaces it right away
+            if (latencyNanos > cost)
+                return new Ewma(now, latencyNanos, nbMeasure + 1);
+            double weight = weight(now, decayTimeNanos);
+            return new Ewma(now, cost * weight + latencyNanos * (1.0 - weight), nbMeasure + 1);
+        }
+
+        /**
+         * The cost as if a latency of 0 had been measured now, so that the cost of a host that is not used anymore
+         * keeps decreasing.
+         */
+        double decayedCost(long now, double decayTimeNanos) {
+            return cost * weight(now, decayTimeNanos);
+        }
+
+        private double weight(long now, double decayTimeNanos) {
+            // The clock could go backwards on some platforms, see LatencyAwarePolicy
+            long elapsed = Math.max(0, now - timestamp);
+            return Math.exp(-elapsed / decayTimeNanos);
+        }
+    }
+}
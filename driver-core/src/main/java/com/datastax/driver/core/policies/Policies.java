@@ -37,6 +37,7 @@ public class Policies {
     private static final RetryPolicy DEFAULT_RETRY_POLICY = DefaultRetryPolicy.INSTANCE;
     private static final AddressTranslator DEFAULT_ADDRESS_TRANSLATOR = new IdentityTranslator();
     private static final SpeculativeExecutionPolicy DEFAULT_SPECULATIVE_EXECUTION_POLICY = NoSpeculativeExecutionPolicy.INSTANCE;
+    private static final RequestThrottlingPolicy DEFAULT_REQUEST_THROTTLING_POLICY = PassThroughThrottlingPolicy.INSTANCE;
 
     private final LoadBalancingPolicy loadBalancingPolicy;
     private final ReconnectionPolicy reconnectionPolicy;
@@ -44,19 +45,22 @@ public class Policies {
     private final AddressTranslator addressTranslator;
     private final TimestampGenerator timestampGenerator;
     private final SpeculativeExecutionPolicy speculativeExecutionPolicy;
+    private final RequestThrottlingPolicy requestThrottlingPolicy;
 
     private Policies(LoadBalancingPolicy loadBalancingPolicy,
                      ReconnectionPolicy reconnectionPolicy,
                      RetryPolicy retryPolicy,
                      AddressTranslator addressTranslator,
                      TimestampGenerator timestampGenerator,
-                     SpeculativeExecutionPolicy speculativeExecutionPolicy) {
+                     SpeculativeExecutionPolicy speculativeExecutionPolicy,
+                     RequestThrottlingPolicy requestThrottlingPolicy) {
         this.loadBalancingPolicy = loadBalancingPolicy;
         this.reconnectionPolicy = reconnectionPolicy;
         this.retryPolicy = retryPolicy;
         this.addressTranslator = addressTranslator;
         this.timestampGenerator = timestampGenerator;
         this.speculativeExecutionPolicy = speculativeExecutionPolicy;
+        this.requestThrottlingPolicy = requestThrottlingPolicy;
     }
 
     /**
@@ -133,6 +137,17 @@ public class Policies {
         return DEFAULT_SPECULATIVE_EXECUTION_POLICY;
     }
 
+    /**
+     * The default request throttling policy.
+     * <p/>
+     * The default request throttling policy is a {@link PassThroughThrottlingPolicy}.
+     *
+     * @return the default request throttling policy.
+     */
+    public static RequestThrottlingPolicy defaultRequestThrottlingPolicy() {
+        return DEFAULT_REQUEST_THROTTLING_POLICY;
+    }
+
     /**
      * The load balancing policy in use.
      * <p/>
@@ -194,6 +209,18 @@ public class Policies {
         return speculativeExecutionPolicy;
     }
 
+    /**
+     * The request throttling policy in use.
+     * <p/>
+     * The request throttling policy limits the rate or the number of requests that each session sends to the
+     * cluster.
+     *
+     * @return the request throttling policy in use.
+     */
+    public RequestThrottlingPolicy getRequestThrottlingPolicy() {
+        return requestThrottlingPolicy;
+    }
+
     /**
      * A builder to create a new {@code Policies} object.
      */
@@ -204,6 +231,7 @@ public class Policies {
         private AddressTranslator addressTranslator;
         private TimestampGenerator timestampGenerator;
         private SpeculativeExecutionPolicy speculativeExecutionPolicy;
+        private RequestThrottlingPolicy requestThrottlingPolicy;
 
         /**
          * Sets the load balancing policy.
@@ -271,6 +299,17 @@ public class Policies {
             return this;
         }
 
+        /**
+         * Sets the request throttling policy.
+         *
+         * @param requestThrottlingPolicy see {@link #getRequestThrottlingPolicy()}.
+         * @return this builder.
+         */
+        public Builder withRequestThrottlingPolicy(RequestThrottlingPolicy requestThrottlingPolicy) {
+            this.requestThrottlingPolicy = requestThrottlingPolicy;
+            return this;
+        }
+
         /**
          * Builds the final object from this builder.
          * <p/>
@@ -285,7 +324,8 @@ public class Policies {
                     Objects.firstNonNull(retryPolicy, Policies.defaultRetryPolicy()),
                     Objects.firstNonNull(addressTranslator, Policies.defaultAddressTranslator()),
                     Objects.firstNonNull(timestampGenerator, Policies.defaultTimestampGenerator()),
-                    Objects.firstNonNull(speculativeExecutionPolicy, Policies.defaultSpeculativeExecutionPolicy()));
+                    Objects.firstNonNull(speculativeExecutionPolicy, Policies.defaultSpeculativeExecutionPolicy()),
+                    Objects.firstNonNull(requestThrottlingPolicy, Policies.defaultRequestThrottlingPolicy()));
         }
     }
 }
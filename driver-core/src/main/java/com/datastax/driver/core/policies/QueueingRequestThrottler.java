@@ -0,0 +1,178 @@
+/*
+ *      Copyright (C) 2012-2015 DataStax Inc.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package com.datastax.driver.core.policies;
+
+import com.datastax.driver.core.exceptions.RequestThrottlingException;
+import com.datastax.driver.core.utils.MoreFutures;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Base class for throttlers that admit requests when a "permit" is available, and otherwise make them wait in a
+ * bounded queue, with a timeout.
+ */
+abstract class QueueingRequestThrottler implements RequestThrottlingPolicy.RequestThrottler {
+
+    private final int maxQueueSize;
+    private final long queueTimeoutMillis;
+    private final ScheduledExecutorService scheduler;
+
+    private final Queue<PendingRequest> queue = new ConcurrentLinkedQueue<PendingRequest>();
+    private final AtomicInteger queueSize = new AtomicInteger();
+    // Number of pending calls to drain(), only the call that increments it from 0 admits requests
+    private final AtomicInteger drainRequests = new AtomicInteger();
+    private volatile boolean closed;
+
+    QueueingRequestThrottler(int maxQueueSize, long queueTimeoutMillis, ScheduledExecutorService scheduler) {
+        this.maxQueueSize = maxQueueSize;
+        this.queueTimeoutMillis = queueTimeoutMillis;
+        this.scheduler = scheduler;
+    }
+
+    /**
+     * Tries to take a permit to execute a request.
+     *
+     * @return whether a permit was available.
+     */
+    abstract boolean tryAcquirePermit();
+
+    /**
+     * Gives back a permit obtained with {@link #tryAcquirePermit()} that ended up not being used.
+     */
+    abstract void returnPermit();
+
+    /**
+     * Invoked after a request was enqueued. The default implementation tries to admit waiting requests right away, in
+     * case permits were returned in the meantime.
+     */
+    void onEnqueued() {
+        drain();
+    }
+
+    @Override
+    public ListenableFuture<Void> acquire() {
+        if (closed)
+            return Futures.immediateFailedFuture(new RequestThrottlingException("Session is closed"));
+
+        // Don't overtake requests that are already waiting
+        if (queueSize.get() == 0 && tryAcquirePermit())
+            return MoreFutures.VOID_SUCCESS;
+
+        while (true) {
+            int size = queueSize.get();
+            if (size >= maxQueueSize)
+                return Futures.immediateFailedFuture(new RequestThrottlingException(
+                        String.format("The session has too many requests waiting for admission (max queue size %d)", maxQueueSize)));
+            if (queueSize.compareAndSet(size, size + 1))
+                break;
+        }
+
+        PendingRequest request = new PendingRequest();
+        request.scheduleTimeout();
+        queue.add(request);
+        onEnqueued();
+        // If we raced with close, make sure the request does not stay in the queue forever
+        if (closed)
+            request.fail(new RequestThrottlingException("Session is closed"));
+        return request.future;
+    }
+
+    /**
+     * Admits waiting requests, as long as permits are available.
+     */
+    void drain() {
+        // Admitting a request runs its callbacks synchronously, and they can release a permit (for example if the
+        // request fails right away), which calls this method again. Reentrant or concurrent calls only ask the
+        // current call to loop once more, so that the stack depth does not grow with the size of the queue.
+        if (drainRequests.getAndIncrement() != 0)
+            return;
+        int missed = 1;
+        do {
+            while (!queue.isEmpty() && tryAcquirePermit()) {
+                PendingRequest request = queue.poll();
+                if (request == null || !request.admit())
+                    returnPermit();
+            }
+            missed = drainRequests.addAndGet(-missed);
+        } while (missed != 0);
+    }
+
+    boolean hasWaitingRequests() {
+        return !queue.isEmpty();
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        PendingRequest request;
+        while ((request = queue.poll()) != null)
+            request.fail(new RequestThrottlingException("Session is closed"));
+    }
+
+    private class PendingRequest implements Runnable {
+        final SettableFuture<Void> future = SettableFuture.create();
+        // Decides between admission and failure; the future is only completed once the bookkeeping is done, so that
+        // callbacks see a consistent queue size.
+        private final AtomicBoolean completed = new AtomicBoolean();
+        private volatile ScheduledFuture<?> timeout;
+
+        void scheduleTimeout() {
+            timeout = scheduler.schedule(this, queueTimeoutMillis, TimeUnit.MILLISECONDS);
+        }
+
+        // Invoked when the request is dequeued by drain()
+        boolean admit() {
+            if (!completed.compareAndSet(false, true))
+                // It timed out concurrently, the queue size has already been updated
+                return false;
+            queueSize.decrementAndGet();
+            cancelTimeout();
+            // False if the client cancelled the future in the meantime
+            return future.set(null);
+        }
+
+        void fail(RequestThrottlingException exception) {
+            if (completed.compareAndSet(false, true)) {
+                queue.remove(this);
+                queueSize.decrementAndGet();
+                cancelTimeout();
+                future.setException(exception);
+            }
+        }
+
+        private void cancelTimeout() {
+            ScheduledFuture<?> timeout = this.timeout;
+            if (timeout != null)
+                timeout.cancel(false);
+        }
+
+        // Timeout
+        @Override
+        public void run() {
+            fail(new RequestThrottlingException(
+                    String.format("The request waited for admission for more than %d ms", queueTimeoutMillis)));
+        }
+    }
+}
@@ -0,0 +1,134 @@
+/*
+ *      Copyright (C) 2012-2015 DataStax Inc.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package com.datastax.driver.core.policies;
+
+import com.datastax.driver.core.Cluster;
+import com.google.common.base.Preconditions;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * A {@link RequestThrottlingPolicy} that limits the rate at which each session starts requests.
+ * <p/>
+ * This is a token bucket: permits are added at a constant rate, up to one second worth of requests, which allows
+ * short bursts after idle periods. When no permit is available, new requests wait in a queue. If the queue is full,
+ * or if a request waits for longer than the queue timeout, it fails with a
+ * {@link com.datastax.driver.core.exceptions.RequestThrottlingException}.
+ * <p/>
+ * Note that this does not limit how many requests execute concurrently: if the cluster slows down, in-flight requests
+ * will accumulate. Consider {@link ConcurrencyLimitingThrottlingPolicy} for that.
+ */
+public class RateLimitingThrottlingPolicy implements RequestThrottlingPolicy {
+
+    private final int maxRequestsPerSecond;
+    private final int maxQueueSize;
+    private final long queueTimeoutMillis;
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(
+            new ThreadFactoryBuilder().setNameFormat("RateLimitingThrottlingPolicy scheduler").setDaemon(true).build());
+
+    /**
+     * Builds a new instance.
+     *
+     * @param maxRequestsPerSecond the maximum number of requests that a session starts per second.
+     * @param maxQueueSize         the maximum number of requests that can wait for admission. If set to 0, requests
+     *                             over the limit are rejected immediately.
+     * @param queueTimeoutMillis   how long a request can wait for admission before it is rejected.
+     * @throws IllegalArgumentException if {@code maxRequestsPerSecond} or {@code queueTimeoutMillis} is not strictly
+     *                                  positive, or if {@code maxQueueSize} is negative.
+     */
+    public RateLimitingThrottlingPolicy(int maxRequestsPerSecond, int maxQueueSize, long queueTimeoutMillis) {
+        Preconditions.checkArgument(maxRequestsPerSecond > 0, "maxRequestsPerSecond must be strictly positive");
+        Preconditions.checkArgument(maxQueueSize >= 0, "maxQueueSize must be positive");
+        Preconditions.checkArgument(queueTimeoutMillis > 0, "queueTimeoutMillis must be strictly positive");
+        this.maxRequestsPerSecond = maxRequestsPerSecond;
+        this.maxQueueSize = maxQueueSize;
+        this.queueTimeoutMillis = queueTimeoutMillis;
+    }
+
+    @Override
+    public void init(Cluster cluster) {
+        // nothing to do
+    }
+
+    @Override
+    public RequestThrottler newThrottler() {
+        return new Throttler();
+    }
+
+    @Override
+    public void close() {
+        scheduler.shutdownNow();
+    }
+
+    private class Throttler extends QueueingRequestThrottler {
+        private final long nanosPerPermit = TimeUnit.SECONDS.toNanos(1) / maxRequestsPerSecond;
+        private final AtomicBoolean drainScheduled = new AtomicBoolean();
+        private final Runnable drainTask = new Runnable() {
+            @Override
+            public void run() {
+                drainScheduled.set(false);
+                drain();
+                if (hasWaitingRequests())
+                    scheduleDrain();
+            }
+        };
+
+        // Guarded by this
+        private double permits = maxRequestsPerSecond;
+        private long lastRefillNanos = System.nanoTime();
+
+        Throttler() {
+            super(maxQueueSize, queueTimeoutMillis, RateLimitingThrottlingPolicy.this.scheduler);
+        }
+
+        @Override
+        synchronized boolean tryAcquirePermit() {
+            long now = System.nanoTime();
+            permits = Math.min(maxRequestsPerSecond, permits + (double) (now - lastRefillNanos) / nanosPerPermit);
+            lastRefillNanos = now;
+            if (permits < 1)
+                return false;
+            permits -= 1;
+            return true;
+        }
+
+        @Override
+        synchronized void returnPermit() {
+            permits += 1;
+        }
+
+        @Override
+        void onEnqueued() {
+            drain();
+            if (hasWaitingRequests())
+                scheduleDrain();
+        }
+
+        private void scheduleDrain() {
+            if (drainScheduled.compareAndSet(false, true))
+                scheduler.schedule(drainTask, nanosPerPermit, TimeUnit.NANOSECONDS);
+        }
+
+        @Override
+        public void release() {
+            // Completed requests don't give their permit back
+        }
+    }
+}
@@ -0,0 +1,79 @@
+/*
+ *      Copyright (C) 2012-2015 DataStax Inc.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package com.datastax.driver.core.policies;
+
+import com.datastax.driver.core.Cluster;
+import com.google.common.util.concurrent.ListenableFuture;
+
+/**
+ * The policy that limits the number of requests that a session executes concurrently, or the rate at which it
+ * executes them.
+ * <p/>
+ * Each session gets its own {@link RequestThrottler}, which is consulted before each request issued by
+ * {@link com.datastax.driver.core.Session#executeAsync(com.datastax.driver.core.Statement)} (and the methods that
+ * delegate to it) is sent. Internal requests (such as preparing statements or fetching the schema) are not throttled.
+ */
+public interface RequestThrottlingPolicy {
+
+    /**
+     * Gets invoked at cluster startup.
+     *
+     * @param cluster the cluster that this policy is associated with.
+     */
+    void init(Cluster cluster);
+
+    /**
+     * Returns the throttler to use for a new session.
+     *
+     * @return the throttler.
+     */
+    RequestThrottler newThrottler();
+
+    /**
+     * Gets invoked at cluster shutdown.
+     * <p/>
+     * This gives the policy the opportunity to perform some cleanup, for instance stop threads that it might have started.
+     */
+    void close();
+
+    /**
+     * Throttles the requests of a given session.
+     */
+    interface RequestThrottler {
+        /**
+         * Requests the permission to execute a request.
+         * <p/>
+         * Implementations must not block: if the request can't execute right away, they should return a future that
+         * completes once it can, or fails with a {@link com.datastax.driver.core.exceptions.RequestThrottlingException}
+         * if it is rejected.
+         *
+         * @return a future that completes when the request can be executed.
+         */
+        ListenableFuture<Void> acquire();
+
+        /**
+         * Signals that a request admitted by {@link #acquire()} has completed (successfully or not).
+         */
+        void release();
+
+        /**
+         * Gets invoked when the session is closed.
+         * <p/>
+         * Implementations should fail the requests that are still waiting for admission.
+         */
+        void close();
+    }
+}
@@ -15,12 +15,16 @@
  */
 package com.datastax.driver.core.policies;
 
+import com.codahale.metrics.Counter;
 import com.datastax.driver.core.*;
 import com.google.common.collect.AbstractIterator;
-import com.google.common.collect.Lists;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.MapMaker;
 
 import java.nio.ByteBuffer;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 /**
  * A wrapper load balancing policy that add token awareness to a child policy.
@@ -43,15 +47,38 @@ import java.util.*;
  * priority. For example, if you wrap {@link DCAwareRoundRobinPolicy} with this
  * token aware policy, replicas from remote data centers may only be
  * returned after all the host of the local data center.
+ * <p/>
+ * If a local rack is provided (see {@link #TokenAwarePolicy(LoadBalancingPolicy, boolean, String)}),
+ * the local replicas in that rack are returned before the other local replicas.
+ * <p/>
+ * Query plans are cheap to create: the replicas of each token are copied once into an array that is reused by all
+ * subsequent plans for that token, and shuffling is done by starting the iteration of that array at a random
+ * position.
  */
 public class TokenAwarePolicy implements ChainableLoadBalancingPolicy {
 
+    private static final ThreadLocal<Random> RANDOM = new ThreadLocal<Random>() {
+        @Override
+        protected Random initialValue() {
+            return new Random();
+        }
+    };
+
     private final LoadBalancingPolicy childPolicy;
     private final boolean shuffleReplicas;
+    private final String localRack;
+    private final boolean orderLWTReplicas;
+    private final ConcurrentMap<String, Counter> replicaHitsPerRack = new ConcurrentHashMap<String, Counter>();
     private volatile Metadata clusterMetadata;
     private volatile ProtocolVersion protocolVersion;
     private volatile CodecRegistry codecRegistry;
 
+    // The replica sets of the token map are immutable, so their array copies can be cached as long as the sets are
+    // alive (weak keys use identity comparison, so lookups don't hash the sets either).
+    private final ConcurrentMap<Set<Host>, Host[]> replicaArrays = new MapMaker()
+            .weakKeys()
+            .makeMap();
+
     /**
      * Creates a new {@code TokenAware} policy.
      *
@@ -65,8 +92,45 @@ public class TokenAwarePolicy implements ChainableLoadBalancingPolicy {
      *                        alleviate hotspots caused by "fat" partitions.
      */
     public TokenAwarePolicy(LoadBalancingPolicy childPolicy, boolean shuffleReplicas) {
+        this(childPolicy, shuffleReplicas, null);
+    }
+
+    /**
+     * Creates a new {@code TokenAware} policy that prioritizes the replicas of a given rack.
+     * <p/>
+     * The local replicas in {@code localRack} (as returned by {@link Host#getRack()}) will be returned first,
+     * followed by the other local replicas. Use this when clients are deployed in the same racks (or
+     * availability zones) as the Cassandra nodes, to avoid the latency of cross-rack requests.
+     *
+     * @param childPolicy     the load balancing policy to wrap with token awareness.
+     * @param shuffleReplicas whether to shuffle the replicas (see {@link #TokenAwarePolicy(LoadBalancingPolicy, boolean)}).
+     *                        Replicas are only shuffled among the replicas of the same rack.
+     * @param localRack       the rack of the client, or {@code null} to treat all local replicas equally.
+     */
+    public TokenAwarePolicy(LoadBalancingPolicy childPolicy, boolean shuffleReplicas, String localRack) {
+        this(childPolicy, shuffleReplicas, localRack, false);
+    }
+
+    /**
+     * Creates a new {@code TokenAware} policy that can route lightweight transactions deterministically.
+     * <p/>
+     * Shuffling replicas sends the Paxos rounds of concurrent lightweight transactions on the same partition to
+     * different coordinators, which makes them contend with each other and retry. With {@code orderLWTReplicas},
+     * statements for which {@link Statement#isLWT()} returns {@code true} always try the local replicas in ring
+     * order (starting with the primary replica of the partition), regardless of {@code shuffleReplicas} and
+     * {@code localRack}, so that all clients use the same coordinator. Other statements are not affected.
+     *
+     * @param childPolicy      the load balancing policy to wrap with token awareness.
+     * @param shuffleReplicas  whether to shuffle the replicas (see {@link #TokenAwarePolicy(LoadBalancingPolicy, boolean)}).
+     * @param localRack        the rack of the client, or {@code null} to treat all local replicas equally (see
+     *                         {@link #TokenAwarePolicy(LoadBalancingPolicy, boolean, String)}).
+     * @param orderLWTReplicas whether to route lightweight transactions to the replicas in ring order.
+     */
+    public TokenAwarePolicy(LoadBalancingPolicy childPolicy, boolean shuffleReplicas, String localRack, boolean orderLWTReplicas) {
         this.childPolicy = childPolicy;
         this.shuffleReplicas = shuffleReplicas;
+        this.localRack = localRack;
+        this.orderLWTReplicas = orderLWTReplicas;
     }
 
     /**
@@ -104,6 +168,37 @@ public class TokenAwarePolicy implements ChainableLoadBalancingPolicy {
         return childPolicy.distance(host);
     }
 
+    /**
+     * Returns, for each rack, the number of query plans that started with a local replica in that rack.
+     * <p/>
+     * This shows how often requests could be served by a replica in the same rack as the client. Query plans are
+     * only counted when a local rack is set, otherwise this is always empty.
+     *
+     * @return an immutable snapshot of the counts, by rack name. Hosts with an unknown rack are counted under
+     * the empty string.
+     */
+    public Map<String, Long> getReplicaHitsPerRack() {
+        ImmutableMap.Builder<String, Long> builder = ImmutableMap.builder();
+        for (Map.Entry<String, Counter> entry : replicaHitsPerRack.entrySet())
+            builder.put(entry.getKey(), entry.getValue().getCount());
+        return builder.build();
+    }
+
+    private void recordReplicaHit(Host host) {
+        String rack = host.getRack();
+        if (rack == null)
+            rack = "";
+        Counter count = replicaHitsPerRack.get(rack);
+        if (count == null) {
+            count = new Counter();
+            Counter old = replicaHitsPerRack.putIfAbsent(rack, count);
+            if (old != null)
+                count = old;
+        }
+        // Striped, so that concurrent query plans don't contend on a single value
+        count.inc();
+    }
+
     /**
      * Returns the hosts to use for a new query.
      * <p/>
@@ -118,51 +213,120 @@ public class TokenAwarePolicy implements ChainableLoadBalancingPolicy {
     @Override
     public Iterator<Host> newQueryPlan(final String loggedKeyspace, final Statement statement) {
 
-        ByteBuffer partitionKey = statement.getRoutingKey(protocolVersion, codecRegistry);
         String keyspace = statement.getKeyspace();
         if (keyspace == null)
             keyspace = loggedKeyspace;
 
-        if (partitionKey == null || keyspace == null)
+        // Use the token directly if the statement already knows it, to avoid hashing the routing key again
+        Token routingToken = statement.getRoutingToken();
+        ByteBuffer partitionKey = (routingToken == null) ? statement.getRoutingKey(protocolVersion, codecRegistry) : null;
+
+        if ((routingToken == null && partitionKey == null) || keyspace == null)
             return childPolicy.newQueryPlan(keyspace, statement);
 
-        final Set<Host> replicas = clusterMetadata.getReplicas(Metadata.quote(keyspace), partitionKey);
+        final Set<Host> replicas = (routingToken != null)
+                ? clusterMetadata.getReplicas(Metadata.quote(keyspace), routingToken)
+                : clusterMetadata.getReplicas(Metadata.quote(keyspace), partitionKey);
         if (replicas.isEmpty())
             return childPolicy.newQueryPlan(loggedKeyspace, statement);
 
-        final Iterator<Host> iter;
-        if (shuffleReplicas) {
-            List<Host> l = Lists.newArrayList(replicas);
-            Collections.shuffle(l);
-            iter = l.iterator();
-        } else {
-            iter = replicas.iterator();
+        Host[] replicaArray = replicaArrays.get(replicas);
+        if (replicaArray == null) {
+            replicaArray = replicas.toArray(new Host[replicas.size()]);
+            replicaArrays.put(replicas, replicaArray);
         }
+        if (orderLWTReplicas && statement.isLWT())
+            return new QueryPlan(loggedKeyspace, statement, replicaArray, 0, null);
+        int start = shuffleReplicas ? RANDOM.get().nextInt(replicaArray.length) : 0;
+        return new QueryPlan(loggedKeyspace, statement, replicaArray, start, localRack);
+    }
+
+    /**
+     * Returns the local replicas first (those of the local rack, if any, and then the others), starting at a given
+     * position of the replica array, and then the plan of the child policy minus those replicas.
+     */
+    private class QueryPlan extends AbstractIterator<Host> {
 
-        return new AbstractIterator<Host>() {
+        private final String loggedKeyspace;
+        private final Statement statement;
+        private final Host[] replicas;
+        private final int start;
+        private final String localRack;
+        private int visited;
+        // 0: local replicas of the local rack, 1: other local replicas (or all local replicas without a local rack)
+        private int pass;
+        private boolean returnedReplica;
+        // Bit i is set if replicas[i] was not LOCAL, so that the distance is only computed once per replica
+        // (only tracked for the first 64 replicas, the others are checked again).
+        private long notLocal;
+        private Iterator<Host> childIterator;
 
-            private Iterator<Host> childIterator;
+        QueryPlan(String loggedKeyspace, Statement statement, Host[] replicas, int start, String localRack) {
+            this.loggedKeyspace = loggedKeyspace;
+            this.statement = statement;
+            this.replicas = replicas;
+            this.start = start;
+            this.localRack = localRack;
+        }
 
-            @Override
-            protected Host computeNext() {
-                while (iter.hasNext()) {
-                    Host host = iter.next();
-                    if (host.isUp() && childPolicy.distance(host) == HostDistance.LOCAL)
-                        return host;
+        @Override
+        protected Host computeNext() {
+            if (pass == 0 && localRack == null)
+                pass = 1;
+            while (pass < 2) {
+                while (visited < replicas.length) {
+                    int i = start + visited++;
+                    if (i >= replicas.length)
+                        i -= replicas.length;
+                    Host host = replicas[i];
+                    // Compute the distance during the first pass, only use the mask during the second one
+                    boolean local;
+                    if (pass == 0 || localRack == null) {
+                        local = childPolicy.distance(host) == HostDistance.LOCAL;
+                        if (!local && i < 64)
+                            notLocal |= 1L << i;
+                    } else {
+                        local = isLocal(i);
+                    }
+                    if (!local || !host.isUp())
+                        continue;
+                    if (localRack != null && (pass == 0) != localRack.equals(host.getRack()))
+                        continue;
+                    if (!returnedReplica && localRack != null) {
+                        returnedReplica = true;
+                        recordReplicaHit(host);
+                    }
+                    return host;
                 }
+                pass++;
+                visited = 0;
+            }
 
-                if (childIterator == null)
-                    childIterator = childPolicy.newQueryPlan(loggedKeyspace, statement);
+            if (childIterator == null)
+                childIterator = childPolicy.newQueryPlan(loggedKeyspace, statement);
 
-                while (childIterator.hasNext()) {
-                    Host host = childIterator.next();
-                    // Skip it if it was already a local replica
-                    if (!replicas.contains(host) || childPolicy.distance(host) != HostDistance.LOCAL)
-                        return host;
-                }
-                return endOfData();
+            while (childIterator.hasNext()) {
+                Host host = childIterator.next();
+                // Skip it if it was already a local replica
+                if (!isLocalReplica(host))
+                    return host;
+            }
+            return endOfData();
+        }
+
+        private boolean isLocalReplica(Host host) {
+            for (int i = 0; i < replicas.length; i++) {
+                if (replicas[i].equals(host))
+                    return isLocal(i);
             }
-        };
+            return false;
+        }
+
+        private boolean isLocal(int i) {
+            return (i < 64)
+                    ? (notLocal & (1L << i)) == 0
+                    : childPolicy.distance(replicas[i]) == HostDistance.LOCAL;
+        }
     }
 
     @Override
@@ -0,0 +1,186 @@
+/*
+ *      Copyright (C) 2012-2015 DataStax Inc.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package com.datastax.driver.core.policies;
+
+import com.datastax.driver.core.*;
+import com.google.common.collect.AbstractIterator;
+
+import java.nio.ByteBuffer;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.Set;
+
+/**
+ * Base class for wrapper policies that try the less loaded of the first two hosts of the child policy's query plan
+ * first ("power of two choices").
+ * <p/>
+ * The first two hosts are only swapped if they are both replicas of the query (if the replicas can be determined, see
+ * {@link Metadata#getReplicas(String, ByteBuffer)}), or both {@code LOCAL} (otherwise), so that a non-replica or a
+ * remote host never gets promoted. The rest of the plan is the child plan, unchanged.
+ * <p/>
+ * Subclasses only define how the load of a host is measured, see {@link #load(Host)}.
+ */
+public abstract class TwoChoicesPolicy implements ChainableLoadBalancingPolicy {
+
+    private final LoadBalancingPolicy childPolicy;
+    private volatile Metadata clusterMetadata;
+    private volatile ProtocolVersion protocolVersion;
+    private volatile CodecRegistry codecRegistry;
+
+    /**
+     * Creates a new instance.
+     *
+     * @param childPolicy the load balancing policy to wrap.
+     */
+    protected TwoChoicesPolicy(LoadBalancingPolicy childPolicy) {
+        this.childPolicy = childPolicy;
+    }
+
+    /**
+     * Returns the current load of a host; the host with the lowest load is tried first.
+     * <p/>
+     * This is called twice for every query plan, so it should be cheap.
+     *
+     * @param host the host.
+     * @return the load of {@code host}, in any unit as long as it is consistent across hosts.
+     */
+    protected abstract double load(Host host);
+
+    @Override
+    public LoadBalancingPolicy getChildPolicy() {
+        return childPolicy;
+    }
+
+    @Override
+    public void init(Cluster cluster, Collection<Host> hosts) {
+        clusterMetadata = cluster.getMetadata();
+        protocolVersion = cluster.getConfiguration().getProtocolOptions().getProtocolVersion();
+        codecRegistry = cluster.getConfiguration().getCodecRegistry();
+        childPolicy.init(cluster, hosts);
+    }
+
+    /**
+     * Return the HostDistance for the provided host.
+     *
+     * @param host the host of which to return the distance of.
+     * @return the HostDistance to {@code host} as returned by the wrapped policy.
+     */
+    @Override
+    public HostDistance distance(Host host) {
+        return childPolicy.distance(host);
+    }
+
+    /**
+     * Returns the hosts to use for a new query.
+     * <p/>
+     * The returned plan is the child policy's, where the first two hosts are swapped if the second one is less loaded
+     * and is eligible (see the class javadoc).
+     *
+     * @param loggedKeyspace the currently logged keyspace.
+     * @param statement      the statement for which to build the plan.
+     * @return the new query plan.
+     */
+    @Override
+    public Iterator<Host> newQueryPlan(String loggedKeyspace, Statement statement) {
+        Iterator<Host> childPlan = childPolicy.newQueryPlan(loggedKeyspace, statement);
+        if (!childPlan.hasNext())
+            return childPlan;
+        Host first = childPlan.next();
+        if (!childPlan.hasNext())
+            return new QueryPlan(first, null, childPlan);
+        Host second = childPlan.next();
+
+        if (load(second) < load(first) && isEligible(loggedKeyspace, statement, first, second))
+            return new QueryPlan(second, first, childPlan);
+        return new QueryPlan(first, second, childPlan);
+    }
+
+    private boolean isEligible(String loggedKeyspace, Statement statement, Host first, Host second) {
+        Set<Host> replicas = getReplicas(loggedKeyspace, statement);
+        if (!replicas.isEmpty())
+            return replicas.contains(first) && replicas.contains(second);
+        return childPolicy.distance(first) == HostDistance.LOCAL && childPolicy.distance(second) == HostDistance.LOCAL;
+    }
+
+    private Set<Host> getReplicas(String loggedKeyspace, Statement statement) {
+        String keyspace = statement.getKeyspace();
+        if (keyspace == null)
+            keyspace = loggedKeyspace;
+        if (keyspace == null)
+            return Collections.emptySet();
+
+        Token routingToken = statement.getRoutingToken();
+        if (routingToken != null)
+            return clusterMetadata.getReplicas(Metadata.quote(keyspace), routingToken);
+        ByteBuffer partitionKey = statement.getRoutingKey(protocolVersion, codecRegistry);
+        return (partitionKey == null)
+                ? Collections.<Host>emptySet()
+                : clusterMetadata.getReplicas(Metadata.quote(keyspace), partitionKey);
+    }
+
+    private static class QueryPlan extends AbstractIterator<Host> {
+        private Host first;
+        private Host second;
+        private final Iterator<Host> rest;
+
+        QueryPlan(Host first, Host second, Iterator<Host> rest) {
+            this.first = first;
+            this.second = second;
+            this.rest = rest;
+        }
+
+        @Override
+        protected Host computeNext() {
+            Host host;
+            if (first != null) {
+                host = first;
+                first = null;
+            } else if (second != null) {
+                host = second;
+                second = null;
+            } else {
+                host = rest.hasNext() ? rest.next() : endOfData();
+            }
+            return host;
+        }
+    }
+
+    @Override
+    public void onUp(Host host) {
+        childPolicy.onUp(host);
+    }
+
+    @Override
+    public void onDown(Host host) {
+        childPolicy.onDown(host);
+    }
+
+    @Override
+    public void onAdd(Host host) {
+        childPolicy.onAdd(host);
+    }
+
+    @Override
+    public void onRemove(Host host) {
+        childPolicy.onRemove(host);
+    }
+
+    @Override
+    public void close() {
+        childPolicy.close();
+    }
+}
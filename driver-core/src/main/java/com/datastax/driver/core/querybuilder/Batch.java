@@ -180,6 +180,15 @@ public class Batch extends BuiltStatement {
         return isBatchIdempotent(statements);
     }
 
+    @Override
+    public boolean isLWT() {
+        for (RegularStatement statement : statements) {
+            if (statement.isLWT())
+                return true;
+        }
+        return false;
+    }
+
     /**
      * The options of a BATCH statement.
      */
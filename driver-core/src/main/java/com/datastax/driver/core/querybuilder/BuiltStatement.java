@@ -378,6 +378,11 @@ public abstract class BuiltStatement extends RegularStatement {
             return statement.getKeyspace();
         }
 
+        @Override
+        public boolean isLWT() {
+            return statement.isLWT();
+        }
+
         @Override
         boolean isCounterOp() {
             return statement.isCounterOp();
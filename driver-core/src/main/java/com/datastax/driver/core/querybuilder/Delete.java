@@ -65,6 +65,11 @@ public class Delete extends BuiltStatement {
         }
     }
 
+    @Override
+    public boolean isLWT() {
+        return ifExists || !conditions.conditions.isEmpty();
+    }
+
     @Override
     StringBuilder buildQueryString(List<Object> variables, CodecRegistry codecRegistry) {
         StringBuilder builder = new StringBuilder();
@@ -57,6 +57,11 @@ public class Insert extends BuiltStatement {
         this.usings = new Options(this);
     }
 
+    @Override
+    public boolean isLWT() {
+        return ifNotExists;
+    }
+
     @Override
     StringBuilder buildQueryString(List<Object> variables, CodecRegistry codecRegistry) {
         StringBuilder builder = new StringBuilder();
@@ -60,6 +60,11 @@ public class Update extends BuiltStatement {
         this.ifExists = false;
     }
 
+    @Override
+    public boolean isLWT() {
+        return ifExists || !conditions.conditions.isEmpty();
+    }
+
     @Override
     StringBuilder buildQueryString(List<Object> variables, CodecRegistry codecRegistry) {
         StringBuilder builder = new StringBuilder();
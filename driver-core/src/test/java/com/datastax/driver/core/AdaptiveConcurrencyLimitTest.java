@@ -0,0 +1,97 @@
+/*
+ *      Copyright (C) 2012-2015 DataStax Inc.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package com.datastax.driver.core;
+
+import com.datastax.driver.core.exceptions.OverloadedException;
+import com.datastax.driver.core.exceptions.TransportException;
+import org.testng.annotations.Test;
+
+import java.net.InetSocketAddress;
+import java.util.concurrent.TimeUnit;
+
+import static com.datastax.driver.core.HostDistance.LOCAL;
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class AdaptiveConcurrencyLimitTest {
+
+    private static final long FAST = TimeUnit.MILLISECONDS.toNanos(1);
+    private static final long SLOW = TimeUnit.MILLISECONDS.toNanos(200);
+    private static final InetSocketAddress ADDRESS = new InetSocketAddress("127.0.0.1", 9042);
+
+    @Test(groups = "unit")
+    public void should_use_static_maximum_when_disabled() {
+        PoolingOptions options = newOptions(0);
+        AdaptiveConcurrencyLimit limit = new AdaptiveConcurrencyLimit(options, LOCAL);
+
+        limit.update(SLOW, null, LOCAL, 0);
+
+        assertThat(limit.isEnabled()).isFalse();
+        assertThat(limit.current(LOCAL)).isEqualTo(200);
+    }
+
+    @Test(groups = "unit")
+    public void should_decrease_once_per_round_trip_and_increase_when_fast() {
+        PoolingOptions options = newOptions(100);
+        AdaptiveConcurrencyLimit limit = new AdaptiveConcurrencyLimit(options, LOCAL);
+        assertThat(limit.current(LOCAL)).isEqualTo(200);
+
+        limit.update(TimeUnit.MILLISECONDS.toNanos(150), null, LOCAL, 150);
+        assertThat(limit.current(LOCAL)).isEqualTo(180);
+
+        // A request that was already in flight at the time of the decrease is ignored
+        limit.update(SLOW, null, LOCAL, 150);
+        assertThat(limit.current(LOCAL)).isEqualTo(180);
+
+        // Fast responses increase the limit, as long as it is used
+        limit.update(FAST, null, LOCAL, 100);
+        assertThat(limit.current(LOCAL)).isEqualTo(181);
+        limit.update(FAST, null, LOCAL, 10);
+        assertThat(limit.current(LOCAL)).isEqualTo(181);
+    }
+
+    @Test(groups = "unit")
+    public void should_decrease_on_overloaded_error_but_ignore_connection_errors() {
+        PoolingOptions options = newOptions(100);
+        AdaptiveConcurrencyLimit limit = new AdaptiveConcurrencyLimit(options, LOCAL);
+
+        limit.update(FAST, new TransportException(ADDRESS, "test"), LOCAL, 150);
+        assertThat(limit.current(LOCAL)).isEqualTo(200);
+
+        limit.update(FAST, new OverloadedException(ADDRESS, "test"), LOCAL, 150);
+        assertThat(limit.current(LOCAL)).isEqualTo(180);
+    }
+
+    @Test(groups = "unit")
+    public void should_not_go_below_one() {
+        PoolingOptions options = newOptions(100)
+                .setMaxConnectionsPerHost(LOCAL, 1)
+                .setMaxRequestsPerConnection(LOCAL, 2);
+        AdaptiveConcurrencyLimit limit = new AdaptiveConcurrencyLimit(options, LOCAL);
+
+        for (int i = 0; i < 5; i++)
+            limit.update(0, new OverloadedException(ADDRESS, "test"), LOCAL, 2);
+        assertThat(limit.current(LOCAL)).isEqualTo(1);
+    }
+
+    private static PoolingOptions newOptions(int thresholdMillis) {
+        PoolingOptions options = new PoolingOptions()
+                .setMaxConnectionsPerHost(LOCAL, 2)
+                .setMaxRequestsPerConnection(LOCAL, 100)
+                .setAdaptiveConcurrencyLatencyThresholdMillis(thresholdMillis);
+        options.setProtocolVersion(ProtocolVersion.V3);
+        return options;
+    }
+}
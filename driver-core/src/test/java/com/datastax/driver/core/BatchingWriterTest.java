@@ -0,0 +1,308 @@
+/*
+ *      Copyright (C) 2012-2015 DataStax Inc.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package com.datastax.driver.core;
+
+import com.google.common.collect.ImmutableSet;
+import com.google.common.util.concurrent.ListenableFuture;
+import org.mockito.Answers;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.*;
+
+public class BatchingWriterTest {
+
+    @Mock(answer = Answers.RETURNS_DEEP_STUBS)
+    Session session;
+
+    ScheduledExecutorService scheduler;
+
+    final List<Statement> executed = new CopyOnWriteArrayList<Statement>();
+    final List<PendingFuture> futures = new CopyOnWriteArrayList<PendingFuture>();
+
+    @BeforeMethod(groups = "unit")
+    public void setup() {
+        MockitoAnnotations.initMocks(this);
+        scheduler = Executors.newSingleThreadScheduledExecutor();
+        executed.clear();
+        futures.clear();
+        when(session.executeAsync(any(Statement.class))).thenAnswer(new Answer<ResultSetFuture>() {
+            @Override
+            public ResultSetFuture answer(InvocationOnMock invocation) throws Throwable {
+                executed.add((Statement) invocation.getArguments()[0]);
+                PendingFuture future = new PendingFuture();
+                futures.add(future);
+                return future;
+            }
+        });
+    }
+
+    @AfterMethod(groups = "unit")
+    public void teardown() {
+        scheduler.shutdownNow();
+    }
+
+    @Test(groups = "unit")
+    public void should_group_statements_of_the_same_partition() {
+        BatchingWriter writer = newWriter(3, TimeUnit.HOURS.toNanos(1), 8);
+        Statement a1 = statement(1), a2 = statement(1), b1 = statement(2), a3 = statement(1);
+
+        writer.write(a1);
+        writer.write(a2);
+        writer.write(b1);
+        assertThat(executed).isEmpty();
+
+        writer.write(a3);
+        assertThat(executed).hasSize(1);
+        BatchStatement batch = (BatchStatement) executed.get(0);
+        assertThat(batch.getStatements()).containsExactly(a1, a2, a3);
+
+        writer.flush();
+        assertThat(executed).hasSize(2);
+        // A group of one is sent as is
+        assertThat(executed.get(1)).isSameAs(b1);
+    }
+
+    @Test(groups = "unit")
+    public void should_send_group_at_the_end_of_the_time_window() {
+        BatchingWriter writer = newWriter(10, TimeUnit.MILLISECONDS.toNanos(10), 8);
+        Statement a1 = statement(1), a2 = statement(1);
+
+        writer.write(a1);
+        writer.write(a2);
+
+        verify(session, timeout(1000)).executeAsync(any(Statement.class));
+        assertThat(((BatchStatement) executed.get(0)).getStatements()).containsExactly(a1, a2);
+    }
+
+    @Test(groups = "unit")
+    public void should_send_statements_without_routing_key_individually() {
+        BatchingWriter writer = newWriter(10, TimeUnit.HOURS.toNanos(1), 8);
+        Statement statement = new SimpleStatement("irrelevant");
+
+        writer.write(statement);
+
+        assertThat(executed).containsExactly(statement);
+    }
+
+    @Test(groups = "unit")
+    public void should_limit_concurrent_batches_and_complete_futures() {
+        BatchingWriter writer = newWriter(1, TimeUnit.HOURS.toNanos(1), 1);
+
+        ListenableFuture<Void> future1 = writer.write(statement(1));
+        ListenableFuture<Void> future2 = writer.write(statement(2));
+        assertThat(executed).hasSize(1);
+        assertThat(writer.getPendingStatements()).isEqualTo(2);
+
+        futures.get(0).complete();
+        assertThat(future1.isDone()).isTrue();
+        assertThat(future2.isDone()).isFalse();
+        assertThat(executed).hasSize(2);
+
+        futures.get(1).fail(new RuntimeException("mock error"));
+        assertThat(future2.isDone()).isTrue();
+        assertThat(writer.getPendingStatements()).isEqualTo(0);
+    }
+
+    @Test(groups = "unit")
+    public void should_group_statements_of_the_same_replica_set() {
+        Host host1 = mock(Host.class), host2 = mock(Host.class), host3 = mock(Host.class);
+        Metadata metadata = session.getCluster().getMetadata();
+        when(metadata.getReplicas(Metadata.quote("ks"), ByteBuffer.wrap(new byte[]{1})))
+                .thenReturn(ImmutableSet.of(host1, host2));
+        when(metadata.getReplicas(Metadata.quote("ks"), ByteBuffer.wrap(new byte[]{2})))
+                .thenReturn(ImmutableSet.of(host1, host2));
+        when(metadata.getReplicas(Metadata.quote("ks"), ByteBuffer.wrap(new byte[]{3})))
+                .thenReturn(ImmutableSet.of(host2, host3));
+        BatchingWriter writer = new BatchingWriter(session, BatchingWriter.Grouping.REPLICA_SET, 10,
+                TimeUnit.HOURS.toNanos(1), 8, 100, scheduler);
+        Statement a = statement(1).setKeyspace("ks"), b = statement(2).setKeyspace("ks"), c = statement(3).setKeyspace("ks");
+        // Replicas unknown: grouped by partition
+        Statement d1 = statement(4).setKeyspace("ks"), d2 = statement(4).setKeyspace("ks");
+
+        writer.write(a);
+        writer.write(c);
+        writer.write(b);
+        writer.write(d1);
+        writer.write(d2);
+        writer.flush();
+
+        assertThat(executed).hasSize(3);
+        List<List<Statement>> sent = new ArrayList<List<Statement>>();
+        for (Statement statement : executed)
+            sent.add(statement instanceof BatchStatement
+                    ? new ArrayList<Statement>(((BatchStatement) statement).getStatements())
+                    : Collections.singletonList(statement));
+        assertThat(sent).containsOnly(Arrays.asList(a, b), Collections.singletonList(c), Arrays.asList(d1, d2));
+    }
+
+    @Test(groups = "unit")
+    public void should_not_group_statements_with_different_settings() {
+        BatchingWriter writer = newWriter(10, TimeUnit.HOURS.toNanos(1), 8);
+        Statement a1 = statement(1), a2 = statement(1).setConsistencyLevel(ConsistencyLevel.ALL),
+                a3 = statement(1).setDefaultTimestamp(42), a4 = statement(1);
+
+        writer.write(a1);
+        writer.write(a2);
+        writer.write(a3);
+        writer.write(a4);
+        writer.flush();
+
+        assertThat(executed).hasSize(3);
+        for (Statement statement : executed) {
+            if (statement instanceof BatchStatement)
+                assertThat(((BatchStatement) statement).getStatements()).containsExactly(a1, a4);
+            else
+                assertThat(statement).isIn(a2, a3);
+        }
+    }
+
+    @Test(groups = "unit")
+    public void should_group_counter_updates_into_counter_batches() {
+        BatchingWriter writer = newWriter(10, TimeUnit.HOURS.toNanos(1), 8);
+        Statement r1 = statement(1), r2 = statement(1);
+        Statement c1 = statement(1, "UPDATE foo SET c = c + 1 WHERE k = 1");
+        Statement c2 = boundStatement(1, DataType.counter());
+        // A collection append, not a counter
+        Statement r3 = boundStatement(1, DataType.list(DataType.cint()));
+
+        writer.write(r1);
+        writer.write(c1);
+        writer.write(r2);
+        writer.write(c2);
+        writer.write(r3);
+        writer.flush();
+
+        assertThat(executed).hasSize(2);
+        for (Statement statement : executed) {
+            BatchStatement batch = (BatchStatement) statement;
+            if (batch.batchType == BatchStatement.Type.COUNTER)
+                assertThat(batch.getStatements()).containsExactly(c1, c2);
+            else
+                assertThat(batch.getStatements()).containsExactly(r1, r2, r3);
+        }
+    }
+
+    @Test(groups = "unit")
+    public void should_send_conditional_and_ambiguous_statements_individually() {
+        BatchingWriter writer = new BatchingWriter(session, BatchingWriter.Grouping.REPLICA_SET, 10,
+                TimeUnit.HOURS.toNanos(1), 8, 100, scheduler);
+        Statement lwt1 = statement(1, "UPDATE foo SET v = 1 WHERE k = 1 IF v = 0").setKeyspace("ks");
+        Statement lwt2 = statement(2, "INSERT INTO foo (k, v) VALUES (2, 1) IF NOT EXISTS").setKeyspace("ks");
+        // Could be a counter or a list
+        Statement ambiguous = statement(1, "UPDATE foo SET x = x + ? WHERE k = 1", 1L);
+
+        writer.write(lwt1);
+        writer.write(lwt2);
+        writer.write(ambiguous);
+
+        // Sent immediately, without waiting for a group to fill up
+        assertThat(executed).containsExactly(lwt1, lwt2, ambiguous);
+    }
+
+    @Test(groups = "unit", timeOut = 10000)
+    public void should_block_writes_when_max_pending_statements_is_reached() throws Exception {
+        final BatchingWriter writer = new BatchingWriter(session, BatchingWriter.Grouping.PARTITION, 1,
+                TimeUnit.HOURS.toNanos(1), 8, 2, scheduler);
+        writer.write(statement(1));
+        writer.write(statement(2));
+        assertThat(writer.getPendingStatements()).isEqualTo(2);
+
+        final CountDownLatch written = new CountDownLatch(1);
+        Thread producer = new Thread() {
+            @Override
+            public void run() {
+                writer.write(statement(3));
+                written.countDown();
+            }
+        };
+        producer.start();
+
+        assertThat(written.await(200, TimeUnit.MILLISECONDS)).isFalse();
+        assertThat(executed).hasSize(2);
+
+        futures.get(0).complete();
+        assertThat(written.await(5, TimeUnit.SECONDS)).isTrue();
+        producer.join();
+        assertThat(executed).hasSize(3);
+        assertThat(writer.getPendingStatements()).isEqualTo(2);
+    }
+
+    @Test(groups = "unit", expectedExceptions = IllegalStateException.class)
+    public void should_not_accept_writes_after_close() {
+        BatchingWriter writer = newWriter(10, TimeUnit.HOURS.toNanos(1), 8);
+        writer.close();
+        writer.write(statement(1));
+    }
+
+    private BatchingWriter newWriter(int maxBatchSize, long maxBatchDelayNanos, int maxConcurrentBatches) {
+        return new BatchingWriter(session, BatchingWriter.Grouping.PARTITION, maxBatchSize, maxBatchDelayNanos,
+                maxConcurrentBatches, 100, scheduler);
+    }
+
+    private static SimpleStatement statement(int key) {
+        return statement(key, "irrelevant");
+    }
+
+    private static SimpleStatement statement(int key, String query, Object... values) {
+        return new SimpleStatement(query, values).setRoutingKey(ByteBuffer.wrap(new byte[]{(byte) key}));
+    }
+
+    // An execution of "UPDATE foo SET x = x + ? WHERE k = ?", where x has the given type
+    private static BoundStatement boundStatement(int key, DataType type) {
+        ColumnDefinitions variables = new ColumnDefinitions(new ColumnDefinitions.Definition[]{
+                new ColumnDefinitions.Definition("ks", "foo", "x", type),
+                new ColumnDefinitions.Definition("ks", "foo", "k", DataType.cint())
+        }, CodecRegistry.DEFAULT_INSTANCE);
+        PreparedStatement prepared = mock(PreparedStatement.class);
+        when(prepared.getVariables()).thenReturn(variables);
+        when(prepared.getQueryString()).thenReturn("UPDATE foo SET x = x + ? WHERE k = ?");
+        BoundStatement statement = mock(BoundStatement.class);
+        when(statement.preparedStatement()).thenReturn(prepared);
+        when(statement.getRoutingKey(any(ProtocolVersion.class), any(CodecRegistry.class)))
+                .thenReturn(ByteBuffer.wrap(new byte[]{(byte) key}));
+        when(statement.getDefaultTimestamp()).thenReturn(Long.MIN_VALUE);
+        return statement;
+    }
+
+    static class PendingFuture extends ChainedResultSetFuture {
+        void complete() {
+            set(null);
+        }
+
+        void fail(Throwable t) {
+            setException(t);
+        }
+    }
+}
@@ -20,6 +20,8 @@ import com.google.common.collect.Lists;
 import org.testng.annotations.BeforeClass;
 import org.testng.annotations.Test;
 
+import java.nio.ByteBuffer;
+
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.fail;
 
@@ -29,7 +31,8 @@ public class BoundStatementTest extends CCMTestsSupport {
 
     @Override
     public void onTestContextInitialized() {
-        execute("CREATE TABLE foo (k int primary key, v1 text, v2 list<int>)");
+        execute("CREATE TABLE foo (k int primary key, v1 text, v2 list<int>)",
+                "CREATE TABLE composite (k1 int, k2 int, v int, PRIMARY KEY ((k1, k2)))");
     }
 
     @BeforeClass(groups = "short")
@@ -64,4 +67,33 @@ public class BoundStatementTest extends CCMTestsSupport {
             fail("Expected index error");
         } catch (IndexOutOfBoundsException e) { /* expected */ }
     }
+
+    @Test(groups = "short")
+    public void should_cache_routing_key_and_token_until_rebound() {
+        PreparedStatement composite = session().prepare("INSERT INTO composite (k1, k2, v) VALUES (?, ?, ?)");
+        BoundStatement statement = composite.bind(1, 2, 3);
+
+        ByteBuffer routingKey = statement.getRoutingKey(ProtocolVersion.NEWEST_SUPPORTED, CodecRegistry.DEFAULT_INSTANCE);
+        Token token = statement.getRoutingToken();
+        assertThat(token).isEqualTo(cluster().getMetadata().newToken(
+                TypeCodec.cint().serialize(1, ProtocolVersion.NEWEST_SUPPORTED),
+                TypeCodec.cint().serialize(2, ProtocolVersion.NEWEST_SUPPORTED)));
+        assertThat(statement.getRoutingKey(ProtocolVersion.NEWEST_SUPPORTED, CodecRegistry.DEFAULT_INSTANCE)).isSameAs(routingKey);
+        assertThat(statement.getRoutingToken()).isSameAs(token);
+
+        // Rebinding a regular column keeps the cached key and token
+        statement.setInt("v", 4);
+        assertThat(statement.getRoutingKey(ProtocolVersion.NEWEST_SUPPORTED, CodecRegistry.DEFAULT_INSTANCE)).isSameAs(routingKey);
+        assertThat(statement.getRoutingToken()).isSameAs(token);
+
+        // Rebinding a partition key component recomposes them, even with the same value
+        statement.setInt("k2", 2);
+        assertThat(statement.getRoutingKey(ProtocolVersion.NEWEST_SUPPORTED, CodecRegistry.DEFAULT_INSTANCE))
+                .isNotSameAs(routingKey)
+                .isEqualTo(routingKey);
+        assertThat(statement.getRoutingToken()).isNotSameAs(token).isEqualTo(token);
+
+        statement.setInt("k2", 3);
+        assertThat(statement.getRoutingToken()).isNotEqualTo(token);
+    }
 }
@@ -0,0 +1,189 @@
+/*
+ *      Copyright (C) 2012-2015 DataStax Inc.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package com.datastax.driver.core;
+
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.UniformReservoir;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.EventLoop;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.*;
+import static org.testng.Assert.fail;
+
+public class ConnectionFlusherTest {
+
+    private EventLoop eventLoop;
+    private Channel channel;
+    private ChannelFutureListener listener;
+    private Cluster.Manager manager;
+    private Histogram framesPerFlush;
+
+    @BeforeMethod(groups = "unit")
+    public void setup() {
+        eventLoop = mock(EventLoop.class);
+        channel = mock(Channel.class);
+        when(channel.eventLoop()).thenReturn(eventLoop);
+        when(channel.isActive()).thenReturn(true);
+        ChannelFuture future = mock(ChannelFuture.class);
+        when(channel.write(any())).thenReturn(future);
+        when(channel.writeAndFlush(any())).thenReturn(future);
+        listener = mock(ChannelFutureListener.class);
+
+        framesPerFlush = new Histogram(new UniformReservoir());
+        Metrics metrics = mock(Metrics.class);
+        when(metrics.getFramesPerFlush()).thenReturn(framesPerFlush);
+        manager = mock(Cluster.Manager.class);
+        manager.metrics = metrics;
+    }
+
+    @Test(groups = "unit")
+    public void should_write_and_flush_immediately_when_coalescing_is_disabled() {
+        Connection.Flusher flusher = newFlusher(new SocketOptions().setCoalescingMaxDelayMicros(0), new PoolingOptions());
+
+        flusher.write(new Connection.FlushItem(channel, "request", listener));
+
+        verify(channel).writeAndFlush("request");
+        verify(channel, never()).write(any());
+        verify(eventLoop, never()).execute(any(Runnable.class));
+        assertThat(flusher.queued).isEmpty();
+    }
+
+    @Test(groups = "unit")
+    public void should_write_and_flush_immediately_when_on_event_loop_with_affinity() {
+        when(eventLoop.inEventLoop()).thenReturn(true);
+        Connection.Flusher flusher = newFlusher(new SocketOptions(), new PoolingOptions().setEventLoopAffinity(true));
+
+        flusher.write(new Connection.FlushItem(channel, "request", listener));
+
+        verify(channel).writeAndFlush("request");
+        assertThat(flusher.queued).isEmpty();
+    }
+
+    @Test(groups = "unit")
+    public void should_coalesce_writes_into_a_single_flush() {
+        Connection.Flusher flusher = newFlusher(new SocketOptions(), new PoolingOptions());
+
+        for (int i = 0; i < 5; i++)
+            flusher.write(new Connection.FlushItem(channel, "request" + i, listener));
+        verify(eventLoop).execute(flusher);
+        verify(channel, never()).write(any());
+
+        flusher.run();
+
+        verify(channel, times(5)).write(any());
+        verify(channel).flush();
+        verify(channel, never()).writeAndFlush(any());
+        assertThat(framesPerFlush.getCount()).isEqualTo(1);
+        assertThat(framesPerFlush.getSnapshot().getMax()).isEqualTo(5);
+    }
+
+    @Test(groups = "unit")
+    public void should_flush_when_max_frames_per_flush_is_reached() {
+        Connection.Flusher flusher = newFlusher(new SocketOptions().setCoalescingMaxFramesPerFlush(2), new PoolingOptions());
+
+        for (int i = 0; i < 5; i++)
+            flusher.write(new Connection.FlushItem(channel, "request" + i, listener));
+        flusher.run();
+
+        // 2 + 2 + the remaining frame at the end of the run
+        verify(channel, times(5)).write(any());
+        verify(channel, times(3)).flush();
+        assertThat(framesPerFlush.getCount()).isEqualTo(3);
+        assertThat(framesPerFlush.getSnapshot().getMax()).isEqualTo(2);
+        assertThat(framesPerFlush.getSnapshot().getMin()).isEqualTo(1);
+    }
+
+    @Test(groups = "unit")
+    public void should_not_write_to_inactive_channels() {
+        when(channel.isActive()).thenReturn(false);
+        Connection.Flusher flusher = newFlusher(new SocketOptions(), new PoolingOptions());
+
+        flusher.write(new Connection.FlushItem(channel, "request", listener));
+        flusher.run();
+
+        verify(channel, never()).write(any());
+        verify(channel, never()).flush();
+        assertThat(framesPerFlush.getCount()).isEqualTo(0);
+    }
+
+    @Test(groups = "unit")
+    public void should_reschedule_with_fixed_delay_when_not_adaptive() {
+        Connection.Flusher flusher = newFlusher(new SocketOptions().setCoalescingMaxDelayMicros(20), new PoolingOptions());
+
+        runWithFrames(flusher, 10);
+        runWithFrames(flusher, 0);
+
+        verify(eventLoop, times(2)).schedule(flusher, TimeUnit.MICROSECONDS.toNanos(20), TimeUnit.NANOSECONDS);
+    }
+
+    @Test(groups = "unit")
+    public void should_adapt_delay_to_load_when_adaptive() {
+        Connection.Flusher flusher = newFlusher(new SocketOptions()
+                .setCoalescingMaxDelayMicros(4)
+                .setCoalescingAdaptive(true), new PoolingOptions());
+
+        // Busy runs double the delay, up to the maximum
+        runWithFrames(flusher, 10);
+        verify(eventLoop).schedule(flusher, 2000, TimeUnit.NANOSECONDS);
+        runWithFrames(flusher, 10);
+        verify(eventLoop).schedule(flusher, 4000, TimeUnit.NANOSECONDS);
+        runWithFrames(flusher, 10);
+        verify(eventLoop, times(2)).schedule(flusher, 4000, TimeUnit.NANOSECONDS);
+
+        // Quiet runs halve it
+        runWithFrames(flusher, 1);
+        verify(eventLoop, times(2)).schedule(flusher, 2000, TimeUnit.NANOSECONDS);
+    }
+
+    @Test(groups = "unit")
+    public void should_reject_negative_coalescing_options() {
+        SocketOptions options = new SocketOptions();
+        try {
+            options.setCoalescingMaxDelayMicros(-1);
+            fail("expected IllegalArgumentException");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+        try {
+            options.setCoalescingMaxFramesPerFlush(-1);
+            fail("expected IllegalArgumentException");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+
+    private void runWithFrames(Connection.Flusher flusher, int frames) {
+        for (int i = 0; i < frames; i++)
+            flusher.write(new Connection.FlushItem(channel, "request" + i, listener));
+        flusher.run();
+    }
+
+    private Connection.Flusher newFlusher(SocketOptions socketOptions, PoolingOptions poolingOptions) {
+        Configuration configuration = Configuration.builder()
+                .withSocketOptions(socketOptions)
+                .withPoolingOptions(poolingOptions)
+                .build();
+        return new Connection.Flusher(eventLoop, configuration, manager);
+    }
+}
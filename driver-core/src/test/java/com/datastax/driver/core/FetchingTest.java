@@ -16,8 +16,14 @@
 package com.datastax.driver.core;
 
 import com.datastax.driver.core.exceptions.UnsupportedFeatureException;
+import com.datastax.driver.core.utils.CassandraVersion;
+import com.google.common.util.concurrent.Uninterruptibles;
 import org.testng.annotations.Test;
 
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+
+import static com.datastax.driver.core.ConditionChecker.check;
 import static org.testng.Assert.*;
 
 /**
@@ -59,4 +65,91 @@ public class FetchingTest extends CCMTestsSupport {
             assertEquals(cluster().getConfiguration().getProtocolOptions().getProtocolVersion(), ProtocolVersion.V1);
         }
     }
+
+    @Test(groups = "short")
+    @CassandraVersion("2.0.0")
+    public void should_prefetch_next_page_when_threshold_reached() {
+        insertRows("prefetch_test", 20);
+        QueryOptions queryOptions = cluster().getConfiguration().getQueryOptions();
+        queryOptions.setPrefetchThresholdPercentage(50);
+        try {
+            ResultSet rs = selectRows("prefetch_test", 10);
+
+            for (int i = 0; i < 4; i++)
+                assertEquals(rs.one().getInt(0), i);
+            // 6 rows left out of 10, above the threshold
+            assertEquals(rs.getAvailableWithoutFetching(), 6);
+
+            assertEquals(rs.one().getInt(0), 4);
+            // The next page is requested in the background, without any call to fetchMoreResults()
+            waitForAvailableRows(rs, 15);
+
+            for (int i = 5; i < 20; i++)
+                assertEquals(rs.one().getInt(0), i);
+            assertTrue(rs.isExhausted());
+        } finally {
+            queryOptions.setPrefetchThresholdPercentage(QueryOptions.DEFAULT_PREFETCH_THRESHOLD_PERCENTAGE);
+        }
+    }
+
+    @Test(groups = "short")
+    @CassandraVersion("2.0.0")
+    public void should_not_prefetch_when_threshold_is_zero() {
+        insertRows("no_prefetch_test", 20);
+        ResultSet rs = selectRows("no_prefetch_test", 10);
+
+        for (int i = 0; i < 5; i++)
+            assertEquals(rs.one().getInt(0), i);
+
+        Uninterruptibles.sleepUninterruptibly(500, TimeUnit.MILLISECONDS);
+        assertEquals(rs.getAvailableWithoutFetching(), 5);
+        assertFalse(rs.isFullyFetched());
+    }
+
+    @Test(groups = "short")
+    @CassandraVersion("2.0.0")
+    public void should_prefetch_up_to_max_prefetched_pages() {
+        insertRows("multi_prefetch_test", 20);
+        QueryOptions queryOptions = cluster().getConfiguration().getQueryOptions();
+        queryOptions.setPrefetchThresholdPercentage(50);
+        queryOptions.setMaxPrefetchedPages(2);
+        try {
+            ResultSet rs = selectRows("multi_prefetch_test", 5);
+
+            for (int i = 0; i < 3; i++)
+                assertEquals(rs.one().getInt(0), i);
+            // 2 rows left out of 5: the next 2 pages are fetched, but not the last one
+            waitForAvailableRows(rs, 12);
+            Uninterruptibles.sleepUninterruptibly(500, TimeUnit.MILLISECONDS);
+            assertEquals(rs.getAvailableWithoutFetching(), 12);
+            assertFalse(rs.isFullyFetched());
+
+            for (int i = 3; i < 20; i++)
+                assertEquals(rs.one().getInt(0), i);
+            assertTrue(rs.isExhausted());
+        } finally {
+            queryOptions.setPrefetchThresholdPercentage(QueryOptions.DEFAULT_PREFETCH_THRESHOLD_PERCENTAGE);
+            queryOptions.setMaxPrefetchedPages(QueryOptions.DEFAULT_MAX_PREFETCHED_PAGES);
+        }
+    }
+
+    private void insertRows(String key, int count) {
+        for (int i = 0; i < count; i++)
+            session().execute(String.format("INSERT INTO test (k, v) VALUES ('%s', %d)", key, i));
+    }
+
+    private ResultSet selectRows(String key, int fetchSize) {
+        SimpleStatement st = new SimpleStatement(String.format("SELECT v FROM test WHERE k='%s'", key));
+        st.setFetchSize(fetchSize);
+        return session().execute(st);
+    }
+
+    private static void waitForAvailableRows(final ResultSet rs, final int expected) {
+        check().that(new Callable<Boolean>() {
+            @Override
+            public Boolean call() throws Exception {
+                return rs.getAvailableWithoutFetching() == expected;
+            }
+        }).every(10).before(5, TimeUnit.SECONDS).becomesTrue();
+    }
 }
@@ -0,0 +1,165 @@
+/*
+ *      Copyright (C) 2012-2015 DataStax Inc.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package com.datastax.driver.core;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.embedded.EmbeddedChannel;
+import org.testng.annotations.Test;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class FrameDecoderTest {
+
+    private static final ProtocolVersion VERSION = ProtocolVersion.V4;
+
+    @Test(groups = "unit")
+    public void should_decode_rows_incrementally_when_streaming() {
+        EmbeddedChannel channel = newChannel(0);
+        ByteBuf frames = Unpooled.buffer();
+        frames.writeBytes(rowsFrame(5, 3));
+        frames.writeBytes(voidFrame(6));
+
+        int rowsFrameLength = rowsFrame(5, 3).readableBytes();
+        // Feed the first frame in small chunks, it should only be emitted once complete
+        while (frames.readerIndex() + 7 < rowsFrameLength) {
+            channel.writeInbound(frames.readSlice(7).retain());
+            assertThat(channel.readInbound()).isNull();
+        }
+        channel.writeInbound(frames.readSlice(frames.readableBytes()).retain());
+
+        Object first = channel.readInbound();
+        assertThat(first).isInstanceOf(Responses.Result.Rows.class);
+        Responses.Result.Rows rows = (Responses.Result.Rows) first;
+        assertThat(rows.getStreamId()).isEqualTo(5);
+        assertThat(rows.metadata.columns.size()).isEqualTo(2);
+        assertThat(rows.data).hasSize(3);
+        for (int i = 0; i < 3; i++) {
+            List<ByteBuffer> row = rows.data.poll();
+            assertThat(TypeCodec.cint().deserialize(row.get(0), VERSION)).isEqualTo(i);
+            assertThat(TypeCodec.varchar().deserialize(row.get(1), VERSION)).isEqualTo("value" + i);
+        }
+
+        // The next frame is not a ROWS result, so it goes through the regular path
+        Object second = channel.readInbound();
+        assertThat(second).isInstanceOf(Frame.class);
+        assertThat(((Frame) second).header.streamId).isEqualTo(6);
+        ((Frame) second).body.release();
+        assertThat(channel.finish()).isFalse();
+    }
+
+    @Test(groups = "unit")
+    public void should_not_stream_frames_below_threshold() {
+        EmbeddedChannel channel = newChannel(1024 * 1024);
+        channel.writeInbound(rowsFrame(5, 3));
+
+        Object decoded = channel.readInbound();
+        assertThat(decoded).isInstanceOf(Frame.class);
+        ((Frame) decoded).body.release();
+    }
+
+    @Test(groups = "unit")
+    public void should_measure_row_bytes_on_all_decode_paths() {
+        // Each row is an int and a 6-character varchar, each prefixed by a 4-byte length
+        int expected = 3 * (4 + 4 + 4 + 6);
+
+        ByteBuf eager = rowsBody(3);
+        eager.readInt(); // kind
+        Responses.Result.Rows rows = Responses.Result.Rows.decode(eager, VERSION, new CodecRegistry(), false);
+        assertThat(rows.dataBytes).isEqualTo(expected);
+        assertThat(rows.data).hasSize(3);
+
+        ByteBuf lazy = rowsBody(3);
+        lazy.readInt(); // kind
+        rows = Responses.Result.Rows.decode(lazy, VERSION, new CodecRegistry(), true);
+        assertThat(rows.dataBytes).isEqualTo(expected);
+        assertThat(rows.data).hasSize(3);
+
+        EmbeddedChannel channel = newChannel(0);
+        ByteBuf frame = rowsFrame(5, 3);
+        // Split the frame so that rows are decoded across several reads
+        while (frame.readableBytes() > 5)
+            channel.writeInbound(frame.readSlice(5).retain());
+        channel.writeInbound(frame.readSlice(frame.readableBytes()).retain());
+        rows = (Responses.Result.Rows) channel.readInbound();
+        assertThat(rows.dataBytes).isEqualTo(expected);
+        assertThat(rows.data).hasSize(3);
+        assertThat(channel.finish()).isFalse();
+    }
+
+    @Test(groups = "unit")
+    public void should_measure_no_row_bytes_for_empty_pages() {
+        ByteBuf body = rowsBody(0);
+        body.readInt(); // kind
+        Responses.Result.Rows rows = Responses.Result.Rows.decode(body, VERSION, new CodecRegistry(), false);
+        assertThat(rows.dataBytes).isEqualTo(0);
+
+        EmbeddedChannel channel = newChannel(0);
+        channel.writeInbound(rowsFrame(5, 0));
+        rows = (Responses.Result.Rows) channel.readInbound();
+        assertThat(rows.dataBytes).isEqualTo(0);
+        assertThat(rows.data).isEmpty();
+    }
+
+    private static EmbeddedChannel newChannel(int streamingThreshold) {
+        EmbeddedChannel channel = new EmbeddedChannel(new Frame.Decoder(streamingThreshold));
+        channel.attr(Message.CODEC_REGISTRY_ATTRIBUTE_KEY).set(new CodecRegistry());
+        return channel;
+    }
+
+    private static ByteBuf rowsFrame(int streamId, int rowCount) {
+        return frame(streamId, rowsBody(rowCount));
+    }
+
+    private static ByteBuf rowsBody(int rowCount) {
+        ByteBuf body = Unpooled.buffer();
+        body.writeInt(2); // ROWS
+        body.writeInt(1); // GLOBAL_TABLES_SPEC
+        body.writeInt(2); // column count
+        CBUtil.writeString("ks", body);
+        CBUtil.writeString("t", body);
+        CBUtil.writeString("k", body);
+        body.writeShort(0x0009); // int
+        CBUtil.writeString("v", body);
+        body.writeShort(0x000D); // varchar
+        body.writeInt(rowCount);
+        for (int i = 0; i < rowCount; i++) {
+            CBUtil.writeValue(TypeCodec.cint().serialize(i, VERSION), body);
+            CBUtil.writeValue(TypeCodec.varchar().serialize("value" + i, VERSION), body);
+        }
+        return body;
+    }
+
+    private static ByteBuf voidFrame(int streamId) {
+        ByteBuf body = Unpooled.buffer();
+        body.writeInt(1); // VOID
+        return frame(streamId, body);
+    }
+
+    private static ByteBuf frame(int streamId, ByteBuf body) {
+        ByteBuf frame = Unpooled.buffer();
+        frame.writeByte(0x80 | VERSION.toInt());
+        frame.writeByte(0);
+        frame.writeShort(streamId);
+        frame.writeByte(Message.Response.Type.RESULT.opcode);
+        frame.writeInt(body.readableBytes());
+        frame.writeBytes(body);
+        return frame;
+    }
+}
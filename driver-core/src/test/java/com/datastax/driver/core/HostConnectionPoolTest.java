@@ -22,6 +22,7 @@ import com.datastax.driver.core.utils.MoreFutures;
 import com.google.common.base.Predicate;
 import com.google.common.base.Throwables;
 import com.google.common.util.concurrent.*;
+import io.netty.channel.EventLoop;
 import org.scassandra.cql.PrimitiveType;
 import org.scassandra.http.client.PrimingRequest;
 import org.testng.annotations.BeforeClass;
@@ -125,6 +126,128 @@ public class HostConnectionPoolTest extends ScassandraTestBase.PerClassCluster {
         }
     }
 
+    /**
+     * Ensures that concurrent borrowers never exceed the adaptive concurrency limit of a pool: exactly as many requests
+     * as the limit get a connection, the others are rejected.
+     *
+     * @test_category connection:connection_pool
+     */
+    @Test(groups = "short")
+    public void should_not_exceed_adaptive_concurrency_limit_with_concurrent_borrowers() throws Exception {
+        Cluster cluster = createClusterBuilder().build();
+        final List<MockRequest> allRequests = new CopyOnWriteArrayList<MockRequest>();
+        List<MockRequest> borrowedRequests = newArrayList();
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            cluster.getConfiguration().getPoolingOptions().setAdaptiveConcurrencyLatencyThresholdMillis(500);
+            final HostConnectionPool pool = createPool(cluster, 2, 2);
+            // Lower the limit well below the capacity of the connections
+            while (pool.concurrencyLimit.current(HostDistance.LOCAL) > 50)
+                pool.concurrencyLimit.update(0, new OverloadedException(null, "overloaded"), HostDistance.LOCAL, 0);
+            int limit = pool.concurrencyLimit.current(HostDistance.LOCAL);
+
+            final CountDownLatch start = new CountDownLatch(1);
+            List<Future<?>> borrowers = newArrayList();
+            for (int i = 0; i < 8; i++) {
+                borrowers.add(executor.submit(new Callable<Void>() {
+                    @Override
+                    public Void call() throws Exception {
+                        start.await();
+                        for (int j = 0; j < 20; j++)
+                            allRequests.add(MockRequest.send(pool));
+                        return null;
+                    }
+                }));
+            }
+            start.countDown();
+            for (Future<?> borrower : borrowers)
+                borrower.get(5, SECONDS);
+
+            for (MockRequest request : allRequests) {
+                try {
+                    request.getConnection();
+                    borrowedRequests.add(request);
+                } catch (BusyPoolException e) {
+                    // expected for requests over the limit
+                }
+            }
+            assertThat(borrowedRequests).hasSize(limit);
+            assertThat(pool.totalInFlight.get()).isEqualTo(limit);
+        } finally {
+            executor.shutdownNow();
+            MockRequest.completeAll(borrowedRequests);
+            cluster.close();
+        }
+    }
+
+    /**
+     * Ensures that a pool using {@link PoolingOptions.ConnectionSelection#POWER_OF_TWO_CHOICES} spreads requests over
+     * all its connections, and fills them before enqueuing.
+     *
+     * @test_category connection:connection_pool
+     */
+    @Test(groups = "short")
+    public void should_fill_all_connections_when_using_power_of_two_choices() {
+        Cluster cluster = createClusterBuilder().build();
+        List<MockRequest> allRequests = newArrayList();
+        try {
+            cluster.getConfiguration().getPoolingOptions()
+                    .setConnectionSelection(PoolingOptions.ConnectionSelection.POWER_OF_TWO_CHOICES);
+            HostConnectionPool pool = createPool(cluster, 3, 3);
+
+            assertThat(pool.connections.size()).isEqualTo(3);
+            List<Connection> coreConnections = newArrayList(pool.connections);
+            List<MockRequest> requests = MockRequest.sendMany(3 * 128, pool);
+            assertBorrowedConnections(requests, coreConnections);
+            allRequests.addAll(requests);
+            for (Connection connection : coreConnections)
+                assertThat(connection.inFlight.get()).isEqualTo(128);
+
+            // the next request should be enqueued
+            MockRequest queuedRequest = MockRequest.send(pool, 1);
+            allRequests.add(queuedRequest);
+            assertThat(queuedRequest.connectionFuture.isDone()).isFalse();
+        } finally {
+            MockRequest.completeAll(allRequests);
+            cluster.close();
+        }
+    }
+
+    /**
+     * Ensures that when event loop affinity is enabled, a request issued from the event loop of a connection borrows
+     * a connection bound to that event loop.
+     *
+     * @test_category connection:connection_pool
+     */
+    @Test(groups = "short")
+    public void should_prefer_connection_on_current_event_loop_when_affinity_enabled() throws Exception {
+        Cluster cluster = createClusterBuilder().build();
+        final List<MockRequest> allRequests = new CopyOnWriteArrayList<MockRequest>();
+        try {
+            cluster.getConfiguration().getPoolingOptions().setEventLoopAffinity(true);
+            final HostConnectionPool pool = createPool(cluster, 3, 3);
+
+            // Without affinity, the requests below would be spread over all connections
+            allRequests.addAll(MockRequest.sendMany(10, pool));
+            final Connection connection = pool.connections.get(0);
+            final EventLoop eventLoop = connection.channel.eventLoop();
+
+            List<MockRequest> requests = eventLoop.submit(new Callable<List<MockRequest>>() {
+                @Override
+                public List<MockRequest> call() throws Exception {
+                    return MockRequest.sendMany(10, pool);
+                }
+            }).get(5, SECONDS);
+            allRequests.addAll(requests);
+
+            for (MockRequest request : requests)
+                assertThat(request.getConnection().channel.eventLoop()).isSameAs(eventLoop);
+        } finally {
+            MockRequest.completeAll(allRequests);
+            cluster.close();
+        }
+    }
+
     /**
      * Ensures that if a fixed-sized pool has filled its core connections and reached a number of requests to cause
      * it to be enqueued, that if the request is not serviced within 100ms, a BusyPoolException is raised with a timeout.
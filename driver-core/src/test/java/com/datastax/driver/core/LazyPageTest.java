@@ -0,0 +1,76 @@
+/*
+ *      Copyright (C) 2012-2015 DataStax Inc.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package com.datastax.driver.core;
+
+import com.datastax.driver.core.Responses.Result.Rows.LazyPage;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import org.testng.annotations.Test;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class LazyPageTest {
+
+    @Test(groups = "unit")
+    public void should_decode_cells_lazily_from_page_bytes() {
+        ByteBuf body = Unpooled.buffer();
+        // 2 rows x 2 columns: (1, "a"), (2, null)
+        CBUtil.writeValue(TypeCodec.cint().serialize(1, ProtocolVersion.NEWEST_SUPPORTED), body);
+        CBUtil.writeValue(TypeCodec.varchar().serialize("a", ProtocolVersion.NEWEST_SUPPORTED), body);
+        CBUtil.writeValue(TypeCodec.cint().serialize(2, ProtocolVersion.NEWEST_SUPPORTED), body);
+        CBUtil.writeValue((ByteBuffer) null, body);
+        // trailing bytes that don't belong to the page
+        body.writeInt(42);
+
+        LazyPage page = LazyPage.decode(body, 2, 2);
+        // the frame can be released right away
+        body.release();
+
+        assertThat(page.size()).isEqualTo(2);
+
+        List<ByteBuffer> row1 = page.poll();
+        assertThat(row1).hasSize(2);
+        assertThat(TypeCodec.cint().deserialize(row1.get(0), ProtocolVersion.NEWEST_SUPPORTED)).isEqualTo(1);
+        assertThat(TypeCodec.varchar().deserialize(row1.get(1), ProtocolVersion.NEWEST_SUPPORTED)).isEqualTo("a");
+
+        assertThat(page.size()).isEqualTo(1);
+        assertThat(page.peek().get(0)).isEqualTo(page.peek().get(0));
+
+        List<ByteBuffer> row2 = page.poll();
+        assertThat(TypeCodec.cint().deserialize(row2.get(0), ProtocolVersion.NEWEST_SUPPORTED)).isEqualTo(2);
+        assertThat(row2.get(1)).isNull();
+
+        assertThat(page.isEmpty()).isTrue();
+        assertThat(page.poll()).isNull();
+
+        // rows remain readable after the page is consumed
+        assertThat(TypeCodec.varchar().deserialize(row1.get(1), ProtocolVersion.NEWEST_SUPPORTED)).isEqualTo("a");
+    }
+
+    @Test(groups = "unit")
+    public void should_leave_reader_index_after_last_cell() {
+        ByteBuf body = Unpooled.buffer();
+        CBUtil.writeValue(TypeCodec.bigint().serialize(1L, ProtocolVersion.NEWEST_SUPPORTED), body);
+        body.writeInt(42);
+
+        LazyPage.decode(body, 1, 1);
+
+        assertThat(body.readInt()).isEqualTo(42);
+    }
+}
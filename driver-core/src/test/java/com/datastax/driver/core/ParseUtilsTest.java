@@ -105,4 +105,35 @@ public class ParseUtilsTest {
         assertThat(ParseUtils.isDoubleQuoted("\"\"\"foo\"\"\"")).isTrue();
     }
 
+    @Test(groups = "unit")
+    public void should_detect_conditional_updates() {
+        assertThat(ParseUtils.isConditionalUpdate("INSERT INTO foo (k, v) VALUES (1, 2) IF NOT EXISTS")).isTrue();
+        assertThat(ParseUtils.isConditionalUpdate("update foo set v = 1 where k = 1 if v = 2")).isTrue();
+        assertThat(ParseUtils.isConditionalUpdate("DELETE FROM foo WHERE k = ? IF EXISTS")).isTrue();
+        assertThat(ParseUtils.isConditionalUpdate("BEGIN BATCH UPDATE foo SET v = 1 WHERE k = 1 IF v = 2; APPLY BATCH")).isTrue();
+
+        assertThat(ParseUtils.isConditionalUpdate("INSERT INTO foo (k, v) VALUES (1, 2)")).isFalse();
+        assertThat(ParseUtils.isConditionalUpdate("SELECT * FROM foo WHERE k = 1")).isFalse();
+        assertThat(ParseUtils.isConditionalUpdate("CREATE TABLE IF NOT EXISTS foo (k int PRIMARY KEY)")).isFalse();
+        // IF in literals, quoted identifiers and comments
+        assertThat(ParseUtils.isConditionalUpdate("INSERT INTO foo (k, v) VALUES (1, 'IF') -- IF NOT EXISTS")).isFalse();
+        assertThat(ParseUtils.isConditionalUpdate("UPDATE foo SET \"if\" = $$ if $$ WHERE k = 1 /* if */")).isFalse();
+        assertThat(ParseUtils.isConditionalUpdate("UPDATE foo SET v = 'it''s' WHERE k = 1 IF v = 'a'")).isTrue();
+        assertThat(ParseUtils.isConditionalUpdate("UPDATE foo SET gift = 1, if_x = 2 WHERE k = 1")).isFalse();
+    }
+
+    @Test(groups = "unit")
+    public void should_find_self_increments() {
+        assertThat(ParseUtils.findSelfIncrement("UPDATE foo SET c = c + 1 WHERE k = 1")).isEqualTo(ParseUtils.SelfIncrement.INTEGER);
+        assertThat(ParseUtils.findSelfIncrement("update foo set v = 1, C=c-2 where k = 1")).isEqualTo(ParseUtils.SelfIncrement.INTEGER);
+        assertThat(ParseUtils.findSelfIncrement("UPDATE foo SET \"C\" = \"C\" + - 1 WHERE k = 1")).isEqualTo(ParseUtils.SelfIncrement.INTEGER);
+        assertThat(ParseUtils.findSelfIncrement("UPDATE foo SET c = c + ? WHERE k = ?")).isEqualTo(ParseUtils.SelfIncrement.BIND_MARKER);
+        assertThat(ParseUtils.findSelfIncrement("UPDATE foo SET c = c - :delta WHERE k = :k")).isEqualTo(ParseUtils.SelfIncrement.BIND_MARKER);
+
+        assertThat(ParseUtils.findSelfIncrement("UPDATE foo SET l = l + [1] WHERE k = 1")).isEqualTo(ParseUtils.SelfIncrement.NONE);
+        assertThat(ParseUtils.findSelfIncrement("UPDATE foo SET s = s - {'a'} WHERE k = 1")).isEqualTo(ParseUtils.SelfIncrement.NONE);
+        assertThat(ParseUtils.findSelfIncrement("UPDATE foo SET c = d + 1 WHERE k = 1")).isEqualTo(ParseUtils.SelfIncrement.NONE);
+        assertThat(ParseUtils.findSelfIncrement("UPDATE foo SET \"C\" = c + 1 WHERE k = 1")).isEqualTo(ParseUtils.SelfIncrement.NONE);
+        assertThat(ParseUtils.findSelfIncrement("INSERT INTO foo (k, v) VALUES (1, 'c = c + 1') -- c = c + 1")).isEqualTo(ParseUtils.SelfIncrement.NONE);
+    }
 }
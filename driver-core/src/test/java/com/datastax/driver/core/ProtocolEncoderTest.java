@@ -0,0 +1,70 @@
+/*
+ *      Copyright (C) 2012-2015 DataStax Inc.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package com.datastax.driver.core;
+
+import com.google.common.collect.ImmutableMap;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.embedded.EmbeddedChannel;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import java.nio.ByteBuffer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class ProtocolEncoderTest {
+
+    @DataProvider(name = "versions")
+    public static Object[][] versions() {
+        return new Object[][]{
+                {ProtocolVersion.V2},
+                {ProtocolVersion.V3},
+                {ProtocolVersion.V4}
+        };
+    }
+
+    @Test(groups = "unit", dataProvider = "versions")
+    public void should_write_same_bytes_when_framing_in_single_pass(ProtocolVersion version) {
+        Message.Request request = new Requests.Query("SELECT * FROM foo", Requests.QueryProtocolOptions.DEFAULT, true);
+        if (version.compareTo(ProtocolVersion.V4) >= 0)
+            request.setCustomPayload(ImmutableMap.of("key", ByteBuffer.wrap(new byte[]{1, 2, 3})));
+        request.setStreamId(42);
+
+        ByteBuf twoPasses = encode(new EmbeddedChannel(new Frame.Encoder(), new Message.ProtocolEncoder(version)), request);
+        ByteBuf singlePass = encode(new EmbeddedChannel(new Frame.Encoder(), new Message.ProtocolEncoder(version, true)), request);
+
+        assertThat(toBytes(singlePass)).isEqualTo(toBytes(twoPasses));
+    }
+
+    private static ByteBuf encode(EmbeddedChannel channel, Message.Request request) {
+        channel.writeOutbound(request);
+        ByteBuf result = Unpooled.buffer();
+        ByteBuf out;
+        while ((out = (ByteBuf) channel.readOutbound()) != null) {
+            result.writeBytes(out);
+            out.release();
+        }
+        channel.finish();
+        return result;
+    }
+
+    private static byte[] toBytes(ByteBuf buf) {
+        byte[] bytes = new byte[buf.readableBytes()];
+        buf.readBytes(bytes);
+        return bytes;
+    }
+}
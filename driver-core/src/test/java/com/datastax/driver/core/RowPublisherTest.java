@@ -0,0 +1,230 @@
+/*
+ *      Copyright (C) 2012-2015 DataStax Inc.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package com.datastax.driver.core;
+
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Queue;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.*;
+
+public class RowPublisherTest {
+
+    Session session;
+    ResultSet rs;
+    PendingFuture queryFuture;
+    Statement statement = new SimpleStatement("irrelevant");
+
+    // The state of the fake result set: rows of the fetched pages, and pages left on the server
+    Queue<Row> available;
+    int pagesLeft;
+    int rowsPerPage;
+    SettableFuture<ResultSet> fetchInProgress;
+    int fetchCount;
+
+    RecordingSubscriber subscriber;
+
+    @BeforeMethod(groups = "unit")
+    public void setup() {
+        available = new LinkedList<Row>();
+        fetchInProgress = null;
+        fetchCount = 0;
+        queryFuture = new PendingFuture();
+        subscriber = new RecordingSubscriber();
+
+        session = mock(Session.class);
+        when(session.executeAsync(statement)).thenReturn(queryFuture);
+
+        rs = mock(ResultSet.class);
+        when(rs.getAvailableWithoutFetching()).thenAnswer(new Answer<Integer>() {
+            @Override
+            public Integer answer(InvocationOnMock invocation) throws Throwable {
+                return available.size();
+            }
+        });
+        when(rs.one()).thenAnswer(new Answer<Row>() {
+            @Override
+            public Row answer(InvocationOnMock invocation) throws Throwable {
+                return available.poll();
+            }
+        });
+        when(rs.isFullyFetched()).thenAnswer(new Answer<Boolean>() {
+            @Override
+            public Boolean answer(InvocationOnMock invocation) throws Throwable {
+                return pagesLeft == 0 && fetchInProgress == null;
+            }
+        });
+        when(rs.fetchMoreResults()).thenAnswer(new Answer<ListenableFuture<ResultSet>>() {
+            @Override
+            public ListenableFuture<ResultSet> answer(InvocationOnMock invocation) throws Throwable {
+                assertThat(fetchInProgress).isNull();
+                fetchCount += 1;
+                fetchInProgress = SettableFuture.create();
+                return fetchInProgress;
+            }
+        });
+    }
+
+    @Test(groups = "unit")
+    public void should_fetch_pages_as_rows_are_requested() {
+        newResult(3, 2);
+        new RowPublisher(session, statement, 1).subscribe(subscriber);
+        verify(session, never()).executeAsync(any(Statement.class));
+
+        subscriber.subscription.request(1);
+        queryFuture.complete(rs);
+        assertThat(subscriber.rows).hasSize(1);
+        // The second page is fetched ahead of the first one
+        assertThat(fetchCount).isEqualTo(1);
+
+        completeFetch();
+        assertThat(fetchCount).isEqualTo(1);
+
+        subscriber.subscription.request(2);
+        assertThat(subscriber.rows).hasSize(3);
+        // Only the second page is left, so the third one is prefetched
+        assertThat(fetchCount).isEqualTo(2);
+        completeFetch();
+
+        subscriber.subscription.request(10);
+        assertThat(subscriber.rows).hasSize(6);
+        assertThat(subscriber.completed).isTrue();
+        assertThat(subscriber.error).isNull();
+    }
+
+    @Test(groups = "unit")
+    public void should_not_prefetch_if_disabled() {
+        newResult(2, 2);
+        new RowPublisher(session, statement, 0).subscribe(subscriber);
+
+        subscriber.subscription.request(2);
+        queryFuture.complete(rs);
+        assertThat(subscriber.rows).hasSize(2);
+        assertThat(fetchCount).isEqualTo(0);
+
+        subscriber.subscription.request(1);
+        assertThat(fetchCount).isEqualTo(1);
+        completeFetch();
+        assertThat(subscriber.rows).hasSize(3);
+        assertThat(subscriber.completed).isFalse();
+
+        subscriber.subscription.request(1);
+        assertThat(subscriber.rows).hasSize(4);
+        assertThat(subscriber.completed).isTrue();
+    }
+
+    @Test(groups = "unit")
+    public void should_stop_emitting_when_cancelled() {
+        newResult(2, 2);
+        new RowPublisher(session, statement).subscribe(subscriber);
+
+        subscriber.subscription.request(1);
+        queryFuture.complete(rs);
+        subscriber.subscription.cancel();
+        completeFetch();
+        subscriber.subscription.request(10);
+
+        assertThat(subscriber.rows).hasSize(1);
+        assertThat(subscriber.completed).isFalse();
+    }
+
+    @Test(groups = "unit")
+    public void should_signal_query_errors() {
+        new RowPublisher(session, statement).subscribe(subscriber);
+        subscriber.subscription.request(1);
+
+        RuntimeException error = new RuntimeException("mock error");
+        queryFuture.fail(error);
+
+        assertThat(subscriber.error).isSameAs(error);
+        assertThat(subscriber.rows).isEmpty();
+    }
+
+    @Test(groups = "unit")
+    public void should_signal_invalid_requests() {
+        new RowPublisher(session, statement).subscribe(subscriber);
+        subscriber.subscription.request(0);
+
+        assertThat(subscriber.error).isInstanceOf(IllegalArgumentException.class);
+        verify(session, never()).executeAsync(any(Statement.class));
+    }
+
+    private void newResult(int pages, int rowsPerPage) {
+        this.rowsPerPage = rowsPerPage;
+        this.pagesLeft = pages - 1;
+        addPage();
+    }
+
+    private void addPage() {
+        for (int i = 0; i < rowsPerPage; i++)
+            available.add(mock(Row.class));
+    }
+
+    private void completeFetch() {
+        SettableFuture<ResultSet> future = fetchInProgress;
+        pagesLeft -= 1;
+        addPage();
+        fetchInProgress = null;
+        future.set(rs);
+    }
+
+    static class PendingFuture extends ChainedResultSetFuture {
+        void complete(ResultSet rs) {
+            set(rs);
+        }
+
+        void fail(Throwable t) {
+            setException(t);
+        }
+    }
+
+    static class RecordingSubscriber implements RowPublisher.Subscriber<Row> {
+        RowPublisher.Subscription subscription;
+        final List<Row> rows = new ArrayList<Row>();
+        Throwable error;
+        boolean completed;
+
+        @Override
+        public void onSubscribe(RowPublisher.Subscription subscription) {
+            this.subscription = subscription;
+        }
+
+        @Override
+        public void onNext(Row row) {
+            rows.add(row);
+        }
+
+        @Override
+        public void onError(Throwable error) {
+            this.error = error;
+        }
+
+        @Override
+        public void onComplete() {
+            completed = true;
+        }
+    }
+}
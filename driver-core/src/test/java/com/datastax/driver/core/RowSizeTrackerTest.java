@@ -0,0 +1,125 @@
+/*
+ *      Copyright (C) 2012-2015 DataStax Inc.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package com.datastax.driver.core;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import org.testng.annotations.Test;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class RowSizeTrackerTest {
+
+    @Test(groups = "unit")
+    public void should_use_default_fetch_size_until_a_page_is_measured() {
+        RowSizeTracker tracker = new RowSizeTracker();
+        assertThat(tracker.fetchSize(1024 * 1024, 5000)).isEqualTo(5000);
+
+        // Empty pages tell nothing about the size of rows
+        tracker.update(0, 0);
+        assertThat(tracker.fetchSize(1024 * 1024, 5000)).isEqualTo(5000);
+    }
+
+    @Test(groups = "unit")
+    public void should_compute_fetch_size_from_average_row_size() {
+        RowSizeTracker tracker = new RowSizeTracker();
+
+        tracker.update(100, 10000);
+        assertThat(tracker.fetchSize(1000000, 5000)).isEqualTo(10000);
+
+        // Moves a quarter of the way towards the size of the latest page: 100 -> 200
+        tracker.update(10, 5000);
+        assertThat(tracker.fetchSize(10000, 5000)).isEqualTo(50);
+    }
+
+    @Test(groups = "unit")
+    public void should_fetch_at_least_one_row() {
+        RowSizeTracker tracker = new RowSizeTracker();
+        tracker.update(1, 10 * 1024 * 1024);
+
+        assertThat(tracker.fetchSize(1024, 5000)).isEqualTo(1);
+    }
+
+    @Test(groups = "unit")
+    public void should_send_adaptive_fetch_size_unless_statement_overrides_it() {
+        Cluster cluster = Cluster.builder()
+                .addContactPoint("127.0.0.1")
+                .withQueryOptions(new QueryOptions().setFetchSize(5000).setTargetPageSizeInBytes(1000))
+                .build();
+        try {
+            // The cluster is never initialized, so pass the protocol version explicitly
+            SessionManager session = new SessionManager(cluster);
+            DefaultPreparedStatement prepared = prepare(cluster);
+            ByteBuffer pagingState = ByteBuffer.wrap(new byte[]{1, 2, 3});
+
+            // Nothing measured yet
+            assertThat(fetchSize(session.makeRequestMessage(prepared.bind(), null, ProtocolVersion.V4))).isEqualTo(5000);
+
+            BoundStatement statement = prepared.bind();
+            // 10 rows of 100 bytes
+            ArrayBackedResultSet.trackRowSize(rows(10, 96), session, statement);
+
+            // Following pages, and the first page of later executions of the same prepared statement
+            assertThat(fetchSize(session.makeRequestMessage(statement, pagingState, ProtocolVersion.V4))).isEqualTo(10);
+            assertThat(fetchSize(session.makeRequestMessage(prepared.bind(), null, ProtocolVersion.V4))).isEqualTo(10);
+
+            // An explicit fetch size always wins
+            statement.setFetchSize(50);
+            assertThat(fetchSize(session.makeRequestMessage(statement, null, ProtocolVersion.V4))).isEqualTo(50);
+            assertThat(fetchSize(session.makeRequestMessage(statement, pagingState, ProtocolVersion.V4))).isEqualTo(50);
+
+            // Simple statements are not tracked
+            Message.Request query = session.makeRequestMessage(new SimpleStatement("SELECT * FROM ks.t"), null, ProtocolVersion.V4);
+            assertThat(((Requests.Query) query).options.pageSize).isEqualTo(5000);
+        } finally {
+            cluster.close();
+        }
+    }
+
+    private static int fetchSize(Message.Request request) {
+        return ((Requests.Execute) request).options.pageSize;
+    }
+
+    private static DefaultPreparedStatement prepare(Cluster cluster) {
+        ByteBuf body = Unpooled.buffer();
+        CBUtil.writeBytes(new byte[16], body); // statement id
+        body.writeInt(0); // flags
+        body.writeInt(0); // no bound variables
+        body.writeInt(0); // no partition key indices
+        body.writeInt(4); // result metadata: NO_METADATA
+        body.writeInt(0);
+        Responses.Result.Prepared msg = (Responses.Result.Prepared)
+                Responses.Result.Prepared.subcodec.decode(body, ProtocolVersion.V4, cluster.getConfiguration().getCodecRegistry());
+        DefaultPreparedStatement prepared = DefaultPreparedStatement.fromMessage(msg, cluster, "SELECT * FROM ks.t", "ks");
+        // Normally created when the cluster initializes
+        cluster.manager.preparedQueries = new ConcurrentHashMap<MD5Digest, PreparedStatement>();
+        cluster.manager.preparedQueries.put(prepared.getPreparedId().id, prepared);
+        return prepared;
+    }
+
+    private static Responses.Result.Rows rows(int rowCount, int valueSize) {
+        ByteBuf body = Unpooled.buffer();
+        body.writeInt(4); // NO_METADATA
+        body.writeInt(1); // column count
+        body.writeInt(rowCount);
+        for (int i = 0; i < rowCount; i++)
+            CBUtil.writeValue(new byte[valueSize], body);
+        return Responses.Result.Rows.decode(body, ProtocolVersion.V4, new CodecRegistry(), false);
+    }
+}
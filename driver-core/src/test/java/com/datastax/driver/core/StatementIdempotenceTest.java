@@ -186,4 +186,17 @@ public class StatementIdempotenceTest {
 
         );
     }
+
+    @Test(groups = "unit")
+    public void should_detect_lightweight_transactions() {
+        assertThat(insertInto("foo").value("k", 1).isLWT()).isFalse();
+        assertThat(insertInto("foo").value("k", 1).ifNotExists().isLWT()).isTrue();
+        assertThat(update("foo").with(set("v", 1)).where(eq("k", 1)).isLWT()).isFalse();
+        assertThat(update("foo").with(set("v", 1)).where(eq("k", 1)).onlyIf(eq("v", 2)).isLWT()).isTrue();
+        assertThat(update("foo").with(set("v", 1)).where(eq("k", 1)).ifExists().isLWT()).isTrue();
+        assertThat(delete().from("foo").where(eq("k", 1)).ifExists().isLWT()).isTrue();
+        assertThat(batch(insertInto("foo").value("k", 1), insertInto("foo").value("k", 2).ifNotExists()).isLWT()).isTrue();
+        assertThat(new SimpleStatement("INSERT INTO foo (k) VALUES (1) IF NOT EXISTS").isLWT()).isTrue();
+        assertThat(new BatchStatement().add(new SimpleStatement("INSERT INTO foo (k) VALUES (1)")).isLWT()).isFalse();
+    }
 }
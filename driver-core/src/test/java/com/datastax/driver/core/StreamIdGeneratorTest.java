@@ -15,8 +15,17 @@
  */
 package com.datastax.driver.core;
 
+import com.google.common.util.concurrent.Uninterruptibles;
+import org.testng.annotations.DataProvider;
 import org.testng.annotations.Test;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
 import static org.testng.Assert.assertEquals;
 
 public class StreamIdGeneratorTest {
@@ -44,4 +53,99 @@ public class StreamIdGeneratorTest {
 
         assertEquals(generator.next(), -1);
     }
+
+    @Test(groups = "unit")
+    public void should_borrow_and_release_ids_with_free_list() {
+        StreamIdGenerator generator = StreamIdGenerator.newInstance(ProtocolVersion.V2, PoolingOptions.StreamIdAllocation.FREE_LIST);
+
+        assertEquals(generator.next(), 0);
+        assertEquals(generator.next(), 1);
+        generator.release(0);
+        // last released id is reused first
+        assertEquals(generator.next(), 0);
+        assertEquals(generator.next(), 2);
+
+        // duplicate releases are ignored
+        generator.release(1);
+        generator.release(1);
+        assertEquals(generator.next(), 1);
+        assertEquals(generator.next(), 3);
+
+        for (int i = 4; i < 128; i++)
+            assertEquals(generator.next(), i);
+        assertEquals(generator.next(), -1);
+
+        generator.release(100);
+        assertEquals(generator.next(), 100);
+        assertEquals(generator.next(), -1);
+    }
+
+    @Test(groups = "unit")
+    public void should_track_marked_ids_with_free_list() {
+        StreamIdGenerator generator = StreamIdGenerator.newInstance(ProtocolVersion.V3, PoolingOptions.StreamIdAllocation.FREE_LIST);
+        assertEquals(generator.maxAvailableStreams(), StreamIdGenerator.MAX_STREAM_PER_CONNECTION_V3);
+
+        int id = generator.next();
+        generator.mark(id);
+        assertEquals(generator.maxAvailableStreams(), StreamIdGenerator.MAX_STREAM_PER_CONNECTION_V3 - 1);
+
+        generator.release(id);
+        generator.unmark(id);
+        assertEquals(generator.maxAvailableStreams(), StreamIdGenerator.MAX_STREAM_PER_CONNECTION_V3);
+    }
+
+    @DataProvider(name = "allocations")
+    public static Object[][] allocations() {
+        return new Object[][]{
+                {PoolingOptions.StreamIdAllocation.BITMAP},
+                {PoolingOptions.StreamIdAllocation.FREE_LIST}
+        };
+    }
+
+    /**
+     * Has several threads borrow and release ids concurrently, and checks that an id is never held by two threads at
+     * the same time.
+     */
+    @Test(groups = "unit", dataProvider = "allocations")
+    public void should_never_hand_out_same_id_concurrently(PoolingOptions.StreamIdAllocation allocation) throws Exception {
+        final StreamIdGenerator generator = StreamIdGenerator.newInstance(ProtocolVersion.V3, allocation);
+        final AtomicIntegerArray owners = new AtomicIntegerArray(generator.maxIds());
+        final AtomicReference<String> error = new AtomicReference<String>();
+        final int threadCount = 8;
+        final int iterations = 20000;
+        final CountDownLatch start = new CountDownLatch(1);
+
+        List<Thread> threads = new ArrayList<Thread>();
+        for (int t = 0; t < threadCount; t++) {
+            final int owner = t + 1;
+            Thread thread = new Thread() {
+                @Override
+                public void run() {
+                    Uninterruptibles.awaitUninterruptibly(start);
+                    int[] held = new int[16];
+                    for (int i = 0; i < iterations; i++) {
+                        for (int j = 0; j < held.length; j++) {
+                            held[j] = generator.next();
+                            if (held[j] < 0 || !owners.compareAndSet(held[j], 0, owner))
+                                error.compareAndSet(null, "Stream id " + held[j] + " handed out twice");
+                        }
+                        for (int id : held) {
+                            if (id >= 0) {
+                                owners.set(id, 0);
+                                generator.release(id);
+                            }
+                        }
+                    }
+                }
+            };
+            threads.add(thread);
+            thread.start();
+        }
+        start.countDown();
+        for (Thread thread : threads)
+            thread.join();
+
+        assertThat(error.get()).isNull();
+        assertThat(generator.next()).isGreaterThanOrEqualTo(0);
+    }
 }
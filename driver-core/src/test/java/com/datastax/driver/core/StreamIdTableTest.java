@@ -0,0 +1,56 @@
+/*
+ *      Copyright (C) 2012-2015 DataStax Inc.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package com.datastax.driver.core;
+
+import org.testng.annotations.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class StreamIdTableTest {
+
+    @Test(groups = "unit")
+    public void should_associate_entries_to_stream_ids() {
+        StreamIdGenerator generator = StreamIdGenerator.newInstance(ProtocolVersion.V2);
+        StreamIdTable<String> table = new StreamIdTable<String>(generator.maxIds());
+
+        assertThat(table.capacity()).isEqualTo(StreamIdGenerator.MAX_STREAM_PER_CONNECTION_V2);
+        assertThat(table.isEmpty()).isTrue();
+
+        int id1 = generator.next();
+        int id2 = generator.next();
+        assertThat(table.put(id1, "a")).isNull();
+        assertThat(table.put(id2, "b")).isNull();
+        assertThat(table.size()).isEqualTo(2);
+
+        assertThat(table.remove(id1)).isEqualTo("a");
+        assertThat(table.remove(id1)).isNull();
+        assertThat(table.size()).isEqualTo(1);
+
+        // conditional removal only succeeds if the entry matches
+        assertThat(table.remove(id2, "c")).isFalse();
+        assertThat(table.remove(id2, "b")).isTrue();
+        assertThat(table.isEmpty()).isTrue();
+    }
+
+    @Test(groups = "unit")
+    public void should_ignore_out_of_range_stream_ids_on_removal() {
+        StreamIdTable<String> table = new StreamIdTable<String>(StreamIdGenerator.MAX_STREAM_PER_CONNECTION_V2);
+
+        assertThat(table.remove(-1)).isNull();
+        assertThat(table.remove(StreamIdGenerator.MAX_STREAM_PER_CONNECTION_V2)).isNull();
+        assertThat(table.isEmpty()).isTrue();
+    }
+}
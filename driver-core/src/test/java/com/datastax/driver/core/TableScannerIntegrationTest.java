@@ -0,0 +1,85 @@
+/*
+ *      Copyright (C) 2012-2015 DataStax Inc.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package com.datastax.driver.core;
+
+import com.datastax.driver.core.utils.CassandraVersion;
+import org.testng.annotations.Test;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@CCMConfig(numberOfNodes = 2)
+@CassandraVersion("2.0.0")
+public class TableScannerIntegrationTest extends CCMTestsSupport {
+
+    private static final int ROWS = 1000;
+
+    @Override
+    public void onTestContextInitialized() {
+        execute("CREATE TABLE scanned (k1 int, k2 int, v int, PRIMARY KEY ((k1, k2)))");
+        for (int i = 0; i < ROWS; i++)
+            execute(String.format("INSERT INTO scanned (k1, k2, v) VALUES (%d, %d, %d)", i, -i, i));
+    }
+
+    @Test(groups = "short")
+    public void should_iterate_over_all_rows() {
+        TableScanner scanner = TableScanner.builder(session(), table())
+                .withColumns("k1", "v")
+                .withParallelism(4)
+                .withFetchSize(7)
+                .withMaxBufferedPages(2)
+                .build();
+
+        TableScanner.RowIterator rows = scanner.scan();
+        Set<Integer> keys = new HashSet<Integer>();
+        while (rows.hasNext()) {
+            Row row = rows.next();
+            assertThat(row.getInt("v")).isEqualTo(row.getInt("k1"));
+            assertThat(keys.add(row.getInt("k1"))).isTrue();
+        }
+
+        assertThat(keys).hasSize(ROWS);
+        assertThat(rows.getRowCount()).isEqualTo(ROWS);
+        assertThat(rows.getCompletedRanges()).isEqualTo(rows.getTotalRanges());
+    }
+
+    @Test(groups = "short")
+    public void should_hand_over_all_rows_to_callback() throws Exception {
+        TableScanner scanner = TableScanner.builder(session(), table())
+                .withParallelism(3)
+                .withFetchSize(50)
+                .build();
+
+        final Set<Integer> keys = Collections.synchronizedSet(new HashSet<Integer>());
+        TableScanner.Scan scan = scanner.scan(new TableScanner.RowCallback() {
+            @Override
+            public void onRow(Row row) {
+                keys.add(row.getInt("k1"));
+            }
+        });
+        scan.getFuture().get();
+
+        assertThat(keys).hasSize(ROWS);
+        assertThat(scan.getRowCount()).isEqualTo(ROWS);
+    }
+
+    private TableMetadata table() {
+        return cluster().getMetadata().getKeyspace(keyspace).getTable("scanned");
+    }
+}
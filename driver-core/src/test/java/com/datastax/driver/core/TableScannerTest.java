@@ -0,0 +1,307 @@
+/*
+ *      Copyright (C) 2012-2015 DataStax Inc.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package com.datastax.driver.core;
+
+import com.datastax.driver.core.exceptions.OperationTimedOutException;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Maps;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.testng.annotations.Test;
+
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.util.*;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.*;
+import static org.testng.Assert.fail;
+
+public class TableScannerTest extends AbstractReplicationStrategyTest {
+
+    private static final Token.Factory M3P = Token.M3PToken.FACTORY;
+
+    private final Host host1 = host(new InetSocketAddress("127.0.0.1", 9042));
+    private final Host host2 = host(new InetSocketAddress("127.0.0.2", 9042));
+    private final Host host3 = host(new InetSocketAddress("127.0.0.3", 9042));
+
+    @Test(groups = "unit")
+    public void should_split_ring_and_alternate_replicas() {
+        Metadata metadata = newMetadata(ImmutableMap.<Host, Set<Token>>of(
+                host1, ImmutableSet.of(M3P.fromString("-100")),
+                host2, ImmutableSet.of(M3P.fromString("0")),
+                host3, ImmutableSet.of(M3P.fromString("100"))));
+
+        // 3 ring ranges, 4 splits per slot: each range is split in 4, and the wrapping one is unwrapped first
+        List<TokenRange> splits = TableScanner.computeSplits(metadata, "ks", 3);
+
+        assertThat(splits).hasSize(16);
+        assertCoversRing(splits);
+        for (int i = 0; i < 3; i++) {
+            assertThat(primaryReplica(metadata, splits.get(i)))
+                    .isNotEqualTo(primaryReplica(metadata, splits.get(i + 1)));
+        }
+    }
+
+    @Test(groups = "unit")
+    public void should_not_split_ranges_if_there_are_enough_of_them() {
+        Random random = new Random(42);
+        Map<Host, Set<Token>> allTokens = Maps.newHashMap();
+        for (Host host : Arrays.asList(host1, host2, host3)) {
+            Set<Token> tokens = new HashSet<Token>();
+            while (tokens.size() < 16)
+                tokens.add(M3P.fromString(Long.toString(random.nextLong())));
+            allTokens.put(host, tokens);
+        }
+        Metadata metadata = newMetadata(allTokens);
+
+        List<TokenRange> splits = TableScanner.computeSplits(metadata, "ks", 2);
+
+        // One split per ring range, plus one because the last range wraps around
+        assertThat(splits).hasSize(49);
+        assertCoversRing(splits);
+    }
+
+    @Test(groups = "unit", expectedExceptions = IllegalStateException.class)
+    public void should_fail_if_token_metadata_is_not_available() {
+        TableScanner.computeSplits(new Metadata(mock(Cluster.Manager.class)), "ks", 2);
+    }
+
+    @Test(groups = "unit", timeOut = 10000)
+    public void should_resume_parked_ranges_when_last_pages_are_empty() {
+        // Each range returns one row, then an empty last page (which happens when a range ends on a page boundary)
+        FakeRangeQueries queries = new FakeRangeQueries();
+        TableScanner.RowIterator rows = newScanner(queries, 3, 1, 0).scan();
+
+        List<Row> result = new ArrayList<Row>();
+        while (rows.hasNext())
+            result.add(rows.next());
+
+        assertThat(rows.getTotalRanges()).isEqualTo(16);
+        assertThat(rows.getCompletedRanges()).isEqualTo(16);
+        assertThat(result).hasSize(16).doesNotHaveDuplicates();
+        assertThat(queries.executions).isEqualTo(32);
+    }
+
+    @Test(groups = "unit", timeOut = 10000)
+    public void should_retry_range_from_last_paging_state() {
+        FakeRangeQueries queries = new FakeRangeQueries();
+        queries.failuresBeforeLastPage = 1;
+        TableScanner.RowIterator rows = newScanner(queries, 3, 2, 3).scan();
+
+        List<Row> result = new ArrayList<Row>();
+        while (rows.hasNext())
+            result.add(rows.next());
+
+        // Every range failed once on its second page, and resumed from the paging state of the first one
+        assertThat(result).hasSize(16).doesNotHaveDuplicates();
+        assertThat(rows.getRetryCount()).isEqualTo(16);
+        assertThat(queries.resumedWithPagingState).isEqualTo(32);
+    }
+
+    @Test(groups = "unit", timeOut = 10000)
+    public void should_fail_when_range_runs_out_of_retries() {
+        FakeRangeQueries queries = new FakeRangeQueries();
+        queries.failuresBeforeLastPage = 2;
+        TableScanner.RowIterator rows = newScanner(queries, 3, 2, 1).scan();
+
+        try {
+            while (rows.hasNext())
+                rows.next();
+            fail("Expected the scan to fail");
+        } catch (OperationTimedOutException e) {
+            assertThat(e.getMessage()).contains("mock failure");
+        }
+    }
+
+    @Test(groups = "unit", timeOut = 10000)
+    public void should_not_prefetch_pages_of_ranges() {
+        Cluster cluster = Cluster.builder()
+                .addContactPoint("127.0.0.1")
+                .withQueryOptions(new QueryOptions().setPrefetchThresholdPercentage(50))
+                .build();
+        try {
+            // Normally created when the cluster initializes
+            cluster.manager.metadata = new Metadata(cluster.manager);
+            SessionManager session = spy(new SessionManager(cluster));
+            doReturn(null).when(session).makeRequestMessage(any(Statement.class), any(ByteBuffer.class));
+            doNothing().when(session).execute(any(RequestHandler.Callback.class), any(Statement.class));
+
+            // Real result sets, that would request their next page in the background once their only row is consumed
+            FakeRangeQueries queries = new FakeRangeQueries();
+            queries.resultSession = session;
+            TableScanner.RowIterator rows = newScanner(queries, 3, 1, 0).scan();
+
+            List<Row> result = new ArrayList<Row>();
+            while (rows.hasNext())
+                result.add(rows.next());
+
+            assertThat(result).hasSize(16);
+            assertThat(queries.executions).isEqualTo(32);
+            verify(session, never()).execute(any(RequestHandler.Callback.class), any(Statement.class));
+        } finally {
+            cluster.close();
+        }
+    }
+
+    private TableScanner newScanner(final FakeRangeQueries queries, int parallelism, int maxBufferedPages, int maxRetries) {
+        Metadata metadata = newMetadata(ImmutableMap.<Host, Set<Token>>of(
+                host1, ImmutableSet.of(M3P.fromString("-100")),
+                host2, ImmutableSet.of(M3P.fromString("0")),
+                host3, ImmutableSet.of(M3P.fromString("100"))));
+        Cluster cluster = mock(Cluster.class);
+        when(cluster.getMetadata()).thenReturn(metadata);
+        Session session = mock(Session.class);
+        when(session.getCluster()).thenReturn(cluster);
+        when(session.executeAsync(any(Statement.class))).thenAnswer(queries);
+
+        PreparedStatement statement = mock(PreparedStatement.class);
+        when(statement.bind()).thenAnswer(new Answer<BoundStatement>() {
+            @Override
+            public BoundStatement answer(InvocationOnMock invocation) throws Throwable {
+                final BoundStatement bs = mock(BoundStatement.class);
+                when(bs.setPagingStateUnsafe(any(byte[].class))).thenAnswer(new Answer<Statement>() {
+                    @Override
+                    public Statement answer(InvocationOnMock invocation) throws Throwable {
+                        queries.pagingStates.put(bs, (byte[]) invocation.getArguments()[0]);
+                        return bs;
+                    }
+                });
+                return bs;
+            }
+        });
+        return new TableScanner(session, "ks", statement, parallelism, 0, maxBufferedPages, maxRetries, null);
+    }
+
+    /**
+     * Simulates the queries of a scan: the first page of each range contains a single row, and the second one is
+     * empty. Responses are returned synchronously.
+     */
+    private static class FakeRangeQueries implements Answer<ResultSetFuture> {
+        private static final byte[] PAGING_STATE = new byte[]{1, 2, 3};
+
+        final Map<BoundStatement, byte[]> pagingStates = Collections.synchronizedMap(new IdentityHashMap<BoundStatement, byte[]>());
+        final Map<Token, Integer> failures = new HashMap<Token, Integer>();
+        int failuresBeforeLastPage;
+        // If set, pages are actual result sets attached to this session, instead of mocks
+        SessionManager resultSession;
+        int executions;
+        int resumedWithPagingState;
+
+        @Override
+        public synchronized ResultSetFuture answer(InvocationOnMock invocation) throws Throwable {
+            executions += 1;
+            Statement statement = (Statement) invocation.getArguments()[0];
+            Token rangeEnd = statement.getRoutingToken();
+            byte[] pagingState = pagingStates.get(((StatementWrapper) statement).getWrappedStatement());
+
+            CompletedFuture future = new CompletedFuture();
+            if (pagingState == null) {
+                future.set(page(1, PAGING_STATE));
+                return future;
+            }
+            assertThat(pagingState).isEqualTo(PAGING_STATE);
+            resumedWithPagingState += 1;
+            Integer failed = failures.get(rangeEnd);
+            failed = (failed == null) ? 0 : failed;
+            if (failed < failuresBeforeLastPage) {
+                failures.put(rangeEnd, failed + 1);
+                future.setException(new OperationTimedOutException(new InetSocketAddress("127.0.0.1", 9042), "mock failure"));
+            } else {
+                future.set(page(0, null));
+            }
+            return future;
+        }
+
+        private ResultSet page(int rowCount, byte[] nextPagingState) {
+            if (resultSession != null)
+                return realPage(rowCount, nextPagingState);
+            final Queue<Row> rows = new LinkedList<Row>();
+            for (int i = 0; i < rowCount; i++)
+                rows.add(mock(Row.class));
+            ResultSet rs = mock(ResultSet.class);
+            when(rs.getAvailableWithoutFetching()).thenReturn(rowCount);
+            when(rs.one()).thenAnswer(new Answer<Row>() {
+                @Override
+                public Row answer(InvocationOnMock invocation) throws Throwable {
+                    return rows.poll();
+                }
+            });
+            ExecutionInfo info = mock(ExecutionInfo.class);
+            when(info.getPagingStateUnsafe()).thenReturn(nextPagingState);
+            when(rs.getExecutionInfo()).thenReturn(info);
+            return rs;
+        }
+
+        private ResultSet realPage(int rowCount, byte[] nextPagingState) {
+            ByteBuf body = Unpooled.buffer();
+            body.writeInt(nextPagingState == null ? 1 : 3); // GLOBAL_TABLES_SPEC, HAS_MORE_PAGES
+            body.writeInt(1); // column count
+            if (nextPagingState != null)
+                CBUtil.writeValue(nextPagingState, body);
+            CBUtil.writeString("ks", body);
+            CBUtil.writeString("t", body);
+            CBUtil.writeString("k", body);
+            body.writeShort(0x0009); // int
+            body.writeInt(rowCount);
+            for (int i = 0; i < rowCount; i++)
+                CBUtil.writeValue(TypeCodec.cint().serialize(i, ProtocolVersion.V4), body);
+            Responses.Result.Rows rows = Responses.Result.Rows.decode(body, ProtocolVersion.V4, new CodecRegistry(), false);
+            return ArrayBackedResultSet.fromMessage(rows, resultSession, ProtocolVersion.V4,
+                    new ExecutionInfo(Collections.<Host>emptyList()), new SimpleStatement("SELECT * FROM ks.t"));
+        }
+    }
+
+    private static class CompletedFuture extends ChainedResultSetFuture {
+        @Override
+        protected boolean set(ResultSet value) {
+            return super.set(value);
+        }
+
+        @Override
+        protected boolean setException(Throwable throwable) {
+            return super.setException(throwable);
+        }
+    }
+
+    private static void assertCoversRing(List<TokenRange> splits) {
+        List<TokenRange> sorted = new ArrayList<TokenRange>(splits);
+        Collections.sort(sorted);
+        Token previous = M3P.minToken();
+        for (TokenRange split : sorted) {
+            assertThat(split.isWrappedAround()).isFalse();
+            assertThat(split.getStart()).isEqualTo(previous);
+            previous = split.getEnd();
+        }
+        assertThat(previous).isEqualTo(M3P.minToken());
+    }
+
+    private static Host primaryReplica(Metadata metadata, TokenRange range) {
+        return metadata.getReplicas("ks", range).iterator().next();
+    }
+
+    private static Metadata newMetadata(Map<Host, Set<Token>> allTokens) {
+        Metadata metadata = new Metadata(mock(Cluster.Manager.class));
+        metadata.keyspaces.put("ks", new KeyspaceMetadata("ks", true,
+                ImmutableMap.of("class", "SimpleStrategy", "replication_factor", "2")));
+        metadata.rebuildTokenMap(M3P, allTokens);
+        return metadata;
+    }
+}
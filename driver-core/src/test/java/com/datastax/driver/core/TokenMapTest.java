@@ -0,0 +1,200 @@
+/*
+ *      Copyright (C) 2012-2015 DataStax Inc.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package com.datastax.driver.core;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Maps;
+import org.testng.annotations.Test;
+
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.util.*;
+import java.util.concurrent.*;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+public class TokenMapTest extends AbstractReplicationStrategyTest {
+
+    private static final Token.Factory M3P = Token.M3PToken.FACTORY;
+
+    @Test(groups = "unit")
+    public void should_find_replicas_of_partition_key_with_murmur3() {
+        Random random = new Random(42);
+        Map<Host, Set<Token>> allTokens = Maps.newHashMap();
+        for (int i = 1; i <= 5; i++) {
+            Set<Token> tokens = new HashSet<Token>();
+            for (int j = 0; j < 16; j++)
+                tokens.add(M3P.fromString(Long.toString(random.nextLong())));
+            allTokens.put(host(new InetSocketAddress("127.0.0." + i, 9042)), tokens);
+        }
+        Metadata metadata = newMetadata(allTokens);
+
+        for (int i = 0; i < 1000; i++) {
+            ByteBuffer key = TypeCodec.cint().serialize(random.nextInt(), ProtocolVersion.NEWEST_SUPPORTED);
+            Token token = metadata.newToken(key);
+            assertThat(metadata.getReplicas("ks", key))
+                    .hasSize(2)
+                    .isEqualTo(metadata.getReplicas("ks", metadata.newTokenRange(token, token)));
+        }
+    }
+
+    @Test(groups = "unit")
+    public void should_wrap_around_the_ring_with_murmur3() {
+        Host host1 = host(new InetSocketAddress("127.0.0.1", 9042));
+        Host host2 = host(new InetSocketAddress("127.0.0.2", 9042));
+        Map<Host, Set<Token>> allTokens = ImmutableMap.<Host, Set<Token>>of(
+                host1, ImmutableSet.of(M3P.fromString("-100")),
+                host2, ImmutableSet.of(M3P.fromString("100")));
+        Metadata metadata = newMetadata(allTokens);
+
+        // Find keys that hash after the last token of the ring, and before the first one
+        int found = 0;
+        for (int i = 0; found < 2 && i < 100000; i++) {
+            ByteBuffer key = TypeCodec.cint().serialize(i, ProtocolVersion.NEWEST_SUPPORTED);
+            long value = (Long) metadata.newToken(key).getValue();
+            if (value > 100 || value <= -100) {
+                assertThat(metadata.getReplicas("ks", key)).containsExactly(host1, host2);
+                found++;
+            }
+        }
+        assertThat(found).isEqualTo(2);
+        assertThat(metadata.getReplicas("unknown", TypeCodec.cint().serialize(0, ProtocolVersion.NEWEST_SUPPORTED)))
+                .isEmpty();
+    }
+
+    @Test(groups = "unit")
+    public void should_update_replicas_incrementally_when_host_added_or_removed() {
+        Random random = new Random(42);
+        Map<Host, Set<Token>> allTokens = Maps.newHashMap();
+        for (int i = 1; i <= 8; i++)
+            allTokens.put(newHost(i), randomTokens(random, 16));
+        Metadata metadata = newMetadata(allTokens);
+
+        // Add a host
+        Host newHost = newHost(9);
+        Map<Host, Set<Token>> withNewHost = Maps.newHashMap(allTokens);
+        withNewHost.put(newHost, randomTokens(random, 16));
+        metadata.rebuildTokenMap(M3P, withNewHost);
+        assertSameReplicas(metadata, newMetadata(withNewHost), withNewHost.keySet(), random);
+
+        // Remove a host
+        Map<Host, Set<Token>> withoutHost = Maps.newHashMap(withNewHost);
+        withoutHost.remove(allTokens.keySet().iterator().next());
+        metadata.rebuildTokenMap(M3P, withoutHost);
+        assertSameReplicas(metadata, newMetadata(withoutHost), withoutHost.keySet(), random);
+    }
+
+    @Test(groups = "unit")
+    public void should_compute_replicas_lazily() {
+        Random random = new Random(42);
+        Map<Host, Set<Token>> allTokens = Maps.newHashMap();
+        for (int i = 1; i <= 8; i++)
+            allTokens.put(newHost(i), randomTokens(random, 16));
+        Metadata lazy = newMetadata(allTokens, true);
+        assertSameReplicas(lazy, newMetadata(allTokens), allTokens.keySet(), random);
+
+        // Schema refresh
+        lazy.keyspaces.put("ks2", new KeyspaceMetadata("ks2", true,
+                ImmutableMap.of("class", "SimpleStrategy", "replication_factor", "3")));
+        lazy.rebuildTokenMap();
+        assertThat(lazy.getReplicas("ks2", TypeCodec.cint().serialize(1, ProtocolVersion.NEWEST_SUPPORTED))).hasSize(3);
+        assertSameReplicas(lazy, newMetadata(allTokens), allTokens.keySet(), random);
+
+        // Topology change
+        Map<Host, Set<Token>> withNewHost = Maps.newHashMap(allTokens);
+        withNewHost.put(newHost(9), randomTokens(random, 16));
+        lazy.rebuildTokenMap(M3P, withNewHost);
+        assertSameReplicas(lazy, newMetadata(withNewHost), withNewHost.keySet(), random);
+    }
+
+    @Test(groups = "unit", timeOut = 30000)
+    public void should_compute_lazy_replicas_concurrently() throws Exception {
+        Random random = new Random(42);
+        final Map<Host, Set<Token>> allTokens = Maps.newHashMap();
+        for (int i = 1; i <= 8; i++)
+            allTokens.put(newHost(i), randomTokens(random, 16));
+        final Metadata lazy = newMetadata(allTokens, true);
+        Metadata eager = newMetadata(allTokens);
+
+        // First lookups of both keyspaces (and of an unknown one) race with each other
+        final ByteBuffer key = TypeCodec.cint().serialize(1, ProtocolVersion.NEWEST_SUPPORTED);
+        final CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<Set<Host>>> results = new ArrayList<Future<Set<Host>>>();
+            for (int i = 0; i < 24; i++) {
+                final String keyspace = (i % 3 == 0) ? "ks" : (i % 3 == 1) ? "nts" : "unknown";
+                results.add(executor.submit(new Callable<Set<Host>>() {
+                    @Override
+                    public Set<Host> call() throws Exception {
+                        start.await();
+                        return lazy.getReplicas(keyspace, key);
+                    }
+                }));
+            }
+            start.countDown();
+            for (int i = 0; i < results.size(); i++) {
+                String keyspace = (i % 3 == 0) ? "ks" : (i % 3 == 1) ? "nts" : "unknown";
+                assertThat(results.get(i).get()).containsExactlyElementsOf(eager.getReplicas(keyspace, key));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertThat(lazy.getReplicas("unknown", key)).isEmpty();
+        assertSameReplicas(lazy, eager, allTokens.keySet(), random);
+    }
+
+    private static Host newHost(int i) {
+        // 2 DCs with 2 racks each
+        return host(new InetSocketAddress("127.0.0." + i, 9042), "dc" + (i % 2), "rack" + (i % 4 / 2));
+    }
+
+    private static Set<Token> randomTokens(Random random, int count) {
+        Set<Token> tokens = new HashSet<Token>();
+        while (tokens.size() < count)
+            tokens.add(M3P.fromString(Long.toString(random.nextLong())));
+        return tokens;
+    }
+
+    private static void assertSameReplicas(Metadata actual, Metadata expected, Set<Host> hosts, Random random) {
+        for (String keyspace : Arrays.asList("ks", "nts")) {
+            for (int i = 0; i < 1000; i++) {
+                ByteBuffer key = TypeCodec.cint().serialize(random.nextInt(), ProtocolVersion.NEWEST_SUPPORTED);
+                assertThat(actual.getReplicas(keyspace, key)).containsExactlyElementsOf(expected.getReplicas(keyspace, key));
+            }
+            for (Host host : hosts)
+                assertThat(actual.getTokenRanges(keyspace, host)).isEqualTo(expected.getTokenRanges(keyspace, host));
+        }
+        assertThat(actual.getTokenRanges()).isEqualTo(expected.getTokenRanges());
+    }
+
+    private static Metadata newMetadata(Map<Host, Set<Token>> allTokens) {
+        return newMetadata(allTokens, false);
+    }
+
+    private static Metadata newMetadata(Map<Host, Set<Token>> allTokens, boolean lazy) {
+        Metadata metadata = new Metadata(mock(Cluster.Manager.class));
+        metadata.lazyReplicas = lazy;
+        metadata.keyspaces.put("ks", new KeyspaceMetadata("ks", true,
+                ImmutableMap.of("class", "SimpleStrategy", "replication_factor", "2")));
+        metadata.keyspaces.put("nts", new KeyspaceMetadata("nts", true,
+                ImmutableMap.of("class", "NetworkTopologyStrategy", "dc0", "2", "dc1", "3")));
+        metadata.rebuildTokenMap(M3P, allTokens);
+        return metadata;
+    }
+}
@@ -0,0 +1,137 @@
+/*
+ *      Copyright (C) 2012-2015 DataStax Inc.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package com.datastax.driver.core.policies;
+
+import com.datastax.driver.core.exceptions.RequestThrottlingException;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.Uninterruptibles;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.fail;
+
+public class ConcurrencyLimitingThrottlingPolicyTest {
+
+    ConcurrencyLimitingThrottlingPolicy policy;
+    RequestThrottlingPolicy.RequestThrottler throttler;
+
+    @BeforeMethod(groups = "unit")
+    public void setup() {
+        policy = new ConcurrencyLimitingThrottlingPolicy(2, 1, 200);
+        throttler = policy.newThrottler();
+    }
+
+    @AfterMethod(groups = "unit", alwaysRun = true)
+    public void teardown() {
+        policy.close();
+    }
+
+    @Test(groups = "unit")
+    public void should_admit_queue_and_reject_requests() {
+        assertThat(throttler.acquire().isDone()).isTrue();
+        assertThat(throttler.acquire().isDone()).isTrue();
+
+        ListenableFuture<Void> queued = throttler.acquire();
+        assertThat(queued.isDone()).isFalse();
+
+        assertRejected(throttler.acquire());
+
+        throttler.release();
+        assertThat(queued.isDone()).isTrue();
+        assertAdmitted(queued);
+    }
+
+    @Test(groups = "unit")
+    public void should_reject_request_that_waits_too_long() {
+        throttler.acquire();
+        throttler.acquire();
+
+        ListenableFuture<Void> queued = throttler.acquire();
+        assertRejected(queued);
+
+        // The queue is empty again, and the permit released later goes to the next request
+        ListenableFuture<Void> next = throttler.acquire();
+        throttler.release();
+        assertAdmitted(next);
+    }
+
+    @Test(groups = "unit")
+    public void should_reject_waiting_requests_when_closed() {
+        throttler.acquire();
+        throttler.acquire();
+        ListenableFuture<Void> queued = throttler.acquire();
+
+        throttler.close();
+
+        assertRejected(queued);
+        assertRejected(throttler.acquire());
+    }
+
+    @Test(groups = "unit")
+    public void should_not_recurse_when_admitted_requests_release_synchronously() {
+        policy.close();
+        policy = new ConcurrencyLimitingThrottlingPolicy(1, 100000, 10000);
+        throttler = policy.newThrottler();
+        throttler.acquire();
+
+        // Simulate requests that fail as soon as they are admitted, and release their permit from the callback
+        List<ListenableFuture<Void>> queued = new ArrayList<ListenableFuture<Void>>();
+        for (int i = 0; i < 100000; i++) {
+            ListenableFuture<Void> future = throttler.acquire();
+            future.addListener(new Runnable() {
+                @Override
+                public void run() {
+                    throttler.release();
+                }
+            }, MoreExecutors.sameThreadExecutor());
+            queued.add(future);
+        }
+
+        throttler.release();
+
+        for (ListenableFuture<Void> future : queued)
+            assertThat(future.isDone()).isTrue();
+        // The last request released its permit, so a new one is admitted right away
+        assertThat(throttler.acquire().isDone()).isTrue();
+    }
+
+    private static void assertAdmitted(ListenableFuture<Void> future) {
+        try {
+            Uninterruptibles.getUninterruptibly(future, 1, TimeUnit.SECONDS);
+        } catch (Exception e) {
+            fail("Expected request to be admitted", e);
+        }
+    }
+
+    private static void assertRejected(ListenableFuture<Void> future) {
+        try {
+            Uninterruptibles.getUninterruptibly(future, 1, TimeUnit.SECONDS);
+            fail("Expected request to be rejected");
+        } catch (ExecutionException e) {
+            assertThat(e.getCause()).isInstanceOf(RequestThrottlingException.class);
+        } catch (Exception e) {
+            fail("Unexpected exception", e);
+        }
+    }
+}
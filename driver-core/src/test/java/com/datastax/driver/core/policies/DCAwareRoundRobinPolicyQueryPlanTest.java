@@ -0,0 +1,97 @@
+/*
+ *      Copyright (C) 2012-2015 DataStax Inc.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package com.datastax.driver.core.policies;
+
+import com.datastax.driver.core.*;
+import com.google.common.collect.Lists;
+import org.mockito.Answers;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.when;
+
+public class DCAwareRoundRobinPolicyQueryPlanTest {
+    @Mock(answer = Answers.RETURNS_DEEP_STUBS)
+    Cluster cluster;
+
+    @Mock
+    Host local1, local2, local3, remote1, remote2;
+
+    Statement statement = new SimpleStatement("irrelevant").setConsistencyLevel(ConsistencyLevel.ONE);
+
+    DCAwareRoundRobinPolicy policy;
+
+    @BeforeMethod(groups = "unit")
+    public void setup() {
+        MockitoAnnotations.initMocks(this);
+        for (Host host : new Host[]{local1, local2, local3})
+            when(host.getDatacenter()).thenReturn("dc1");
+        for (Host host : new Host[]{remote1, remote2})
+            when(host.getDatacenter()).thenReturn("dc2");
+        policy = DCAwareRoundRobinPolicy.builder()
+                .withLocalDc("dc1")
+                .withUsedHostsPerRemoteDc(1)
+                .build();
+        policy.init(cluster, Lists.newArrayList(local1, local2, local3, remote1, remote2));
+    }
+
+    @Test(groups = "unit")
+    public void should_rotate_local_hosts_and_append_remote_hosts() {
+        List<Host> first = Lists.newArrayList(policy.newQueryPlan(null, statement));
+        List<Host> second = Lists.newArrayList(policy.newQueryPlan(null, statement));
+
+        assertThat(first).hasSize(4);
+        assertThat(first.subList(0, 3)).containsOnly(local1, local2, local3);
+        assertThat(first.get(3)).isEqualTo(remote1);
+        // The next plan starts one host further
+        assertThat(second.subList(0, 3)).containsExactly(first.get(1), first.get(2), first.get(0));
+        assertThat(second.get(3)).isEqualTo(remote1);
+
+        assertThat(policy.distance(local1)).isEqualTo(HostDistance.LOCAL);
+        assertThat(policy.distance(remote1)).isEqualTo(HostDistance.REMOTE);
+        assertThat(policy.distance(remote2)).isEqualTo(HostDistance.IGNORED);
+    }
+
+    @Test(groups = "unit")
+    public void should_reflect_host_state_changes_in_new_plans() {
+        policy.onDown(local2);
+        policy.onDown(remote1);
+
+        assertThat(Lists.newArrayList(policy.newQueryPlan(null, statement)))
+                .hasSize(3)
+                .containsOnly(local1, local3, remote2);
+        assertThat(policy.distance(remote2)).isEqualTo(HostDistance.REMOTE);
+
+        policy.onUp(local2);
+        policy.onUp(local2);
+        assertThat(Lists.newArrayList(policy.newQueryPlan(null, statement)))
+                .hasSize(4)
+                .containsOnly(local1, local2, local3, remote2);
+    }
+
+    @Test(groups = "unit")
+    public void should_not_return_remote_hosts_for_local_consistency_levels() {
+        Statement localStatement = new SimpleStatement("irrelevant").setConsistencyLevel(ConsistencyLevel.LOCAL_ONE);
+
+        assertThat(Lists.newArrayList(policy.newQueryPlan(null, localStatement)))
+                .containsOnly(local1, local2, local3);
+    }
+}
@@ -0,0 +1,101 @@
+/*
+ *      Copyright (C) 2012-2015 DataStax Inc.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package com.datastax.driver.core.policies;
+
+import com.datastax.driver.core.*;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+import org.mockito.Answers;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.nio.ByteBuffer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.*;
+
+public class LeastInFlightPolicyTest {
+    @Mock(answer = Answers.RETURNS_DEEP_STUBS)
+    Cluster cluster;
+
+    @Mock
+    Metadata metadata;
+
+    @Mock
+    Host host1, host2, host3;
+
+    @Mock
+    LoadBalancingPolicy childPolicy;
+
+    ByteBuffer routingKey = ByteBuffer.wrap(new byte[]{1, 2, 3});
+
+    Statement statement = new SimpleStatement("irrelevant").setRoutingKey(routingKey).setKeyspace("ks");
+
+    LeastInFlightPolicy policy;
+
+    @BeforeMethod(groups = "unit")
+    public void setup() {
+        MockitoAnnotations.initMocks(this);
+        when(cluster.getMetadata()).thenReturn(metadata);
+        when(childPolicy.distance(any(Host.class))).thenReturn(HostDistance.LOCAL);
+        when(childPolicy.newQueryPlan(anyString(), any(Statement.class)))
+                .thenAnswer(new Answer<Object>() {
+                    @Override
+                    public Object answer(InvocationOnMock invocation) {
+                        return Lists.newArrayList(host1, host2, host3).iterator();
+                    }
+                });
+        policy = new LeastInFlightPolicy(childPolicy);
+        policy.init(cluster, Lists.newArrayList(host1, host2, host3));
+    }
+
+    @Test(groups = "unit")
+    public void should_swap_first_hosts_if_second_is_less_busy() {
+        when(metadata.getReplicas(Metadata.quote("ks"), routingKey)).thenReturn(Sets.newHashSet(host1, host2));
+        when(host1.getInFlightQueries()).thenReturn(10);
+        when(host2.getInFlightQueries()).thenReturn(5);
+
+        assertThat(Lists.newArrayList(policy.newQueryPlan("ks", statement))).containsExactly(host2, host1, host3);
+
+        when(host2.getInFlightQueries()).thenReturn(10);
+        assertThat(Lists.newArrayList(policy.newQueryPlan("ks", statement))).containsExactly(host1, host2, host3);
+    }
+
+    @Test(groups = "unit")
+    public void should_not_promote_non_replica() {
+        when(metadata.getReplicas(Metadata.quote("ks"), routingKey)).thenReturn(Sets.newHashSet(host1, host3));
+        when(host1.getInFlightQueries()).thenReturn(10);
+        when(host2.getInFlightQueries()).thenReturn(0);
+
+        assertThat(Lists.newArrayList(policy.newQueryPlan("ks", statement))).containsExactly(host1, host2, host3);
+    }
+
+    @Test(groups = "unit")
+    public void should_compare_local_hosts_if_replicas_are_unknown() {
+        Statement noRoutingKey = new SimpleStatement("irrelevant");
+        when(host1.getInFlightQueries()).thenReturn(10);
+        when(host2.getInFlightQueries()).thenReturn(0);
+
+        assertThat(Lists.newArrayList(policy.newQueryPlan("ks", noRoutingKey))).containsExactly(host2, host1, host3);
+
+        when(childPolicy.distance(host2)).thenReturn(HostDistance.REMOTE);
+        assertThat(Lists.newArrayList(policy.newQueryPlan("ks", noRoutingKey))).containsExactly(host1, host2, host3);
+    }
+}
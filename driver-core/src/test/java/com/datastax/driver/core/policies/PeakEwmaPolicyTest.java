@@ -0,0 +1,118 @@
+/*
+ *      Copyright (C) 2012-2015 DataStax Inc.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package com.datastax.driver.core.policies;
+
+import com.datastax.driver.core.*;
+import com.datastax.driver.core.exceptions.UnavailableException;
+import com.google.common.collect.Lists;
+import org.mockito.Answers;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+import static org.mockito.Mockito.*;
+
+public class PeakEwmaPolicyTest {
+    private static final long MS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    @Mock(answer = Answers.RETURNS_DEEP_STUBS)
+    Cluster cluster;
+
+    @Mock
+    Host host1, host2, host3;
+
+    @Mock
+    LoadBalancingPolicy childPolicy;
+
+    Statement statement = new SimpleStatement("irrelevant");
+
+    PeakEwmaPolicy policy;
+    LatencyTracker tracker;
+
+    @BeforeMethod(groups = "unit")
+    public void setup() {
+        MockitoAnnotations.initMocks(this);
+        when(childPolicy.distance(any(Host.class))).thenReturn(HostDistance.LOCAL);
+        when(childPolicy.newQueryPlan(anyString(), any(Statement.class)))
+                .thenAnswer(new Answer<Object>() {
+                    @Override
+                    public Object answer(InvocationOnMock invocation) {
+                        return Lists.newArrayList(host1, host2, host3).iterator();
+                    }
+                });
+        policy = new PeakEwmaPolicy(childPolicy);
+        policy.init(cluster, Lists.newArrayList(host1, host2, host3));
+
+        ArgumentCaptor<LatencyTracker> captor = ArgumentCaptor.forClass(LatencyTracker.class);
+        verify(cluster).register(captor.capture());
+        tracker = captor.getValue();
+    }
+
+    @Test(groups = "unit")
+    public void should_jump_to_peaks_and_decrease_progressively() {
+        PeakEwmaPolicy.Ewma ewma = new PeakEwmaPolicy.Ewma(0, 10 * MS, 1);
+        double decay = (double) TimeUnit.SECONDS.toNanos(1);
+
+        assertThat(ewma.next(1, 100 * MS, decay).cost).isEqualTo(100 * MS);
+
+        // After one decay time, the previous average weighs 1/e
+        PeakEwmaPolicy.Ewma next = ewma.next(TimeUnit.SECONDS.toNanos(1), 0, decay);
+        assertThat(next.cost).isCloseTo(10 * MS / Math.E, within(1.0));
+        assertThat(next.nbMeasure).isEqualTo(2);
+        assertThat(ewma.decayedCost(TimeUnit.SECONDS.toNanos(1), decay)).isEqualTo(next.cost);
+    }
+
+    @Test(groups = "unit")
+    public void should_prefer_faster_host() {
+        tracker.update(host1, statement, null, 100 * MS);
+        tracker.update(host2, statement, null, 10 * MS);
+
+        assertThat(Lists.newArrayList(policy.newQueryPlan("ks", statement))).containsExactly(host2, host1, host3);
+
+        PeakEwmaPolicy.Snapshot snapshot = policy.getScoresSnapshot();
+        assertThat(snapshot.getAllStats()).hasSize(2);
+        assertThat(snapshot.getStats(host1).getMeasurementsCount()).isEqualTo(1);
+        assertThat(snapshot.getStats(host1).getScore()).isGreaterThan(snapshot.getStats(host2).getScore());
+    }
+
+    @Test(groups = "unit")
+    public void should_penalize_hosts_with_requests_in_flight() {
+        tracker.update(host1, statement, null, 10 * MS);
+        tracker.update(host2, statement, null, 20 * MS);
+        when(host1.getInFlightQueries()).thenReturn(2);
+
+        assertThat(Lists.newArrayList(policy.newQueryPlan("ks", statement))).containsExactly(host2, host1, host3);
+        assertThat(policy.getScoresSnapshot().getStats(host1).getInFlightQueries()).isEqualTo(2);
+    }
+
+    @Test(groups = "unit")
+    public void should_ignore_fast_errors_and_forget_hosts_that_go_down() {
+        tracker.update(host1, statement, new UnavailableException(ConsistencyLevel.ONE, 1, 0), 1);
+        assertThat(policy.getScoresSnapshot().getAllStats()).isEmpty();
+
+        tracker.update(host1, statement, null, 10 * MS);
+        policy.onDown(host1);
+        assertThat(policy.getScoresSnapshot().getAllStats()).isEmpty();
+    }
+}
@@ -0,0 +1,128 @@
+/*
+ *      Copyright (C) 2012-2015 DataStax Inc.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package com.datastax.driver.core.policies;
+
+import com.datastax.driver.core.exceptions.RequestThrottlingException;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.Uninterruptibles;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.Test;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.fail;
+
+public class RateLimitingThrottlingPolicyTest {
+
+    RateLimitingThrottlingPolicy policy;
+
+    @AfterMethod(groups = "unit", alwaysRun = true)
+    public void teardown() {
+        if (policy != null)
+            policy.close();
+    }
+
+    @Test(groups = "unit")
+    public void should_admit_a_burst_then_queue_and_reject_requests() {
+        // 500 ms per permit, a burst of 2
+        policy = new RateLimitingThrottlingPolicy(2, 1, 2000);
+        RequestThrottlingPolicy.RequestThrottler throttler = policy.newThrottler();
+
+        for (int i = 0; i < 2; i++)
+            assertThat(throttler.acquire().isDone()).isTrue();
+
+        ListenableFuture<Void> queued = throttler.acquire();
+        assertThat(queued.isDone()).isFalse();
+        assertRejected(throttler.acquire());
+
+        // Admitted by the scheduled drain once a permit was added, without any other call to the throttler
+        assertAdmitted(queued);
+    }
+
+    @Test(groups = "unit")
+    public void should_admit_all_waiting_requests_as_permits_are_added() {
+        policy = new RateLimitingThrottlingPolicy(20, 5, 2000);
+        RequestThrottlingPolicy.RequestThrottler throttler = policy.newThrottler();
+        for (int i = 0; i < 20; i++)
+            throttler.acquire();
+
+        ListenableFuture<?>[] queued = new ListenableFuture<?>[5];
+        for (int i = 0; i < queued.length; i++)
+            queued[i] = throttler.acquire();
+
+        for (ListenableFuture<?> future : queued)
+            assertAdmitted(future);
+    }
+
+    @Test(groups = "unit")
+    public void should_refill_permits_after_idle_period() {
+        policy = new RateLimitingThrottlingPolicy(2, 0, 1000);
+        RequestThrottlingPolicy.RequestThrottler throttler = policy.newThrottler();
+        for (int i = 0; i < 2; i++)
+            assertThat(throttler.acquire().isDone()).isTrue();
+        assertRejected(throttler.acquire());
+
+        Uninterruptibles.sleepUninterruptibly(1100, TimeUnit.MILLISECONDS);
+
+        // The bucket is full again
+        assertAdmitted(throttler.acquire());
+        assertAdmitted(throttler.acquire());
+    }
+
+    @Test(groups = "unit")
+    public void should_reject_request_that_waits_too_long() {
+        // The next permit is added after one second, long after the timeout
+        policy = new RateLimitingThrottlingPolicy(1, 1, 50);
+        RequestThrottlingPolicy.RequestThrottler throttler = policy.newThrottler();
+        assertThat(throttler.acquire().isDone()).isTrue();
+
+        assertRejected(throttler.acquire());
+    }
+
+    @Test(groups = "unit")
+    public void should_reject_waiting_requests_when_closed() {
+        policy = new RateLimitingThrottlingPolicy(1, 1, 2000);
+        RequestThrottlingPolicy.RequestThrottler throttler = policy.newThrottler();
+        throttler.acquire();
+        ListenableFuture<Void> queued = throttler.acquire();
+
+        throttler.close();
+
+        assertRejected(queued);
+        assertRejected(throttler.acquire());
+    }
+
+    private static void assertAdmitted(ListenableFuture<?> future) {
+        try {
+            Uninterruptibles.getUninterruptibly(future, 2, TimeUnit.SECONDS);
+        } catch (Exception e) {
+            fail("Expected request to be admitted", e);
+        }
+    }
+
+    private static void assertRejected(ListenableFuture<?> future) {
+        try {
+            Uninterruptibles.getUninterruptibly(future, 1, TimeUnit.SECONDS);
+            fail("Expected request to be rejected");
+        } catch (ExecutionException e) {
+            assertThat(e.getCause()).isInstanceOf(RequestThrottlingException.class);
+        } catch (Exception e) {
+            fail("Unexpected exception", e);
+        }
+    }
+}
@@ -0,0 +1,145 @@
+/*
+ *      Copyright (C) 2012-2015 DataStax Inc.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package com.datastax.driver.core.policies;
+
+import com.datastax.driver.core.*;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+import org.mockito.Answers;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.nio.ByteBuffer;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.*;
+
+public class TokenAwarePolicyQueryPlanTest {
+    @Mock(answer = Answers.RETURNS_DEEP_STUBS)
+    Cluster cluster;
+
+    @Mock
+    Metadata metadata;
+
+    @Mock
+    Host host1, host2, host3, host4, host5;
+
+    @Mock
+    LoadBalancingPolicy childPolicy;
+
+    ByteBuffer routingKey = ByteBuffer.wrap(new byte[]{1, 2, 3});
+
+    Statement statement = new SimpleStatement("irrelevant").setRoutingKey(routingKey).setKeyspace("ks");
+
+    @BeforeMethod(groups = "unit")
+    public void setup() {
+        MockitoAnnotations.initMocks(this);
+        when(cluster.getMetadata()).thenReturn(metadata);
+        for (Host host : new Host[]{host1, host2, host3, host4, host5})
+            when(host.isUp()).thenReturn(true);
+        when(childPolicy.distance(any(Host.class))).thenReturn(HostDistance.LOCAL);
+        when(childPolicy.newQueryPlan(null, statement))
+                .thenAnswer(new Answer<Object>() {
+                    @Override
+                    public Object answer(InvocationOnMock invocation) {
+                        return Lists.newArrayList(host5, host4, host3, host2, host1).iterator();
+                    }
+                });
+    }
+
+    @Test(groups = "unit")
+    public void should_return_local_replicas_first_then_rest_of_child_plan() {
+        when(metadata.getReplicas(Metadata.quote("ks"), routingKey)).thenReturn(Sets.newLinkedHashSet(Lists.newArrayList(host1, host2, host3)));
+        when(childPolicy.distance(host2)).thenReturn(HostDistance.REMOTE);
+        when(host3.isUp()).thenReturn(false);
+        TokenAwarePolicy policy = new TokenAwarePolicy(childPolicy, false);
+        policy.init(cluster, Lists.newArrayList(host1, host2, host3, host4, host5));
+
+        List<Host> plan = Lists.newArrayList(policy.newQueryPlan(null, statement));
+
+        // host2 is not local, so it comes in the order of the child plan; host3 is down, so it is not returned at all
+        assertThat(plan).containsExactly(host1, host5, host4, host2);
+        verify(childPolicy, times(1)).distance(host1);
+        verify(childPolicy, times(1)).distance(host2);
+        verify(childPolicy, times(1)).distance(host3);
+        // Replica hits are only counted when a local rack is set
+        assertThat(policy.getReplicaHitsPerRack()).isEmpty();
+    }
+
+    @Test(groups = "unit")
+    public void should_rotate_replicas_when_shuffling() {
+        when(metadata.getReplicas(Metadata.quote("ks"), routingKey)).thenReturn(Sets.newLinkedHashSet(Lists.newArrayList(host1, host2, host3)));
+        TokenAwarePolicy policy = new TokenAwarePolicy(childPolicy, true);
+        policy.init(cluster, Lists.newArrayList(host1, host2, host3, host4, host5));
+
+        Set<Host> firstHosts = new HashSet<Host>();
+        for (int i = 0; i < 100; i++) {
+            List<Host> plan = Lists.newArrayList(policy.newQueryPlan(null, statement));
+            assertThat(plan).hasSize(5);
+            assertThat(plan.subList(0, 3)).containsOnly(host1, host2, host3);
+            assertThat(plan.subList(3, 5)).containsExactly(host5, host4);
+            firstHosts.add(plan.get(0));
+        }
+        assertThat(firstHosts).containsOnly(host1, host2, host3);
+    }
+
+    @Test(groups = "unit")
+    public void should_return_replicas_of_local_rack_first() {
+        when(metadata.getReplicas(Metadata.quote("ks"), routingKey)).thenReturn(Sets.newLinkedHashSet(Lists.newArrayList(host1, host2, host3)));
+        when(host1.getRack()).thenReturn("rack1");
+        when(host2.getRack()).thenReturn("rack2");
+        when(host3.getRack()).thenReturn("rack2");
+        when(childPolicy.distance(host3)).thenReturn(HostDistance.REMOTE);
+        TokenAwarePolicy policy = new TokenAwarePolicy(childPolicy, false, "rack2");
+        policy.init(cluster, Lists.newArrayList(host1, host2, host3, host4, host5));
+
+        List<Host> plan = Lists.newArrayList(policy.newQueryPlan(null, statement));
+
+        // host3 is in the local rack, but not local
+        assertThat(plan).containsExactly(host2, host1, host5, host4, host3);
+        verify(childPolicy, times(1)).distance(host1);
+        verify(childPolicy, times(1)).distance(host3);
+        assertThat(policy.getReplicaHitsPerRack()).containsEntry("rack2", 1L).hasSize(1);
+
+        when(host2.isUp()).thenReturn(false);
+        assertThat(Lists.newArrayList(policy.newQueryPlan(null, statement))).containsExactly(host1, host5, host4, host3);
+        assertThat(policy.getReplicaHitsPerRack()).containsEntry("rack1", 1L).containsEntry("rack2", 1L);
+    }
+
+    @Test(groups = "unit")
+    public void should_route_lightweight_transactions_in_ring_order() {
+        when(metadata.getReplicas(Metadata.quote("ks"), routingKey)).thenReturn(Sets.newLinkedHashSet(Lists.newArrayList(host1, host2, host3)));
+        when(host1.getRack()).thenReturn("rack1");
+        when(host2.getRack()).thenReturn("rack2");
+        TokenAwarePolicy policy = new TokenAwarePolicy(childPolicy, true, "rack2", true);
+        policy.init(cluster, Lists.newArrayList(host1, host2, host3, host4, host5));
+        Statement lwt = new SimpleStatement("UPDATE foo SET v = 1 WHERE k = 1 IF v = 2").setRoutingKey(routingKey).setKeyspace("ks");
+
+        for (int i = 0; i < 10; i++) {
+            when(childPolicy.newQueryPlan(null, lwt)).thenReturn(Lists.newArrayList(host5, host4).iterator());
+            assertThat(Lists.newArrayList(policy.newQueryPlan(null, lwt))).containsExactly(host1, host2, host3, host5, host4);
+        }
+        // Other statements still use the local rack
+        assertThat(policy.newQueryPlan(null, statement).next()).isEqualTo(host2);
+    }
+}